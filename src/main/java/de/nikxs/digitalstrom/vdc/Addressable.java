@@ -1,9 +1,13 @@
 package de.nikxs.digitalstrom.vdc;
 
+import de.nikxs.digitalstrom.vdc.server.dispatch.Mailbox;
 import de.nikxs.digitalstrom.vdc.util.DSUID;
 import de.nikxs.digitalstrom.vdc.util.DsUtil;
 import org.slf4j.Logger;
 import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.Map;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -16,6 +20,16 @@ public interface Addressable {
 
     String getName();
 
+    /**
+     * Mailbox through which the commands to this entity (e.g. scene calls, dim channel or output channel values)
+     * are executed one after another. Commands to entities without mailbox are serialized by a temporary one.
+     *
+     * @return mailbox of this entity or <code>null</code>
+     */
+    default Mailbox getMailbox() {
+        return null;
+    }
+
     /**
      * Default implementation of pong() method
      *
@@ -51,6 +65,86 @@ public interface Addressable {
         }
     }
 
+    /**
+     * Default implementation of callScene() notification
+     *
+     * @param notification scene call addressed (amongst others) to this entity
+     */
+    default void callScene(Vdcapi.vdsm_NotificationCallScene notification) {
+        LogHolder.LOGGER.debug("callScene() -- [default implementation] '{}' ({}) > scene {} ignored",
+                getName(), getDSUID(), notification.getScene());
+    }
+
+    /**
+     * Default implementation of saveScene() notification
+     *
+     * @param notification scene save addressed (amongst others) to this entity
+     */
+    default void saveScene(Vdcapi.vdsm_NotificationSaveScene notification) {
+        LogHolder.LOGGER.debug("saveScene() -- [default implementation] '{}' ({}) > scene {} ignored",
+                getName(), getDSUID(), notification.getScene());
+    }
+
+    /**
+     * Default implementation of undoScene() notification
+     *
+     * @param notification scene undo addressed (amongst others) to this entity
+     */
+    default void undoScene(Vdcapi.vdsm_NotificationUndoScene notification) {
+        LogHolder.LOGGER.debug("undoScene() -- [default implementation] '{}' ({}) > scene {} ignored",
+                getName(), getDSUID(), notification.getScene());
+    }
+
+    /**
+     * Default implementation of callSceneMin() notification
+     *
+     * @param notification min scene call addressed (amongst others) to this entity
+     */
+    default void callMinScene(Vdcapi.vdsm_NotificationCallMinScene notification) {
+        LogHolder.LOGGER.debug("callMinScene() -- [default implementation] '{}' ({}) > scene {} ignored",
+                getName(), getDSUID(), notification.getScene());
+    }
+
+    /**
+     * Default implementation of setLocalPriority() notification
+     *
+     * @param notification local priority addressed (amongst others) to this entity
+     */
+    default void setLocalPriority(Vdcapi.vdsm_NotificationSetLocalPrio notification) {
+        LogHolder.LOGGER.debug("setLocalPriority() -- [default implementation] '{}' ({}) > scene {} ignored",
+                getName(), getDSUID(), notification.getScene());
+    }
+
+    /**
+     * Default implementation of identify() notification
+     *
+     * @param notification identify request addressed (amongst others) to this entity
+     */
+    default void identify(Vdcapi.vdsm_NotificationIdentify notification) {
+        LogHolder.LOGGER.debug("identify() -- [default implementation] '{}' ({}) > ignored", getName(), getDSUID());
+    }
+
+    /**
+     * Default implementation of setOutputChannelValue() notification. Receives the latest values of all channels
+     * changed since the last call at once (see {@link ChannelValueCoalescer}), which should be applied atomically.
+     *
+     * @param values new value per channel id (or channel index if the vdSM sent no id)
+     */
+    default void setOutputChannelValues(Map<String, Double> values) {
+        LogHolder.LOGGER.debug("setOutputChannelValues() -- [default implementation] '{}' ({}) > {} ignored",
+                getName(), getDSUID(), values);
+    }
+
+    /**
+     * Default implementation of dimChannel() notification
+     *
+     * @param notification latest dim command of a channel
+     */
+    default void dimChannel(Vdcapi.vdsm_NotificationDimChannel notification) {
+        LogHolder.LOGGER.debug("dimChannel() -- [default implementation] '{}' ({}) > mode {} ignored",
+                getName(), getDSUID(), notification.getMode());
+    }
+
     //void vanish(Addressable device);
 }
 
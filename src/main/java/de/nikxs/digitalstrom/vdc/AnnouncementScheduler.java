@@ -0,0 +1,298 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.server.Session;
+import io.netty.util.Timer;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Announces vDCs and their devices to a connected vdSM (<tt>vdc_SendAnnounceVdc</tt>,
+ * <tt>vdc_SendAnnounceDevice</tt>). Every vdSM session gets its own announcement run.
+ * <p>
+ * Announcements are pipelined: up to <tt>window</tt> announcements wait for their response at the same time.
+ * The devices of a vDC are announced once the vdSM has accepted the vDC. Failed announcements (no response in
+ * time, vdSM busy) are retried with exponential backoff, other error responses are final.
+ */
+@Slf4j
+public class AnnouncementScheduler {
+
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    private final VdcHost host;
+
+    private final int window;
+
+    private final int maxAttempts;
+
+    private final long backoffMillis;
+
+    private final Timer timer;
+
+    /**
+     * Creates a new instance of AnnouncementScheduler.
+     *
+     * @param host host sending the announcements
+     * @param timer timer delaying the retries
+     * @param window maximum number of announcements waiting for a response
+     * @param maxAttempts maximum number of attempts per announcement
+     * @param backoffMillis delay [ms] before the first retry, doubled with every further retry
+     */
+    public AnnouncementScheduler(VdcHost host, Timer timer, int window, int maxAttempts, long backoffMillis) {
+        this.host = host;
+        this.timer = timer;
+        this.window = window;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Announces all vDCs of the host and their devices
+     *
+     * @param session session of the vdSM to announce to
+     * @return future completed when all announcements have been accepted or finally failed
+     */
+    public CompletableFuture<Report> announceAll(Session session) {
+        return announce(session, host.getEntities().snapshot(Vdc.class));
+    }
+
+    /**
+     * Announces the given vDCs and their devices
+     *
+     * @param session session of the vdSM to announce to
+     * @param vdcs vDCs to announce
+     * @return future completed when all announcements have been accepted or finally failed
+     */
+    public CompletableFuture<Report> announce(Session session, Collection<? extends Vdc> vdcs) {
+        Run run = new Run(session);
+        for (Vdc vdc : vdcs) {
+            run.enqueue(new Announcement(vdc, null));
+        }
+        return run.start();
+    }
+
+    /**
+     * Announces the given devices of an already announced vDC (e.g. devices added while a vdSM is connected)
+     *
+     * @param session session of the vdSM to announce to
+     * @param vdc vDC managing the devices
+     * @param devices devices to announce
+     * @return future completed when all announcements have been accepted or finally failed
+     */
+    public CompletableFuture<Report> announceDevices(Session session, Vdc vdc,
+                                                     Collection<? extends Addressable> devices) {
+        Run run = new Run(session);
+        for (Addressable device : devices) {
+            run.enqueue(new Announcement(vdc, device));
+        }
+        return run.start();
+    }
+
+    private long backoff(int attempts) {
+        return Math.min(MAX_BACKOFF_MILLIS, backoffMillis << Math.min(attempts - 1, 16));
+    }
+
+    private static boolean retryable(Messages.GenericResponse response) {
+        return response.getCode() == Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE
+                || response.getCode() == Messages.ResultCode.ERR_INSUFFICIENT_STORAGE;
+    }
+
+    /**
+     * Outcome of announcing a set of vDCs and their devices
+     */
+    @Getter
+    @ToString
+    public static final class Report {
+        /**
+         * number of entities accepted by the vdSM
+         */
+        private final int announced;
+        /**
+         * number of entities which could not be announced (including the devices of a failed vDC)
+         */
+        private final int failed;
+        /**
+         * number of retried announcements
+         */
+        private final int retries;
+        /**
+         * time [ms] from the first announcement to the last response
+         */
+        private final long durationMillis;
+
+        private Report(int announced, int failed, int retries, long durationMillis) {
+            this.announced = announced;
+            this.failed = failed;
+            this.retries = retries;
+            this.durationMillis = durationMillis;
+        }
+    }
+
+    /**
+     * Announcement of a vDC (<code>device == null</code>) or one of its devices
+     */
+    private static final class Announcement {
+        private final Vdc vdc;
+        private final Addressable device;
+        private int attempts;
+
+        private Announcement(Vdc vdc, Addressable device) {
+            this.vdc = vdc;
+            this.device = device;
+        }
+
+        private Addressable entity() {
+            return device != null ? device : vdc;
+        }
+
+        private Messages.Message message(int messageId) {
+            Messages.Message.Builder message = Messages.Message.newBuilder().setMessageId(messageId);
+            if (device == null) {
+                message.setType(Messages.Type.VDC_SEND_ANNOUNCE_VDC)
+                        .setVdcSendAnnounceVdc(Vdcapi.vdc_SendAnnounceVdc.newBuilder()
+                                .setDSUID(vdc.getDSUID().toString()));
+            } else {
+                message.setType(Messages.Type.VDC_SEND_ANNOUNCE_DEVICE)
+                        .setVdcSendAnnounceDevice(Vdcapi.vdc_SendAnnounceDevice.newBuilder()
+                                .setDSUID(device.getDSUID().toString())
+                                .setVdcDSUID(vdc.getDSUID().toString()));
+            }
+            return message.build();
+        }
+    }
+
+    /**
+     * State of one {@link #announce(Session, Collection)} call, guarded by its own monitor
+     */
+    private final class Run {
+        private final Session session;
+        private final CompletableFuture<Report> result = new CompletableFuture<>();
+        private final Deque<Announcement> queue = new ArrayDeque<>();
+        private final long start = System.nanoTime();
+        /**
+         * serializes {@link #pump()}: a response completing synchronously while sending re-enters it
+         */
+        private final AtomicInteger pumping = new AtomicInteger();
+        private int inFlight;
+        private int outstanding;
+        private int announced;
+        private int failed;
+        private int retries;
+
+        private Run(Session session) {
+            this.session = session;
+        }
+
+        private CompletableFuture<Report> start() {
+            pump();
+            finishIfDone();
+            return result;
+        }
+
+        private synchronized void enqueue(Announcement announcement) {
+            queue.add(announcement);
+            outstanding++;
+        }
+
+        /**
+         * Sends queued announcements as long as the window allows
+         */
+        private void pump() {
+            if (pumping.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                for (Announcement next = take(); next != null; next = take()) {
+                    send(next);
+                }
+            } while (pumping.decrementAndGet() != 0);
+        }
+
+        private synchronized Announcement take() {
+            if (inFlight >= window || queue.isEmpty()) {
+                return null;
+            }
+            inFlight++;
+            return queue.poll();
+        }
+
+        private void send(Announcement announcement) {
+            announcement.attempts++;
+            CompletableFuture<Messages.GenericResponse> response;
+            try {
+                response = host.sendAsync(session, announcement.message(session.getMessageId()));
+            } catch (IllegalStateException e) {
+                response = new CompletableFuture<>();
+                response.completeExceptionally(e);
+            }
+            response.whenComplete((r, cause) -> completed(announcement, r, cause));
+        }
+
+        private void completed(Announcement announcement, Messages.GenericResponse response, Throwable cause) {
+            boolean accepted = cause == null && response.getCode() == Messages.ResultCode.ERR_OK;
+            boolean retry = !accepted && announcement.attempts < maxAttempts && session.isConnected()
+                    && (cause != null || retryable(response));
+            List<Addressable> devices = accepted && announcement.device == null
+                    ? announcement.vdc.getDevices().snapshot() : null;
+
+            synchronized (this) {
+                inFlight--;
+                if (accepted) {
+                    announced++;
+                    outstanding--;
+                    if (devices != null) {
+                        devices.forEach(device -> enqueue(new Announcement(announcement.vdc, device)));
+                    }
+                } else if (retry) {
+                    retries++;
+                } else {
+                    outstanding--;
+                    failed += announcement.device == null ? 1 + announcement.vdc.getDevices().size() : 1;
+                }
+            }
+
+            if (retry) {
+                log.debug("announce() -- '{}' ({}) attempt {} failed, retrying",
+                        announcement.entity().getName(), announcement.entity().getDSUID(), announcement.attempts);
+                timer.newTimeout(t -> {
+                    synchronized (this) {
+                        queue.addFirst(announcement);
+                    }
+                    pump();
+                }, backoff(announcement.attempts), TimeUnit.MILLISECONDS);
+            } else if (!accepted) {
+                log.warn("announce() -- '{}' ({}) failed: {}", announcement.entity().getName(),
+                        announcement.entity().getDSUID(), cause != null ? cause.getMessage() : response.getCode());
+            }
+            if (announcement.device == null && response != null && !retry) {
+                announcement.vdc.announceCB(response);
+            }
+            pump();
+            finishIfDone();
+        }
+
+        private void finishIfDone() {
+            Report report;
+            synchronized (this) {
+                if (outstanding > 0 || result.isDone()) {
+                    return;
+                }
+                report = new Report(announced, failed, retries,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            log.info("announce() -- {} entities announced ({} failed, {} retries) in {} ms",
+                    report.getAnnounced(), report.getFailed(), report.getRetries(), report.getDurationMillis());
+            result.complete(report);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.server.dispatch.MessageDispatcher;
+import de.nikxs.digitalstrom.vdc.server.dispatch.OffloadExecutor;
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import io.netty.util.Timer;
+import lombok.extern.slf4j.Slf4j;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces the stream of <tt>dimChannel</tt> and <tt>setOutputChannelValue</tt> notifications the vdSM sends
+ * e.g. while a user holds a dimmer button.
+ * <p>
+ * Per device only the latest command (value or dim command) per channel is kept, pending commands are applied
+ * in the order they arrived. Values sent with <tt>apply_now=false</tt> are buffered and become pending together
+ * with the next value sent with <tt>apply_now=true</tt>; consecutive pending values are applied in a single
+ * {@link Addressable#setOutputChannelValues(Map)} call. Applying happens on the device's mailbox and at most
+ * once per configured interval; commands arriving in the meantime replace older ones of the same channel
+ * instead of queueing up, so a slow device never builds a backlog of stale dim steps.
+ * <p>
+ * Channels are identified by their <tt>channelId</tt> (API v3) or, if not given, by the channel index.
+ */
+@Slf4j
+public class ChannelValueCoalescer {
+
+    private final EntityRegistry entities;
+
+    private final OffloadExecutor executor;
+
+    private final long minApplyIntervalNanos;
+
+    private final Timer timer;
+
+    private final ConcurrentMap<DSUID, DeviceChannels> devices = new ConcurrentHashMap<>();
+
+    private final LongAdder received = new LongAdder();
+
+    private final LongAdder applied = new LongAdder();
+
+    /**
+     * Creates a new instance of ChannelValueCoalescer.
+     *
+     * @param entities registry resolving the addressed devices
+     * @param executor executor owning the device mailboxes
+     * @param timer timer delaying rate limited applies
+     * @param minApplyIntervalMillis minimum time between two applies to the same device (0: no rate limit)
+     */
+    public ChannelValueCoalescer(EntityRegistry entities, OffloadExecutor executor, Timer timer,
+                                 long minApplyIntervalMillis) {
+        this.entities = entities;
+        this.executor = executor;
+        this.timer = timer;
+        this.minApplyIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minApplyIntervalMillis);
+    }
+
+    /**
+     * Registers the coalescer for dim channel and output channel value notifications. Only the (cheap)
+     * coalescing runs inline on the event loop.
+     */
+    void register(MessageDispatcher dispatcher) {
+        dispatcher.register(Messages.Type.VDSM_NOTIFICATION_DIM_CHANNEL, message -> {
+            Vdcapi.vdsm_NotificationDimChannel dim = message.getVdsmSendDimChannel();
+            for (String dSUID : dim.getDSUIDList()) {
+                Addressable device = resolve(message, dSUID);
+                if (device != null) {
+                    offerDim(device, dim);
+                }
+            }
+            return null;
+        });
+        dispatcher.register(Messages.Type.VDSM_NOTIFICATION_SET_OUTPUT_CHANNEL_VALUE, message -> {
+            Vdcapi.vdsm_NotificationSetOutputChannelValue value = message.getVdsmSendOutputChannelValue();
+            String channel = value.hasChannelId() ? value.getChannelId() : String.valueOf(value.getChannel());
+            for (String dSUID : value.getDSUIDList()) {
+                Addressable device = resolve(message, dSUID);
+                if (device != null) {
+                    offerValue(device, channel, value.getValue(), value.getApplyNow());
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Sets the value of an output channel of the given device
+     *
+     * @param device addressed device
+     * @param channel channel id
+     * @param value new value, replaces a not yet applied value or dim command of the same channel
+     * @param applyNow <code>false</code> buffers the value until the next value with <code>applyNow</code>
+     */
+    public void offerValue(Addressable device, String channel, double value, boolean applyNow) {
+        received.increment();
+        DeviceChannels channels = channels(device);
+        boolean schedule;
+        synchronized (channels) {
+            if (!applyNow) {
+                channels.buffered.put(channel, value);
+                return;
+            }
+            for (Map.Entry<String, Double> buffered : channels.buffered.entrySet()) {
+                channels.offer(buffered.getKey(), new Command(buffered.getValue(), null));
+            }
+            channels.buffered.clear();
+            channels.offer(channel, new Command(value, null));
+            schedule = channels.markScheduled();
+        }
+        if (schedule) {
+            schedule(device, channels);
+        }
+    }
+
+    /**
+     * Starts/ stops dimming a channel of the given device. A dim command replaces a not yet applied dim command
+     * or value of the same channel.
+     *
+     * @param device addressed device
+     * @param dim dim notification
+     */
+    public void offerDim(Addressable device, Vdcapi.vdsm_NotificationDimChannel dim) {
+        received.increment();
+        DeviceChannels channels = channels(device);
+        String channel = dim.hasChannelId() ? dim.getChannelId() : String.valueOf(dim.getChannel());
+        boolean schedule;
+        synchronized (channels) {
+            channels.offer(channel, new Command(0, dim));
+            schedule = channels.markScheduled();
+        }
+        if (schedule) {
+            schedule(device, channels);
+        }
+    }
+
+    /**
+     * Posts the commands of the given device which are held back by the rate limit to the
+     * device's mailbox right away, so they are applied before any command posted to the mailbox afterwards
+     * (e.g. a scene call). Values buffered with <tt>apply_now=false</tt> stay buffered.
+     *
+     * @param device addressed device
+     */
+    public void flush(Addressable device) {
+        DeviceChannels channels = devices.get(device.getDSUID());
+        if (channels == null) {
+            return;
+        }
+        synchronized (channels) {
+            if (channels.pending.isEmpty()) {
+                return;
+            }
+        }
+        post(device, channels);
+    }
+
+    /**
+     * Drops the pending values of a vanished device
+     */
+    public void remove(DSUID dSUID) {
+        devices.remove(dSUID);
+    }
+
+    /**
+     * @return number of received channel values and dim commands
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * @return number of channel values and dim commands handed to the devices
+     */
+    public long getApplied() {
+        return applied.sum();
+    }
+
+    /**
+     * @return number of channel values and dim commands replaced by a newer one before they have been applied
+     */
+    public long getCoalesced() {
+        long pending = 0;
+        for (DeviceChannels channels : devices.values()) {
+            synchronized (channels) {
+                pending += channels.buffered.size() + channels.pending.size();
+            }
+        }
+        return Math.max(0, received.sum() - applied.sum() - pending);
+    }
+
+    private Addressable resolve(Messages.Message message, String dSUID) {
+        Addressable device = entities.get(dSUID);
+        if (device == null) {
+            log.warn("{} -- Unknown device ({}) skipped", message.getType(), dSUID);
+        }
+        return device;
+    }
+
+    private DeviceChannels channels(Addressable device) {
+        return devices.computeIfAbsent(device.getDSUID(), dSUID -> new DeviceChannels());
+    }
+
+    /**
+     * Schedules applying the pending values on the device's mailbox, delayed if the device has been updated
+     * within the minimum apply interval
+     */
+    private void schedule(Addressable device, DeviceChannels channels) {
+        long delay = channels.lastApplyNanos + minApplyIntervalNanos - System.nanoTime();
+        if (minApplyIntervalNanos == 0 || delay <= 0) {
+            post(device, channels);
+        } else {
+            timer.newTimeout(t -> post(device, channels), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Posts applying the pending values to the device's mailbox. If the executor is saturated the values stay
+     * pending until the next value is offered.
+     */
+    private void post(Addressable device, DeviceChannels channels) {
+        if (!executor.tryExecute(device.getDSUID(), () -> apply(device, channels))) {
+            synchronized (channels) {
+                channels.scheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Replays the pending commands in arrival order, consecutive values are applied in one call
+     */
+    private void apply(Addressable device, DeviceChannels channels) {
+        Map<String, Command> commands;
+        synchronized (channels) {
+            channels.scheduled = false;
+            if (channels.pending.isEmpty()) {
+                // already applied by a flush
+                return;
+            }
+            commands = channels.pending;
+            channels.pending = new LinkedHashMap<>();
+            channels.lastApplyNanos = System.nanoTime();
+        }
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Command> entry : commands.entrySet()) {
+            Command command = entry.getValue();
+            if (command.dim == null) {
+                values.put(entry.getKey(), command.value);
+                continue;
+            }
+            if (!values.isEmpty()) {
+                device.setOutputChannelValues(Collections.unmodifiableMap(values));
+                values = new LinkedHashMap<>();
+            }
+            device.dimChannel(command.dim);
+        }
+        if (!values.isEmpty()) {
+            device.setOutputChannelValues(Collections.unmodifiableMap(values));
+        }
+        applied.add(commands.size());
+    }
+
+    /**
+     * Pending values of one device, guarded by its own monitor
+     */
+    private static final class DeviceChannels {
+        /**
+         * values received with <tt>apply_now=false</tt>
+         */
+        private final Map<String, Double> buffered = new LinkedHashMap<>();
+        /**
+         * latest command per channel waiting to be applied, in arrival order
+         */
+        private Map<String, Command> pending = new LinkedHashMap<>();
+        private boolean scheduled;
+        private volatile long lastApplyNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+        /**
+         * Replaces the pending command of the given channel and moves it to the end of the arrival order
+         */
+        private void offer(String channel, Command command) {
+            pending.remove(channel);
+            pending.put(channel, command);
+        }
+
+        /**
+         * @return <code>true</code> if the caller has to schedule an apply
+         */
+        private boolean markScheduled() {
+            if (scheduled) {
+                return false;
+            }
+            scheduled = true;
+            return true;
+        }
+    }
+
+    /**
+     * Pending command of one channel: a value or, if <tt>dim</tt> is set, a dim command
+     */
+    private static final class Command {
+        private final double value;
+        private final Vdcapi.vdsm_NotificationDimChannel dim;
+
+        private Command(double value, Vdcapi.vdsm_NotificationDimChannel dim) {
+            this.value = value;
+            this.dim = dim;
+        }
+    }
+}
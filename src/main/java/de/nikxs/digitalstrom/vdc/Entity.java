@@ -1,5 +1,10 @@
 package de.nikxs.digitalstrom.vdc;
 
+import com.google.protobuf.ByteString;
+import de.nikxs.digitalstrom.vdc.property.IconStore;
+import de.nikxs.digitalstrom.vdc.property.Property;
+import de.nikxs.digitalstrom.vdc.property.PropertySnapshot;
+import de.nikxs.digitalstrom.vdc.server.dispatch.Mailbox;
 import de.nikxs.digitalstrom.vdc.util.DSUID;
 import de.nikxs.digitalstrom.vdc.util.Optional;
 import lombok.Getter;
@@ -7,6 +12,9 @@ import lombok.Setter;
 import lombok.ToString;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 public abstract class Entity implements Addressable {
 
     /**
@@ -50,12 +58,14 @@ public abstract class Entity implements Addressable {
      * the dSUID of the entity
      */
     @Getter
+    @Property(cached = true)
     private DSUID dSUID;
 
     /**
      * the type of the entity
      */
     @Getter
+    @Property(cached = true)
     private Type type;
 
     /**
@@ -63,12 +73,14 @@ public abstract class Entity implements Addressable {
      * it with a kind of hardware or software. Is mapped to “hardwareInfo” in vdsm and upstream
      */
     @Getter
+    @Property(cached = true)
     private String model;
 
     /**
      * Human-readable model version string of the device, if available
      */
     @Getter
+    @Property(cached = true)
     private String modelVersion;
 
     /**
@@ -81,6 +93,7 @@ public abstract class Entity implements Addressable {
      *   but different modelUID if one input is mapped as a button, and the other as a binaryInput.
      */
     @Getter
+    @Property(cached = true)
     private String modelUID;
 
     /**
@@ -95,6 +108,7 @@ public abstract class Entity implements Addressable {
      */
     @Getter
     @Optional
+    @Property(cached = true)
     private String hardwareVersion;
 
     /**
@@ -108,6 +122,7 @@ public abstract class Entity implements Addressable {
      */
     @Getter
     @Optional
+    @Property(cached = true)
     private String hardwareGuid;
 
     /**
@@ -119,6 +134,7 @@ public abstract class Entity implements Addressable {
      */
     @Getter
     @Optional
+    @Property(cached = true)
     private String hardwareModelGuid;
 
     /**
@@ -126,6 +142,7 @@ public abstract class Entity implements Addressable {
      */
     @Getter
     @Optional
+    @Property(cached = true)
     private String vendorName;
 
     /**
@@ -139,6 +156,7 @@ public abstract class Entity implements Addressable {
      */
     @Getter
     @Optional
+    @Property(cached = true)
     private String vendorGuid;
 
     /**
@@ -147,6 +165,7 @@ public abstract class Entity implements Addressable {
      */
     @Getter
     @Optional
+    @Property(cached = true)
     private String oemGuid;
 
     /**
@@ -154,14 +173,17 @@ public abstract class Entity implements Addressable {
      */
     @Getter
     @Optional
+    @Property(cached = true)
     private String configURL;
 
     /**
-     * 16x16 pixel png image to represent this device in the digitalSTROM configurator UI
+     * 16x16 pixel png image to represent this device in the digitalSTROM configurator UI, shared with all
+     * entities showing the same icon (see {@link IconStore})
      */
     @Getter
     @Optional
-    private byte[] deviceIcon16;
+    @Property(cached = true)
+    private ByteString deviceIcon16;
 
     /**
      * filename-safe name for the icon (a-z, 0-9, _, -, no spaces or funny characters!).
@@ -171,6 +193,7 @@ public abstract class Entity implements Addressable {
      */
     @Getter
     @Optional
+    @Property(cached = true)
     private String deviceIconName;
 
     /**
@@ -181,7 +204,7 @@ public abstract class Entity implements Addressable {
      * via the dSS configurator, this property should be updated with the new name.
      */
     @Getter
-    @Setter
+    @Property(writable = true, cached = true)
     @Value("${vdc.host.name:'default-vDC-Host'}")
     private String name;
 
@@ -190,6 +213,7 @@ public abstract class Entity implements Addressable {
      */
     @Getter
     @Optional
+    @Property(cached = true)
     private String deviceClass;
 
     /**
@@ -197,11 +221,83 @@ public abstract class Entity implements Addressable {
      */
     @Getter
     @Optional
+    @Property(cached = true)
     private String deviceClassVersion;
 
+    /**
+     * mailbox serializing the commands to this entity, assigned by the {@link VdcHost} on registration
+     */
+    @Getter
+    @Setter
+    private volatile Mailbox mailbox;
+
+    /**
+     * serialized form of the cached properties, see {@link Property#cached()}
+     */
+    @Getter
+    private final PropertySnapshot propertySnapshot = new PropertySnapshot(getClass());
+
+    /**
+     * registries this entity is registered with, they re-evaluate its index keys (zone, device class) on change
+     */
+    private final Set<EntityRegistry> registries = ConcurrentHashMap.newKeySet();
+
     public Entity(Type type, DSUID dsuid, String model) {
         this.type = type;
         this.dSUID = dsuid;
         this.model = model;
     }
+
+    public void setName(String name) {
+        this.name = name;
+        propertyChanged("name");
+    }
+
+    /**
+     * Sets the icon of this entity. The icon data is interned in the {@link IconStore#getDefault() icon store},
+     * so entities with the same icon share one copy.
+     *
+     * @param deviceIconName filename-safe name of the icon
+     * @param deviceIcon16 16x16 pixel png image
+     */
+    public void setDeviceIcon(String deviceIconName, byte[] deviceIcon16) {
+        this.deviceIcon16 = deviceIcon16 != null ? IconStore.getDefault().intern(deviceIconName, deviceIcon16) : null;
+        this.deviceIconName = deviceIconName;
+        propertyChanged("deviceIcon16");
+        propertyChanged("deviceIconName");
+    }
+
+    /**
+     * Sets the device class profile of this entity
+     *
+     * @param deviceClass digitalSTROM defined unique name of the device class profile
+     * @param deviceClassVersion revision number of the device class profile
+     */
+    public void setDeviceClass(String deviceClass, String deviceClassVersion) {
+        this.deviceClass = deviceClass;
+        this.deviceClassVersion = deviceClassVersion;
+        propertyChanged("deviceClass");
+        propertyChanged("deviceClassVersion");
+    }
+
+    /**
+     * Has to be called by sub classes after a {@link Property#cached() cached} property has changed. Changes of
+     * an index key (zone, device class) are propagated to the registries of this entity.
+     *
+     * @param property vDC API name of the property
+     */
+    protected void propertyChanged(String property) {
+        propertySnapshot.invalidate(property);
+        if (EntityRegistry.isIndexKey(property)) {
+            registries.forEach(registry -> registry.reindex(getDSUID()));
+        }
+    }
+
+    void registeredWith(EntityRegistry registry) {
+        registries.add(registry);
+    }
+
+    void unregisteredFrom(EntityRegistry registry) {
+        registries.remove(registry);
+    }
 }
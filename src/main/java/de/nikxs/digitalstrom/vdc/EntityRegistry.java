@@ -0,0 +1,333 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent registry of dS entities ({@link Addressable}s) keyed by their {@link DSUID}.
+ * <p>
+ * <ul>
+ * <li>Lookups ({@link #get(DSUID)}, index queries) are lock-free and may be done from any thread, e.g. from
+ * Netty I/O threads while processing vdSM requests.</li>
+ * <li>Mutations ({@link #add(Addressable, DSUID)}, {@link #remove(DSUID)}) update the primary map and all
+ * secondary indexes (owning vDC, zone, device class) atomically with respect to each other.</li>
+ * <li>{@link Entity Entities} notify their registries when an index key changes (e.g.
+ * {@link Vdc#setZoneID(int)}), so the zone and device class indexes follow without an explicit
+ * {@link #reindex(DSUID)}.</li>
+ * <li>{@link #snapshot()} returns an immutable, consistent view of all entities which can be iterated without
+ * any locking, e.g. for announcements or the <tt>bye()</tt> fan-out.</li>
+ * </ul>
+ */
+public class EntityRegistry {
+
+    /**
+     * vDC API names of the properties the secondary indexes are keyed by
+     */
+    private static final Set<String> INDEX_KEYS = new HashSet<>(Arrays.asList("zoneID", "deviceClass"));
+
+    /**
+     * Registered entity plus the index keys it has been registered with
+     */
+    private static final class Entry {
+        private final Addressable entity;
+        private final DSUID vdc;
+        private final Integer zone;
+        private final String deviceClass;
+
+        private Entry(Addressable entity, DSUID vdc) {
+            this.entity = entity;
+            this.vdc = vdc;
+            this.zone = entity instanceof Vdc ? ((Vdc) entity).getZoneID() : null;
+            this.deviceClass = entity instanceof Entity ? ((Entity) entity).getDeviceClass() : null;
+        }
+    }
+
+    private final ConcurrentMap<DSUID, Entry> entities = new ConcurrentHashMap<>();
+
+    /**
+     * entities keyed by their canonical string representation (see {@link DSUID#toString()}), allows lookups
+     * of dSUIDs sent by the vdSM without parsing them
+     */
+    private final ConcurrentMap<String, Entry> entitiesByString = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<DSUID, Set<Addressable>> byVdc = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Integer, Set<Addressable>> byZone = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<Addressable>> byDeviceClass = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes mutations and snapshot creation, never taken by lookups
+     */
+    private final Object mutationLock = new Object();
+
+    /**
+     * Immutable snapshot of all entities, reset on every mutation and lazily rebuilt
+     */
+    private volatile List<Addressable> snapshot = Collections.emptyList();
+
+    private volatile boolean snapshotValid = true;
+
+    /**
+     * Registers an entity without an owning vDC (e.g. a vDC or the vDC host itself)
+     *
+     * @param entity entity to add
+     * @return <code>true</code> if added, <code>false</code> if an entity with the same dSUID is already known
+     */
+    public boolean add(Addressable entity) {
+        return add(entity, null);
+    }
+
+    /**
+     * Registers an entity managed by the given vDC
+     *
+     * @param entity entity to add
+     * @param vdc dSUID of the owning vDC or <code>null</code>
+     * @return <code>true</code> if added, <code>false</code> if an entity with the same dSUID is already known
+     */
+    public boolean add(Addressable entity, DSUID vdc) {
+        Objects.requireNonNull(entity, "entity must not be 'null'");
+        synchronized (mutationLock) {
+            if (entities.containsKey(entity.getDSUID())) {
+                return false;
+            }
+            // listen before reading the index keys, so a concurrent change is not missed
+            if (entity instanceof Entity) {
+                ((Entity) entity).registeredWith(this);
+            }
+            Entry entry = new Entry(entity, vdc);
+            entities.put(entity.getDSUID(), entry);
+            entitiesByString.put(entity.getDSUID().toString(), entry);
+            index(entry);
+            snapshotValid = false;
+            return true;
+        }
+    }
+
+    /**
+     * Removes (vanishes) the entity with the given dSUID
+     *
+     * @param dSUID dSUID of the entity
+     * @return removed entity or <code>null</code> if unknown
+     */
+    public Addressable remove(DSUID dSUID) {
+        synchronized (mutationLock) {
+            Entry entry = entities.remove(dSUID);
+            if (entry == null) {
+                return null;
+            }
+            entitiesByString.remove(dSUID.toString());
+            unindex(entry);
+            if (entry.entity instanceof Entity) {
+                ((Entity) entry.entity).unregisteredFrom(this);
+            }
+            snapshotValid = false;
+            return entry.entity;
+        }
+    }
+
+    /**
+     * Re-evaluates the secondary index keys (zone, device class) of the given entity after they have changed.
+     * Called by {@link Entity#propertyChanged(String)}, other {@link Addressable}s have to call it themselves.
+     *
+     * @param dSUID dSUID of the entity
+     */
+    public void reindex(DSUID dSUID) {
+        synchronized (mutationLock) {
+            Entry entry = entities.get(dSUID);
+            if (entry != null) {
+                Entry updated = new Entry(entry.entity, entry.vdc);
+                unindex(entry);
+                entities.put(dSUID, updated);
+                entitiesByString.put(dSUID.toString(), updated);
+                index(updated);
+            }
+        }
+    }
+
+    /**
+     * @param dSUID dSUID of the entity
+     * @return entity with the given dSUID or <code>null</code>
+     */
+    public Addressable get(DSUID dSUID) {
+        Entry entry = entities.get(dSUID);
+        return entry != null ? entry.entity : null;
+    }
+
+    /**
+     * Looks up an entity by the string representation of its dSUID (e.g. as sent by the vdSM). The canonical
+     * representation (34 upper case hex digits) is resolved without parsing.
+     *
+     * @param dSUID string representation of the dSUID
+     * @return entity with the given dSUID or <code>null</code> (also if the string is no valid dSUID)
+     */
+    public Addressable get(String dSUID) {
+        Entry entry = lookup(dSUID);
+        return entry != null ? entry.entity : null;
+    }
+
+    /**
+     * Resolves the given dSUIDs (e.g. of a multi-device vdSM notification) in one pass and groups the entities
+     * by their owning vDC. Entities without owning vDC (e.g. vDCs) are grouped under <code>null</code>.
+     *
+     * @param dSUIDs string representations of the dSUIDs
+     * @param unknown receives all dSUIDs without registered entity
+     * @return entities per owning vDC in order of the given dSUIDs
+     */
+    public Map<DSUID, List<Addressable>> resolveByVdc(List<String> dSUIDs, Consumer<String> unknown) {
+        Map<DSUID, List<Addressable>> groups = new HashMap<>();
+        for (String dSUID : dSUIDs) {
+            Entry entry = lookup(dSUID);
+            if (entry == null) {
+                unknown.accept(dSUID);
+            } else {
+                groups.computeIfAbsent(entry.vdc, vdc -> new ArrayList<>()).add(entry.entity);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * @param dSUID dSUID of the entity
+     * @return dSUID of the vDC owning the given entity or <code>null</code>
+     */
+    public DSUID getVdcOf(DSUID dSUID) {
+        Entry entry = entities.get(dSUID);
+        return entry != null ? entry.vdc : null;
+    }
+
+    public boolean contains(DSUID dSUID) {
+        return entities.containsKey(dSUID);
+    }
+
+    /**
+     * @param vdc dSUID of a vDC
+     * @return weakly consistent view of all entities managed by the given vDC
+     */
+    public Set<Addressable> getByVdc(DSUID vdc) {
+        return view(byVdc, vdc);
+    }
+
+    /**
+     * @param zoneID zone
+     * @return weakly consistent view of all entities located in the given zone
+     */
+    public Set<Addressable> getByZone(int zoneID) {
+        return view(byZone, zoneID);
+    }
+
+    /**
+     * @param deviceClass dS device class profile name
+     * @return weakly consistent view of all entities of the given device class
+     */
+    public Set<Addressable> getByDeviceClass(String deviceClass) {
+        return view(byDeviceClass, deviceClass);
+    }
+
+    /**
+     * @return immutable, consistent snapshot of all registered entities
+     */
+    public List<Addressable> snapshot() {
+        if (snapshotValid) {
+            return snapshot;
+        }
+        synchronized (mutationLock) {
+            if (!snapshotValid) {
+                List<Addressable> copy = new ArrayList<>(entities.size());
+                entities.values().forEach(entry -> copy.add(entry.entity));
+                snapshot = Collections.unmodifiableList(copy);
+                snapshotValid = true;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * @param type entity type
+     * @return immutable, consistent snapshot of all registered entities of the given type
+     */
+    public <T extends Addressable> List<T> snapshot(Class<T> type) {
+        List<T> result = new ArrayList<>();
+        for (Addressable entity : snapshot()) {
+            if (type.isInstance(entity)) {
+                result.add(type.cast(entity));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    public boolean isEmpty() {
+        return entities.isEmpty();
+    }
+
+    /**
+     * @param property vDC API name of a property
+     * @return <code>true</code> if a secondary index is keyed by the given property
+     */
+    static boolean isIndexKey(String property) {
+        return INDEX_KEYS.contains(property);
+    }
+
+    private Entry lookup(String dSUID) {
+        Entry entry = entitiesByString.get(dSUID);
+        if (entry == null && !isCanonical(dSUID)) {
+            // e.g. lower case or UUID representation
+            try {
+                entry = entities.get(DSUID.fromDSUID(dSUID));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return entry;
+    }
+
+    private static boolean isCanonical(String dSUID) {
+        if (dSUID.length() != 34) {
+            return false;
+        }
+        for (int i = 0; i < dSUID.length(); i++) {
+            char c = dSUID.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'A' || c > 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void index(Entry entry) {
+        addToIndex(byVdc, entry.vdc, entry.entity);
+        addToIndex(byZone, entry.zone, entry.entity);
+        addToIndex(byDeviceClass, entry.deviceClass, entry.entity);
+    }
+
+    private void unindex(Entry entry) {
+        removeFromIndex(byVdc, entry.vdc, entry.entity);
+        removeFromIndex(byZone, entry.zone, entry.entity);
+        removeFromIndex(byDeviceClass, entry.deviceClass, entry.entity);
+    }
+
+    private static <K> void addToIndex(ConcurrentMap<K, Set<Addressable>> index, K key, Addressable entity) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(entity);
+        }
+    }
+
+    private static <K> void removeFromIndex(ConcurrentMap<K, Set<Addressable>> index, K key, Addressable entity) {
+        if (key != null) {
+            index.computeIfPresent(key, (k, set) -> set.remove(entity) && set.isEmpty() ? null : set);
+        }
+    }
+
+    private static <K> Set<Addressable> view(ConcurrentMap<K, Set<Addressable>> index, K key) {
+        Set<Addressable> set = key != null ? index.get(key) : null;
+        return set != null ? Collections.unmodifiableSet(set) : Collections.emptySet();
+    }
+}
@@ -0,0 +1,106 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.server.dispatch.OffloadExecutor;
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import io.netty.util.Timer;
+import lombok.extern.slf4j.Slf4j;
+import vdcapi.Messages;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Posts the device commands of vdSM notifications (scenes, local priority, identify) to the device mailboxes.
+ * <p>
+ * Notifications are not answered, so a command rejected by the saturated {@link OffloadExecutor} would be lost
+ * without anybody noticing. A rejected command is re-posted via the timer with doubling delay instead. If the
+ * executor is still saturated after the last attempt, the command is dropped, logged and counted per message
+ * type. A re-posted command is applied after commands to the same device that were accepted in the meantime.
+ */
+@Slf4j
+public class NotificationPoster {
+
+    private final OffloadExecutor executor;
+
+    private final Timer timer;
+
+    private final int maxAttempts;
+
+    private final long retryDelayMillis;
+
+    private final LongAdder retried = new LongAdder();
+
+    private final ConcurrentMap<Messages.Type, LongAdder> dropped = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance of NotificationPoster.
+     *
+     * @param executor executor owning the device mailboxes
+     * @param timer timer re-posting rejected commands
+     * @param maxAttempts number of attempts to post a command before it is dropped
+     * @param retryDelayMillis delay [ms] before the first re-post, doubled with each further attempt
+     */
+    public NotificationPoster(OffloadExecutor executor, Timer timer, int maxAttempts, long retryDelayMillis) {
+        this.executor = executor;
+        this.timer = timer;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * Posts the given command to the mailbox of the addressed device
+     *
+     * @param dSUID addressed device
+     * @param type type of the notification the command belongs to
+     * @param command device command
+     */
+    public void post(DSUID dSUID, Messages.Type type, Runnable command) {
+        post(dSUID, type, command, 1);
+    }
+
+    private void post(DSUID dSUID, Messages.Type type, Runnable command, int attempt) {
+        if (executor.tryExecute(dSUID, command)) {
+            return;
+        }
+        if (attempt >= maxAttempts) {
+            dropped.computeIfAbsent(type, t -> new LongAdder()).increment();
+            log.warn("{} -- command to device {} dropped, offload executor saturated after {} attempt(s)",
+                    type, dSUID, attempt);
+            return;
+        }
+        retried.increment();
+        long delay = retryDelayMillis << (attempt - 1);
+        try {
+            timer.newTimeout(t -> post(dSUID, type, command, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        } catch (IllegalStateException e) {
+            // timer stopped, the host is shutting down
+            dropped.computeIfAbsent(type, t -> new LongAdder()).increment();
+            log.warn("{} -- command to device {} dropped, host stopped", type, dSUID);
+        }
+    }
+
+    /**
+     * @return number of commands re-posted because the executor was saturated
+     */
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    /**
+     * @param type notification type
+     * @return number of dropped commands of the given notification type
+     */
+    public long getDropped(Messages.Type type) {
+        LongAdder count = dropped.get(type);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * @return number of dropped commands of all notification types
+     */
+    public long getDropped() {
+        return dropped.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+}
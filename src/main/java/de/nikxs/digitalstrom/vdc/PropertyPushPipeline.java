@@ -0,0 +1,230 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.property.PropertyEngine;
+import de.nikxs.digitalstrom.vdc.server.Session;
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import io.netty.util.Timer;
+import lombok.extern.slf4j.Slf4j;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batches property changes pushed to the vdSM (<tt>vdc_SendPushProperty</tt>).
+ * <p>
+ * Changes are collected per dSUID for one push window. Repeated changes of the same property within a window
+ * are merged, so each device sends at most one push notification per window containing the latest value of
+ * every changed property. Properties pushed by name are read when the window closes, which keeps a burst of
+ * sensor updates down to a map insert each.
+ * <p>
+ * Memory is bounded by the number of devices with pending changes: reaching the limit closes the current
+ * window early instead of buffering further devices.
+ */
+@Slf4j
+public class PropertyPushPipeline {
+
+    private final VdcHost host;
+
+    private final PropertyEngine propertyEngine = new PropertyEngine();
+
+    private final long windowMillis;
+
+    private final int maxPendingDevices;
+
+    private final Timer timer;
+
+    private final ConcurrentMap<DSUID, PendingPush> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean windowOpen = new AtomicBoolean();
+
+    private final LongAdder received = new LongAdder();
+
+    private final LongAdder merged = new LongAdder();
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates a new instance of PropertyPushPipeline.
+     *
+     * @param host host sending the push notifications
+     * @param timer timer closing the push windows
+     * @param windowMillis time [ms] changes are collected before they are pushed (0: push immediately)
+     * @param maxPendingDevices number of devices with pending changes which closes the window early
+     */
+    public PropertyPushPipeline(VdcHost host, Timer timer, long windowMillis, int maxPendingDevices) {
+        this.host = host;
+        this.timer = timer;
+        this.windowMillis = windowMillis;
+        this.maxPendingDevices = maxPendingDevices;
+    }
+
+    /**
+     * Pushes the current values of the given properties of an entity. The values are read when the push
+     * window closes.
+     *
+     * @param entity changed entity
+     * @param properties vDC API names of the changed properties
+     */
+    public void push(Addressable entity, String... properties) {
+        add(entity.getDSUID(), entity, properties, null);
+    }
+
+    /**
+     * Pushes the given property value
+     *
+     * @param dSUID dSUID of the changed entity
+     * @param property changed property, replaces a pending value of the same property
+     */
+    public void push(DSUID dSUID, Vdcapi.PropertyElement property) {
+        add(dSUID, null, new String[]{property.getName()}, property);
+    }
+
+    /**
+     * Pushes all pending changes now
+     */
+    public void flush() {
+        windowOpen.set(false);
+        for (DSUID dSUID : pending.keySet()) {
+            PendingPush push = pending.remove(dSUID);
+            if (push != null) {
+                send(dSUID, push);
+            }
+        }
+    }
+
+    /**
+     * @return number of pushed property changes
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * @return number of property changes replaced by a later change of the same property within a window
+     */
+    public long getMerged() {
+        return merged.sum();
+    }
+
+    /**
+     * @return number of sent push notifications
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * @return number of push notifications dropped because no vdSM was connected
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of devices with pending changes
+     */
+    public int getPendingDevices() {
+        return pending.size();
+    }
+
+    /**
+     * Drops all pending changes
+     */
+    public void stop() {
+        pending.clear();
+    }
+
+    private void add(DSUID dSUID, Addressable entity, String[] properties, Vdcapi.PropertyElement value) {
+        received.add(properties.length);
+        while (true) {
+            PendingPush push = pending.computeIfAbsent(dSUID, key -> new PendingPush(entity));
+            synchronized (push) {
+                if (push.closed) {
+                    // sent concurrently, start a new one
+                    continue;
+                }
+                if (push.entity == null) {
+                    push.entity = entity;
+                }
+                for (String property : properties) {
+                    if (push.properties.containsKey(property)) {
+                        merged.increment();
+                    }
+                    push.properties.put(property, value);
+                }
+            }
+            break;
+        }
+        if (windowMillis == 0) {
+            flush();
+        } else if (pending.size() >= maxPendingDevices) {
+            log.debug("push() -- {} devices with pending changes, closing push window early", pending.size());
+            flush();
+        } else if (windowOpen.compareAndSet(false, true)) {
+            timer.newTimeout(t -> flush(), windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void send(DSUID dSUID, PendingPush push) {
+        Map<String, Vdcapi.PropertyElement> properties;
+        synchronized (push) {
+            push.closed = true;
+            properties = push.properties;
+        }
+        if (!host.isConnected()) {
+            dropped.increment();
+            return;
+        }
+        Vdcapi.vdc_SendPushProperty.Builder notification = Vdcapi.vdc_SendPushProperty.newBuilder()
+                .setDSUID(dSUID.toString());
+        for (Map.Entry<String, Vdcapi.PropertyElement> property : properties.entrySet()) {
+            Vdcapi.PropertyElement element = property.getValue();
+            if (element == null && push.entity != null) {
+                element = propertyEngine.getProperty(push.entity, property.getKey());
+            }
+            if (element != null) {
+                notification.addProperties(element);
+            }
+        }
+        if (notification.getPropertiesCount() == 0) {
+            return;
+        }
+        try {
+            host.sendNotification(Messages.Message.newBuilder()
+                    .setType(Messages.Type.VDC_SEND_PUSH_PROPERTY)
+                    // replaced by a message id of each vdSM session
+                    .setMessageId(Session.RESERVED_MESSAGE_ID)
+                    .setVdcSendPushProperty(notification)
+                    .build());
+            sent.increment();
+        } catch (IllegalStateException e) {
+            // connection lost in the meantime
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Pending changes of one entity, guarded by its own monitor
+     */
+    private static final class PendingPush {
+        private Addressable entity;
+        /**
+         * changed properties with their pushed value or <code>null</code> if the value is read on send
+         */
+        private final Map<String, Vdcapi.PropertyElement> properties = new LinkedHashMap<>();
+        private boolean closed;
+
+        private PendingPush(Addressable entity) {
+            this.entity = entity;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.server.dispatch.MessageDispatcher;
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import de.nikxs.digitalstrom.vdc.util.DsUtil;
+import lombok.extern.slf4j.Slf4j;
+import vdcapi.Messages;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Fan-out stage of the multi-device scene notifications (call/save/undo/min scene, local priority, identify).
+ * <p>
+ * The addressed dSUIDs are resolved in one pass via the string index of the {@link EntityRegistry} (no dSUID
+ * parsing) and grouped by their owning {@link Vdc}. Each vDC then receives one batched call for all of its
+ * addressed devices. The call is made during the fan-out and posts the command of each device to the device's
+ * mailbox right away (see {@link Vdc#callScene(java.util.Collection, vdcapi.Vdcapi.vdsm_NotificationCallScene)}),
+ * so a scene keeps its order with dim and output channel value commands to the same device. Channel values
+ * still held back by the {@link ChannelValueCoalescer} are flushed to the mailbox before. Entities without
+ * owning vDC (e.g. a vDC addressed itself) are called directly via their own mailbox.
+ */
+@Slf4j
+class SceneFanOut {
+
+    private final EntityRegistry entities;
+
+    private final NotificationPoster poster;
+
+    private final ChannelValueCoalescer channelValues;
+
+    SceneFanOut(EntityRegistry entities, NotificationPoster poster, ChannelValueCoalescer channelValues) {
+        this.entities = entities;
+        this.poster = poster;
+        this.channelValues = channelValues;
+    }
+
+    /**
+     * Registers the fan-out for all scene notifications. Resolving and grouping is cheap, so it runs inline on
+     * the event loop and only the (possibly slow) device calls are offloaded to the device mailboxes.
+     */
+    void register(MessageDispatcher dispatcher) {
+        register(dispatcher, Messages.Type.VDSM_NOTIFICATION_CALL_SCENE, Messages.Message::getVdsmSendCallScene,
+                Vdc::callScene, Addressable::callScene);
+        register(dispatcher, Messages.Type.VDSM_NOTIFICATION_SAVE_SCENE, Messages.Message::getVdsmSendSaveScene,
+                Vdc::saveScene, Addressable::saveScene);
+        register(dispatcher, Messages.Type.VDSM_NOTIFICATION_UNDO_SCENE, Messages.Message::getVdsmSendUndoScene,
+                Vdc::undoScene, Addressable::undoScene);
+        register(dispatcher, Messages.Type.VDSM_NOTIFICATION_CALL_MIN_SCENE,
+                Messages.Message::getVdsmSendCallMinScene, Vdc::callMinScene, Addressable::callMinScene);
+        register(dispatcher, Messages.Type.VDSM_NOTIFICATION_SET_LOCAL_PRIO,
+                Messages.Message::getVdsmSendSetLocalPrio, Vdc::setLocalPriority, Addressable::setLocalPriority);
+        register(dispatcher, Messages.Type.VDSM_NOTIFICATION_IDENTIFY, Messages.Message::getVdsmSendIdentify,
+                Vdc::identify, Addressable::identify);
+    }
+
+    private <N> void register(MessageDispatcher dispatcher, Messages.Type type,
+                              Function<Messages.Message, N> payload, VdcCall<N> vdcCall,
+                              BiConsumer<Addressable, N> entityCall) {
+        dispatcher.register(type, message -> {
+            fanOut(message, payload.apply(message), vdcCall, entityCall);
+            return null; // notifications are not answered
+        });
+    }
+
+    /**
+     * @param message notification
+     * @param notification payload of the notification
+     * @param vdcCall batched call of a vDC
+     * @param entityCall call of a single entity without owning vDC
+     * @return number of addressed (known) entities
+     */
+    <N> int fanOut(Messages.Message message, N notification, VdcCall<N> vdcCall,
+                   BiConsumer<Addressable, N> entityCall) {
+        List<String> dSUIDs = DsUtil.getTargetDSUIDs(message);
+        Map<DSUID, List<Addressable>> groups = entities.resolveByVdc(dSUIDs,
+                dSUID -> log.warn("{} -- Unknown device ({}) skipped", message.getType(), dSUID));
+
+        int addressed = 0;
+        for (Map.Entry<DSUID, List<Addressable>> group : groups.entrySet()) {
+            List<Addressable> targets = group.getValue();
+            addressed += targets.size();
+            for (Addressable target : targets) {
+                channelValues.flush(target);
+            }
+            Addressable owner = group.getKey() != null ? entities.get(group.getKey()) : null;
+            if (owner instanceof Vdc) {
+                try {
+                    vdcCall.call((Vdc) owner, targets, notification);
+                } catch (RuntimeException e) {
+                    log.error("{} -- vDC '{}' ({}) failed: {}", message.getType(), owner.getName(),
+                            owner.getDSUID(), e.getMessage(), e);
+                }
+            } else {
+                for (Addressable target : targets) {
+                    poster.post(target.getDSUID(), message.getType(), () -> entityCall.accept(target, notification));
+                }
+            }
+        }
+        log.debug("{} -- fanned out to {} entities of {} vDC(s)", message.getType(), addressed, groups.size());
+        return addressed;
+    }
+
+    /**
+     * Batched notification call of a vDC, e.g. {@link Vdc#callScene(java.util.Collection,
+     * vdcapi.Vdcapi.vdsm_NotificationCallScene)}
+     */
+    @FunctionalInterface
+    interface VdcCall<N> {
+        void call(Vdc vdc, List<Addressable> devices, N notification);
+    }
+}
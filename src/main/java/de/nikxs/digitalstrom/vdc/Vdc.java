@@ -1,5 +1,6 @@
 package de.nikxs.digitalstrom.vdc;
 
+import de.nikxs.digitalstrom.vdc.property.Property;
 import de.nikxs.digitalstrom.vdc.util.DSUID;
 import lombok.Getter;
 import lombok.Setter;
@@ -7,17 +8,18 @@ import lombok.extern.slf4j.Slf4j;
 import vdcapi.Messages;
 import vdcapi.Vdcapi;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.function.Consumer;
 
 @Slf4j
 public abstract class Vdc extends Entity {
 
     @Getter
-    @Setter
+    @Property(writable = true, cached = true)
     private int zoneID;
 
     @Getter
-    @Setter
+    @Property(cached = true)
     private String capabilities;
 
 
@@ -28,13 +30,23 @@ public abstract class Vdc extends Entity {
     /**
      * List of all dS devices managed by this vDC
      */
-    @Getter private HashMap<DSUID, Addressable> devices = new HashMap<>();
+    @Getter private final EntityRegistry devices = new EntityRegistry();
 
     /**
      * Reference to ProtocolBuffer server implementation used as communication layer to/from vdSM
      */
     @Getter @Setter private VdcHost host;
 
+    public void setZoneID(int zoneID) {
+        this.zoneID = zoneID;
+        propertyChanged("zoneID");
+    }
+
+    public void setCapabilities(String capabilities) {
+        this.capabilities = capabilities;
+        propertyChanged("capabilities");
+    }
+
     public Vdc(String model) {
         this(DSUID.generateV4(), model);
     }
@@ -62,18 +74,130 @@ public abstract class Vdc extends Entity {
 
     public abstract void announceCB(Messages.GenericResponse response);
 
+    /**
+     * Adds a dS device managed by this vDC
+     *
+     * @param device
+     * @return <code>false</code> if a device with the same dSUID is already managed by this vDC
+     */
+    public boolean addDevice(Addressable device) {
+        if (!devices.add(device, getDSUID())) {
+            return false;
+        }
+        if (host != null) {
+            host.addDevice(this, device);
+        }
+        return true;
+    }
+
+    /**
+     * Calls a scene on the given devices of this vDC. Invoked once per vdSM notification with all addressed
+     * devices of this vDC (see {@link SceneFanOut}) on the event loop, so it must not block. The default
+     * implementation posts the call of each device to the device's mailbox; vDCs able to address several
+     * devices at once (e.g. a gateway group command) should override and post the (slow) group command via
+     * {@link #forEachDevice(Messages.Type, Collection, Consumer)} or their own mailbox.
+     *
+     * @param devices addressed devices managed by this vDC
+     * @param notification scene call
+     */
+    public void callScene(Collection<Addressable> devices, Vdcapi.vdsm_NotificationCallScene notification) {
+        forEachDevice(Messages.Type.VDSM_NOTIFICATION_CALL_SCENE, devices, device -> device.callScene(notification));
+    }
+
+    /**
+     * @see #callScene(Collection, Vdcapi.vdsm_NotificationCallScene)
+     */
+    public void saveScene(Collection<Addressable> devices, Vdcapi.vdsm_NotificationSaveScene notification) {
+        forEachDevice(Messages.Type.VDSM_NOTIFICATION_SAVE_SCENE, devices, device -> device.saveScene(notification));
+    }
+
+    /**
+     * @see #callScene(Collection, Vdcapi.vdsm_NotificationCallScene)
+     */
+    public void undoScene(Collection<Addressable> devices, Vdcapi.vdsm_NotificationUndoScene notification) {
+        forEachDevice(Messages.Type.VDSM_NOTIFICATION_UNDO_SCENE, devices, device -> device.undoScene(notification));
+    }
+
+    /**
+     * @see #callScene(Collection, Vdcapi.vdsm_NotificationCallScene)
+     */
+    public void callMinScene(Collection<Addressable> devices, Vdcapi.vdsm_NotificationCallMinScene notification) {
+        forEachDevice(Messages.Type.VDSM_NOTIFICATION_CALL_MIN_SCENE, devices,
+                device -> device.callMinScene(notification));
+    }
+
+    /**
+     * @see #callScene(Collection, Vdcapi.vdsm_NotificationCallScene)
+     */
+    public void setLocalPriority(Collection<Addressable> devices,
+                                 Vdcapi.vdsm_NotificationSetLocalPrio notification) {
+        forEachDevice(Messages.Type.VDSM_NOTIFICATION_SET_LOCAL_PRIO, devices,
+                device -> device.setLocalPriority(notification));
+    }
+
+    /**
+     * @see #callScene(Collection, Vdcapi.vdsm_NotificationCallScene)
+     */
+    public void identify(Collection<Addressable> devices, Vdcapi.vdsm_NotificationIdentify notification) {
+        forEachDevice(Messages.Type.VDSM_NOTIFICATION_IDENTIFY, devices, device -> device.identify(notification));
+    }
+
+    /**
+     * Posts the given command to the mailbox of each device right away, so commands to one device keep their
+     * order while different devices are processed in parallel. Commands rejected by the saturated executor are
+     * re-posted (see {@link NotificationPoster}).
+     *
+     * @param type type of the notification the command belongs to
+     * @param devices addressed devices
+     * @param command command of a single device
+     */
+    protected void forEachDevice(Messages.Type type, Collection<Addressable> devices, Consumer<Addressable> command) {
+        for (Addressable device : devices) {
+            if (host != null) {
+                host.getNotificationPoster().post(device.getDSUID(), type, () -> command.accept(device));
+            } else {
+                command.accept(device);
+            }
+        }
+    }
+
+    /**
+     * Pushes changed properties of this vDC or one of its devices to the connected vdSM. Changes are batched
+     * per push window (see {@link PropertyPushPipeline}).
+     *
+     * @param entity changed entity
+     * @param properties vDC API names of the changed properties
+     */
+    public void pushProperties(Addressable entity, String... properties) {
+        if (host != null) {
+            host.getPushPipeline().push(entity, properties);
+        }
+    }
+
     /**
      * informs the connected vdSM that the given {@link Addressable} has vanished from this vDC
      * @param device
      */
     public void vanish(Addressable device) {
-        Messages.Message.Builder message = Messages.Message.newBuilder();
-        message.setType(Messages.Type.VDC_SEND_VANISH);
-
-        Vdcapi.vdc_SendVanish vanishVdSD =
-                message.getVdcSendVanish().toBuilder().setDSUID(device.getDSUID().toString()).build();
-        message.setVdcSendVanish(vanishVdSD);
-        //TODO ... -> host.send(message.build());
+        if (devices.remove(device.getDSUID()) == null) {
+            log.warn("vanish() -- device '{}' ({}) is not managed by vDC '{}'", device.getName(), device.getDSUID(), getModel());
+            return;
+        }
+        if (host == null) {
+            return;
+        }
+        host.removeDevice(device);
+
+        if (host.isConnected()) {
+            Messages.Message.Builder message = Messages.Message.newBuilder();
+            // the message id is assigned per session by sendNotification()
+            message.setType(Messages.Type.VDC_SEND_VANISH);
+
+            Vdcapi.vdc_SendVanish vanishVdSD =
+                    message.getVdcSendVanish().toBuilder().setDSUID(device.getDSUID().toString()).build();
+            message.setVdcSendVanish(vanishVdSD);
+            host.sendNotification(message.build());
+        }
     }
 
 
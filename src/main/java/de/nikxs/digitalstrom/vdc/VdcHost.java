@@ -1,11 +1,24 @@
 package de.nikxs.digitalstrom.vdc;
 
 import de.nikxs.digitalstrom.vdc.config.VdcProperties;
+import de.nikxs.digitalstrom.vdc.property.Property;
+import de.nikxs.digitalstrom.vdc.property.PropertyEngine;
+import de.nikxs.digitalstrom.vdc.server.PendingRequestTable;
 import de.nikxs.digitalstrom.vdc.server.Request;
+import de.nikxs.digitalstrom.vdc.server.RequestMetrics;
 import de.nikxs.digitalstrom.vdc.server.Session;
+import de.nikxs.digitalstrom.vdc.server.SessionListener;
+import de.nikxs.digitalstrom.vdc.server.SessionState;
 import de.nikxs.digitalstrom.vdc.server.VdcServer;
+import de.nikxs.digitalstrom.vdc.server.dispatch.ExecutionMode;
+import de.nikxs.digitalstrom.vdc.server.dispatch.MessageDispatcher;
+import de.nikxs.digitalstrom.vdc.server.dispatch.OffloadExecutor;
 import de.nikxs.digitalstrom.vdc.util.DSUID;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -15,6 +28,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import vdcapi.Messages;
+import vdcapi.Vdcapi;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -23,15 +37,25 @@ import javax.jmdns.ServiceInfo;
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 import static de.nikxs.digitalstrom.vdc.util.DsUtil.buildGenericResponse;
 
 
 @Slf4j
-@ToString(exclude="dSEntities")
+@ToString(exclude="entities")
 @Component
 public class VdcHost implements Addressable {
 
@@ -42,12 +66,13 @@ public class VdcHost implements Addressable {
     private static final int SUPPORTED_API_VERSION = 3;
     private static final int RESERVED_REQUEST_ID = 0;
 
-    private static final int TIMEOUT_ANNOUNCEMENT = 30; // timespan after an announcement is treated as failed
+    private static final long TIMER_TICK_MILLIS = 10; // resolution of request timeouts and rate limits
 
     /**
      * dS specific unique ID of a vDC host instance
      */
     @Getter
+    @Property
     private DSUID dSUID;
 
     /**
@@ -55,13 +80,24 @@ public class VdcHost implements Addressable {
      */
     @Getter
     @Setter
+    @Property(writable = true)
     @Value("${vdc.host.name:'default-vDC-Host'}")
     private String name;
 
     /**
-     * Indicator whether vDC host is connected to a vdSM
+     * Sessions of the connected vdSMs by their channel (empty while listening)
      */
-    private Session session;
+    private final ConcurrentMap<Channel, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * maximum number of concurrent vdSM sessions
+     */
+    private final int maxSessions;
+
+    /**
+     * Listeners notified about session state changes
+     */
+    private final List<SessionListener> sessionListeners = new CopyOnWriteArrayList<>();
 
     private VdcProperties config;
 
@@ -76,13 +112,69 @@ public class VdcHost implements Addressable {
     /**
      * List of all dS devices managed by this host
      */
-    private HashMap<DSUID, Addressable> dSEntities = new HashMap<>();
+    private final EntityRegistry entities = new EntityRegistry();
 
     /**
-     * Cache which holds temporary all requests to the connected vdSM till the corresponding response is received
-     * and properly processed
+     * Timer failing requests which have not been answered by the vdSM within {@link #requestTimeout}, shared
+     * with the {@link ChannelValueCoalescer} (rate limit), the {@link PropertyPushPipeline} (push window), the
+     * {@link AnnouncementScheduler} (retry backoff) and the {@link NotificationPoster} (re-posts)
      */
-    private HashMap<Integer, Request> requestCache = new HashMap<>();
+    private final HashedWheelTimer requestTimer =
+            new HashedWheelTimer(new DefaultThreadFactory("vdc-request-timer", true), TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+    /**
+     * time [ms] after which a request without response is treated as failed
+     */
+    private final long requestTimeout;
+
+    /**
+     * In-flight count and response latency of requests sent to the vdSM
+     */
+    @Getter
+    private final RequestMetrics requestMetrics = new RequestMetrics();
+
+    /**
+     * Executor of device level business logic (message processors registered with {@link ExecutionMode#OFFLOAD},
+     * {@link Addressable#pong(Messages.Message)}, {@link Addressable#bye(Messages.Message)}) serialized per dSUID
+     */
+    @Getter
+    private final OffloadExecutor offloadExecutor;
+
+    /**
+     * Keeps only the latest dim/ output channel value per device and channel until the device applies it
+     */
+    @Getter
+    private final ChannelValueCoalescer channelValueCoalescer;
+
+    /**
+     * Posts the device commands of scene/ identify/ local priority notifications, re-posting rejected ones
+     */
+    @Getter
+    private final NotificationPoster notificationPoster;
+
+    /**
+     * Batches property changes pushed to the vdSM
+     */
+    @Getter
+    private final PropertyPushPipeline pushPipeline;
+
+    /**
+     * Announces vDCs and devices to the vdSM
+     */
+    @Getter
+    private final AnnouncementScheduler announcementScheduler;
+
+    /**
+     * Answers getProperty/ setProperty requests from the {@link Property} fields of the addressed entity
+     */
+    private final PropertyEngine propertyEngine = new PropertyEngine();
+
+    /**
+     * Routes incoming vdSM messages to the registered processors. vDCs and devices may register further
+     * processors (e.g. for property access or scene notifications).
+     */
+    @Getter
+    private final MessageDispatcher dispatcher;
 
     /**
      * Multi-cast DNS implementation for service (vDC Host) registration using Apple's Bonjour/ Zeroconf/ .
@@ -96,6 +188,20 @@ public class VdcHost implements Addressable {
     public VdcHost(VdcProperties config, VdcServer server) {
         this.config = config;
         this.server = server;
+        this.requestTimeout = config.getHost().getRequestTimeout();
+        this.maxSessions = config.getHost().getMaxSessions();
+        this.offloadExecutor = new OffloadExecutor(config.getHost().isOffloadVirtualThreads(),
+                config.getHost().getOffloadThreads(), config.getHost().getOffloadQueueCapacity());
+        this.dispatcher = new MessageDispatcher(offloadExecutor);
+        this.channelValueCoalescer = new ChannelValueCoalescer(entities, offloadExecutor, requestTimer,
+                config.getHost().getChannelApplyInterval());
+        this.notificationPoster = new NotificationPoster(offloadExecutor, requestTimer,
+                config.getHost().getNotificationMaxAttempts(), config.getHost().getNotificationRetryDelay());
+        this.pushPipeline = new PropertyPushPipeline(this, requestTimer, config.getHost().getPushWindow(),
+                config.getHost().getMaxPendingPushDevices());
+        this.announcementScheduler = new AnnouncementScheduler(this, requestTimer,
+                config.getHost().getAnnounceWindow(), config.getHost().getAnnounceMaxAttempts(),
+                config.getHost().getAnnounceRetryBackoff());
 
         DSUID tempdsUID = config.getHost().getDsuid();
         if(tempdsUID != null) {
@@ -103,16 +209,41 @@ public class VdcHost implements Addressable {
         } else {
             this.dSUID = DEFAULT_HOST_DSUID;
         }
-        dSEntities.put(this.getDSUID(), this);
+        entities.add(this);
+        registerProcessors();
+    }
+
+    /**
+     * Registers the processors of the session related messages handled by the host itself. They are cheap
+     * and run directly on the event loop. Pings and property requests are answered by the addressed device
+     * (which might block), so they are offloaded.
+     */
+    private void registerProcessors() {
+        dispatcher.register(Messages.Type.VDSM_REQUEST_HELLO, ExecutionMode.INLINE, this::processHello);
+        dispatcher.register(Messages.Type.VDSM_SEND_PING, ExecutionMode.OFFLOAD, this::processPing);
+        dispatcher.register(Messages.Type.VDSM_REQUEST_GET_PROPERTY, ExecutionMode.OFFLOAD, this::processGetProperty);
+        dispatcher.register(Messages.Type.VDSM_REQUEST_SET_PROPERTY, ExecutionMode.OFFLOAD, this::processSetProperty);
+        dispatcher.register(Messages.Type.VDSM_SEND_BYE, ExecutionMode.INLINE, this::processBye);
+        dispatcher.register(Messages.Type.VDSM_SEND_REMOVE, ExecutionMode.INLINE, this::processRemove);
+        dispatcher.register(Messages.Type.GENERIC_RESPONSE, ExecutionMode.INLINE, (channel, response) -> {
+            processGenericResponse(channel, response);
+            return null;
+        });
+
+        // multi-device scene notifications are fanned out per vDC
+        new SceneFanOut(entities, notificationPoster, channelValueCoalescer).register(dispatcher);
+        channelValueCoalescer.register(dispatcher);
     }
 
     /**
-     * Handle a incoming hello() request coming from vdSM.
+     * Handle a incoming hello() request coming from vdSM. Each vdSM connection gets its own session, up to
+     * {@link VdcProperties.Host#getMaxSessions()} of them at the same time.
      *
+     * @param channel connection the request has been received on
      * @param request incoming request
      * @return hello() response
      */
-    public Messages.Message processHello(Messages.Message request) {
+    public Messages.Message processHello(Channel channel, Messages.Message request) {
 
         if (!request.hasMessageId() || !request.hasVdsmRequestHello() || !request.getVdsmRequestHello().hasDSUID()) {
             log.error("hello() -- No message ID!");
@@ -124,29 +255,47 @@ public class VdcHost implements Addressable {
             return buildGenericResponse(Messages.ResultCode.ERR_INCOMPATIBLE_API, request.getMessageId());
         }
 
-        if(!isConnected()) {
-            session = new Session(DSUID.fromDSUID(request.getVdsmRequestHello().getDSUID()));
-            log.info("hello() -- New connection to vdSM ({}) established", session.getVdSMdSUID());
-
-            return Messages.Message.newBuilder()
-                    .setType(Messages.Type.VDC_RESPONSE_HELLO)
-                    .setMessageId(request.getMessageId())
-                    .setVdcResponseHello(request.getVdcResponseHello().toBuilder().setDSUID(getDSUID().toString()).build())
-                    .build();
-        } else if (isConnected() && session.getVdSMdSUID().equals(DSUID.fromDSUID(request.getVdsmRequestHello().getDSUID()))) {
-            log.info("hello() -- vdSM ({}) request renewing the connection", request.getVdsmRequestHello().getDSUID());
+        if (channel == null) {
+            log.error("hello() -- Unknown vdSM connection. Dropping this request");
+            return buildGenericResponse(Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE, request.getMessageId());
+        }
 
-            //@ToDo: May be the reconnect signal should be forwarded to managed vDCs
+        DSUID vdSM = DSUID.fromDSUID(request.getVdsmRequestHello().getDSUID());
+        Session newSession;
+        synchronized (sessions) {
+            Session existing = sessions.get(channel);
+            if (existing != null && existing.isVdsm(vdSM)) {
+                log.info("hello() -- vdSM ({}) request renewing the connection", vdSM);
+
+                //@ToDo: May be the reconnect signal should be forwarded to managed vDCs
+
+                return helloResponse(request);
+            } else if (existing != null) {
+                log.error("hello() -- Connection already used by another vdSM ({}). Dropping this request",
+                        existing.getVdSMdSUID());
+                return buildGenericResponse(Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE, request.getMessageId());
+            } else if (sessions.size() >= maxSessions) {
+                log.error("hello() -- Already connected to {} vdSMs. Dropping request of vdSM ({})", maxSessions, vdSM);
+                return buildGenericResponse(Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE, request.getMessageId());
+            }
 
-            return Messages.Message.newBuilder()
-                    .setType(Messages.Type.VDC_RESPONSE_HELLO)
-                    .setMessageId(request.getMessageId())
-                    .setVdcResponseHello(request.getVdcResponseHello().toBuilder().setDSUID(getDSUID().toString()).build())
-                    .build();
-        } else {
-            log.error("hello() -- Already connected to another vdSM. Dropping this request");
-            return buildGenericResponse(Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE, request.getMessageId());
+            newSession = new Session(vdSM, channel, new PendingRequestTable(config.getHost().getMaxPendingRequests(),
+                    requestTimeout, TimeUnit.MILLISECONDS));
+            sessions.put(channel, newSession);
         }
+        log.info("hello() -- New connection to vdSM ({}) established", vdSM);
+        stateChanged(newSession, SessionState.LISTENING, SessionState.HELLO_RECEIVED);
+        startAnnouncing(newSession);
+
+        return helloResponse(request);
+    }
+
+    private Messages.Message helloResponse(Messages.Message request) {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDC_RESPONSE_HELLO)
+                .setMessageId(request.getMessageId())
+                .setVdcResponseHello(request.getVdcResponseHello().toBuilder().setDSUID(getDSUID().toString()).build())
+                .build();
     }
 
     /**
@@ -172,34 +321,216 @@ public class VdcHost implements Addressable {
         }
     }
 
+    /**
+     * Handle a incoming getProperty() request coming from vdSM by evaluating the query against the properties
+     * of the addressed dS entity
+     *
+     * @param request incoming request
+     * @return getProperty() response or {@link vdcapi.Messages.GenericResponse} with error code
+     */
+    public Messages.Message processGetProperty(Messages.Message request) {
+        if (!request.hasVdsmRequestGetProperty() || !request.getVdsmRequestGetProperty().hasDSUID()) {
+            log.warn("getProperty() -- Incomplete request. No payload or dSUID");
+            return buildGenericResponse(Messages.ResultCode.ERR_MISSING_DATA, request.getMessageId());
+        }
+
+        Vdcapi.vdsm_RequestGetProperty query = request.getVdsmRequestGetProperty();
+        Addressable entity = entities.get(query.getDSUID());
+        if (entity == null) {
+            log.warn("getProperty() -- Unknown dS entity ({})", query.getDSUID());
+            return buildGenericResponse(Messages.ResultCode.ERR_NOT_FOUND, request.getMessageId());
+        }
+
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDC_RESPONSE_GET_PROPERTY)
+                .setMessageId(request.getMessageId())
+                .setVdcResponseGetProperty(Vdcapi.vdc_ResponseGetProperty.newBuilder()
+                        .addAllProperties(propertyEngine.getProperties(entity, query.getQueryList())))
+                .build();
+    }
+
+    /**
+     * Handle a incoming setProperty() request coming from vdSM by applying the given values to the writable
+     * properties of the addressed dS entity
+     *
+     * @param request incoming request
+     * @return {@link vdcapi.Messages.GenericResponse} with the result of the request
+     */
+    public Messages.Message processSetProperty(Messages.Message request) {
+        if (!request.hasVdsmRequestSetProperty() || !request.getVdsmRequestSetProperty().hasDSUID()) {
+            log.warn("setProperty() -- Incomplete request. No payload or dSUID");
+            return buildGenericResponse(Messages.ResultCode.ERR_MISSING_DATA, request.getMessageId());
+        }
+
+        Vdcapi.vdsm_RequestSetProperty properties = request.getVdsmRequestSetProperty();
+        Addressable entity = entities.get(properties.getDSUID());
+        if (entity == null) {
+            log.warn("setProperty() -- Unknown dS entity ({})", properties.getDSUID());
+            return buildGenericResponse(Messages.ResultCode.ERR_NOT_FOUND, request.getMessageId());
+        }
+
+        // a changed zone is reindexed by the entity's setter
+        Messages.ResultCode result = propertyEngine.setProperties(entity, properties.getPropertiesList());
+        return buildGenericResponse(result, request.getMessageId());
+    }
+
     /**
      * Handle incoming processBye() request. If the given dSUID belongs to this {@link VdcHost} the virtual
-     * vdSM session wil be terminated and all managed vDC becomes inactive. The bye() request will also be
-     * forwarded to all known dS devices manged by this host
+     * vdSM session wil be terminated. Once the last vdSM session has been terminated all managed vDC become
+     * inactive, i.e. the bye() request is forwarded to all known dS devices manged by this host
      *
+     * @param channel connection the request has been received on
      * @param request incoming request
      * @return {@link vdcapi.Messages.GenericResponse} with "OK" code if the given dSUID belongs to a known vDC. Otherwise {@code null}
      */
-    public Messages.Message processBye(Messages.Message request) {
+    public Messages.Message processBye(Channel channel, Messages.Message request) {
         if(!request.hasVdsmSendBye() || !request.getVdsmSendBye().hasDSUID()) {
             log.warn("bye() -- Incomplete request. No payload or dSUID");
             return null;
         }
 
-        if (isConnected() && session.getVdSMdSUID().equals(DSUID.fromDSUID(request.getVdsmSendBye().getDSUID()))) {
+        Session ending = getSession(channel);
+        if (ending != null && ending.isVdsm(DSUID.fromDSUID(request.getVdsmSendBye().getDSUID()))) {
             log.info("bye() -- Invalidate session to vdSM ({})", request.getVdsmSendBye().getDSUID());
-            session.invalidate();
+            boolean lastSession;
+            synchronized (sessions) {
+                endSession(ending);
+                lastSession = sessions.isEmpty();
+            }
 
-            //bye() request might also be for interest to all vDCs
-            dSEntities.forEach((k, v)  -> v.bye(request));
+            //bye() request might also be for interest to all vDCs (in order with their other offloaded work)
+            if (lastSession) {
+                entities.snapshot().forEach(
+                        entity -> offloadExecutor.execute(entity.getDSUID(), () -> entity.bye(request)));
+            } else {
+                log.info("bye() -- {} vdSM session(s) still connected, bye() not forwarded", sessions.size());
+            }
 
             return buildGenericResponse(Messages.ResultCode.ERR_OK, request.getMessageId());
         } else {
-            log.warn("bye() -- Dropped vdSM request. Unknown dSUID ({})", request.getVdsmSendPing().getDSUID());
+            log.warn("bye() -- Dropped vdSM request. Unknown dSUID ({})", request.getVdsmSendBye().getDSUID());
             return null;
         }
     }
 
+    /**
+     * Announces all vDCs and their devices to the vdSM of a new session. Runs off the event loop, so the
+     * announcements are written after the hello() response. If the offload executor is saturated, starting
+     * is retried after the announcement retry backoff as long as the session is connected.
+     */
+    private void startAnnouncing(Session newSession) {
+        boolean started = offloadExecutor.tryExecute(null, () -> {
+            if (transition(newSession, SessionState.HELLO_RECEIVED, SessionState.ANNOUNCING)) {
+                announcementScheduler.announceAll(newSession).whenComplete(
+                        (report, cause) -> transition(newSession, SessionState.ANNOUNCING, SessionState.READY));
+            }
+        });
+        if (!started && newSession.isConnected()) {
+            long backoff = config.getHost().getAnnounceRetryBackoff();
+            log.warn("hello() -- Offload executor saturated, announcing to vdSM ({}) in {} ms",
+                    newSession.getVdSMdSUID(), backoff);
+            requestTimer.newTimeout(t -> {
+                if (newSession.isConnected()) {
+                    startAnnouncing(newSession);
+                }
+            }, backoff, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Terminates the given session and fails all requests waiting for a response of its vdSM
+     */
+    private void endSession(Session ended) {
+        SessionState previous = ended.invalidate();
+        sessions.remove(ended.getChannel(), ended);
+        if (previous == SessionState.BYE) {
+            return;
+        }
+        ended.getRequests().clear(pending -> pending.future().completeExceptionally(
+                new IllegalStateException("vdSM session terminated")));
+        stateChanged(ended, previous, SessionState.BYE);
+    }
+
+    /**
+     * Called by the {@link VdcServer} when a vdSM connection has been closed
+     *
+     * @param channel closed channel
+     */
+    public void connectionClosed(Channel channel) {
+        Session closed = sessions.get(channel);
+        if (closed != null) {
+            log.info("vdSM ({}) connection closed", closed.getVdSMdSUID());
+            endSession(closed);
+        }
+    }
+
+    private boolean transition(Session target, SessionState expected, SessionState next) {
+        if (target.transition(expected, next)) {
+            stateChanged(target, expected, next);
+            return true;
+        }
+        return false;
+    }
+
+    private void stateChanged(Session target, SessionState previous, SessionState current) {
+        log.debug("session to vdSM ({}): {} -> {}", target.getVdSMdSUID(), previous, current);
+        for (SessionListener listener : sessionListeners) {
+            try {
+                listener.stateChanged(target, previous, current);
+            } catch (RuntimeException e) {
+                log.error("Session listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * @param listener listener notified about state changes of the vdSM session
+     */
+    public void addSessionListener(SessionListener listener) {
+        sessionListeners.add(listener);
+    }
+
+    public void removeSessionListener(SessionListener listener) {
+        sessionListeners.remove(listener);
+    }
+
+    /**
+     * @return state of the primary vdSM session ({@link SessionState#LISTENING} if there is none)
+     */
+    public SessionState getSessionState() {
+        Session primary = getPrimarySession();
+        return primary != null ? primary.getState() : SessionState.LISTENING;
+    }
+
+    /**
+     * @return sessions of all connected vdSMs
+     */
+    public Collection<Session> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    /**
+     * @return the longest established session of the connected vdSMs or <code>null</code>. Messages not
+     * related to a specific vdSM (e.g. announcements of {@link Vdc#announce()}) are sent to this one.
+     */
+    public Session getPrimarySession() {
+        Session primary = null;
+        for (Session candidate : sessions.values()) {
+            if (candidate.isConnected() && (primary == null || candidate.getSince() - primary.getSince() < 0)) {
+                primary = candidate;
+            }
+        }
+        return primary;
+    }
+
+    /**
+     * @return session of the given channel, the primary session if no channel is given
+     */
+    private Session getSession(Channel channel) {
+        Session found = channel != null ? sessions.get(channel) : getPrimarySession();
+        return found != null && found.isConnected() ? found : null;
+    }
+
     public Messages.Message processRemove(Messages.Message request) {
         if(!request.hasVdsmSendRemove() || request.getVdsmSendRemove().hasDSUID()) {
             log.warn("remove() -- Incomplete request. No payload or dSUID");
@@ -208,7 +539,23 @@ public class VdcHost implements Addressable {
         return null;
     }
 
+    /**
+     * Completes the pending request of the primary session answered by the given response
+     *
+     * @see #processGenericResponse(Channel, Messages.Message)
+     */
     public void processGenericResponse(Messages.Message response) {
+        processGenericResponse(null, response);
+    }
+
+    /**
+     * Completes the pending request answered by the given response. Message ids are allocated per session, so
+     * the request is looked up in the session of the channel the response has been received on.
+     *
+     * @param channel connection the response has been received on
+     * @param response incoming response
+     */
+    public void processGenericResponse(Channel channel, Messages.Message response) {
         if (!response.hasMessageId() || response.getMessageId() == RESERVED_REQUEST_ID) {
             log.error("genericResponse(): Invalid or unknown vdSM response (message id: '{}' / desc.: {})",
                     response.getMessageId(),
@@ -216,15 +563,24 @@ public class VdcHost implements Addressable {
 
             return;
         }
-        if (!response.hasGenericResponse() || response.getGenericResponse().hasCode()) {
+        if (!response.hasGenericResponse() || !response.getGenericResponse().hasCode()) {
             log.error("genericResponse(): Invalid vdSM response payload");
             return;
         }
 
-        //find corresponding request and delegate its embedded callback method
-        Request request = requestCache.get(response.hasMessageId());
+        Session responding = getSession(channel);
+        if (responding == null) {
+            log.warn("genericResponse(): No vdSM session for message id '{}'", response.getMessageId());
+            return;
+        }
+
+        //find corresponding request and complete it (which implicitly calls the embedded callback)
+        Request request = responding.getRequests().remove(response.getMessageId());
         if(request != null) {
-            request.callback().accept(response.getGenericResponse());
+            request.future().complete(response.getGenericResponse());
+        } else {
+            log.warn("genericResponse(): No pending request for message id '{}' (already timed out?)",
+                    response.getMessageId());
         }
     }
 
@@ -232,16 +588,124 @@ public class VdcHost implements Addressable {
      * Send the given {@link vdcapi.Messages.Message } to connected vDSM
      *
      * @param message
+     * @param cb callback invoked with the response of the vdSM
      */
     public void send(Messages.Message message, Consumer<Messages.GenericResponse> cb) {
-        if(isConnected() && message != null && message.isInitialized()) {
-            Request request = Request.builder().id(message.getMessageId()).callback(cb).build();
-            requestCache.put(request.id(), request);
-            log.debug("[request-id: {}] send () msg: {}", request.id(), message);
-            server.send(message);
+        final int id = message != null ? message.getMessageId() : RESERVED_REQUEST_ID;
+        sendAsync(message).whenComplete((response, cause) -> {
+            if (cause != null) {
+                log.error("send() -- [request-id: {}] failed: {}", id, cause.getMessage());
+            } else {
+                cb.accept(response);
+            }
+        });
+    }
+
+    /**
+     * Send the given {@link vdcapi.Messages.Message } to connected vDSM without blocking the calling thread
+     * (which might also be an event loop thread). The request fails with a {@link TimeoutException} if no
+     * response is received within the configured request timeout.
+     *
+     * @param message
+     * @return future completed with the vdSM's response
+     */
+    public CompletableFuture<Messages.GenericResponse> sendAsync(Messages.Message message) {
+        return sendAsync(message, requestTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send the given {@link vdcapi.Messages.Message } to the vdSM of the primary session without blocking the
+     * calling thread (which might also be an event loop thread).
+     *
+     * @param message
+     * @param timeout time to wait for the vdSM's response
+     * @param unit unit of the given timeout
+     * @return future completed with the vdSM's response or exceptionally if the message could not be sent
+     * or the timeout elapsed
+     */
+    public CompletableFuture<Messages.GenericResponse> sendAsync(Messages.Message message, long timeout,
+                                                                 TimeUnit unit) {
+        return sendAsync(getPrimarySession(), message, timeout, unit);
+    }
+
+    /**
+     * Send the given {@link vdcapi.Messages.Message } to the vdSM of the given session
+     *
+     * @param target session of the addressed vdSM, the message id must have been allocated by this session
+     * @param message
+     * @return future completed with the vdSM's response
+     * @see #sendAsync(Session, Messages.Message, long, TimeUnit)
+     */
+    public CompletableFuture<Messages.GenericResponse> sendAsync(Session target, Messages.Message message) {
+        return sendAsync(target, message, requestTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send the given {@link vdcapi.Messages.Message } to the vdSM of the given session without blocking the
+     * calling thread. The response is only accepted from the same vdSM connection.
+     *
+     * @param target session of the addressed vdSM, the message id must have been allocated by this session
+     * @param message
+     * @param timeout time to wait for the vdSM's response
+     * @param unit unit of the given timeout
+     * @return future completed with the vdSM's response or exceptionally if the message could not be sent
+     * or the timeout elapsed
+     */
+    public CompletableFuture<Messages.GenericResponse> sendAsync(Session target, Messages.Message message,
+                                                                 long timeout, TimeUnit unit) {
+        if(target == null || !target.isConnected() || message == null || !message.isInitialized()) {
+            return failedFuture(
+                    new IllegalStateException("Host not connected to vdSM or message not properly initialized"));
+        }
+
+        PendingRequestTable requests = target.getRequests();
+        Request request = Request.builder().id(message.getMessageId()).build();
+        if (!requests.put(request)) {
+            return failedFuture(new IllegalStateException("Request with id " + request.id()
+                    + " collides with a pending request (more than " + requests.capacity() + " in flight)"));
+        }
+        requestMetrics.requestSent();
+
+        Timeout deadline = requestTimer.newTimeout(
+                t -> expire(requests, request, unit.toMillis(timeout)), timeout, unit);
+        request.future().whenComplete((response, cause) -> {
+            deadline.cancel();
+            requests.remove(request);
+            if (cause == null) {
+                requestMetrics.responseReceived(System.nanoTime() - request.timestamp());
+            } else if (cause instanceof TimeoutException) {
+                requestMetrics.requestTimedOut();
+            } else {
+                requestMetrics.requestFailed();
+            }
+        });
+
+        log.debug("[request-id: {}] send () msg: {}", request.id(), message);
+        ChannelFuture cf = server.send(target.getChannel(), message);
+        if (cf == null) {
+            request.future().completeExceptionally(new IllegalStateException("vdSM connection lost"));
         } else {
-            log.error("send() -- Host not connected to vdSM or message not properly initialized --> Do nothing");
+            cf.addListener(f -> {
+                if (!f.isSuccess()) {
+                    request.future().completeExceptionally(f.cause());
+                }
+            });
         }
+        return request.future();
+    }
+
+    private void expire(PendingRequestTable requests, Request request, long timeoutMillis) {
+        if (requests.remove(request)) {
+            log.warn("[request-id: {}] no vdSM response within {} ms", request.id(), timeoutMillis);
+            request.future().completeExceptionally(new TimeoutException(
+                    "No vdSM response for request " + request.id() + " within " + timeoutMillis + " ms"));
+        }
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable cause) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
     }
 
     public void sendError(Messages.Message message) {
@@ -261,49 +725,145 @@ public class VdcHost implements Addressable {
     public void addVdc(@NotNull Vdc vDC) {
         Assert.notNull(vDC, "vDC must not 'null'");
         vDC.setHost(this);
-        //put vDC as well as all of its managed dS devices into the overall dS entity map
-        dSEntities.put(vDC.getDSUID(), vDC);
-        vDC.getDevices().forEach(dSEntities::putIfAbsent);
-
-        if(isConnected()) {
-            //@todo: announce new vDC to connected vdSM
-            vDC.announce();
-            //announceVDC(vDC);
+        //put vDC as well as all of its managed dS devices into the overall dS entity registry
+        entities.add(vDC);
+        attachMailbox(vDC);
+        vDC.getDevices().snapshot().forEach(device -> {
+            entities.add(device, vDC.getDSUID());
+            attachMailbox(device);
+        });
+
+        for (Session connected : sessions.values()) {
+            if (connected.isConnected()) {
+                announcementScheduler.announce(connected, Collections.singletonList(vDC));
+            }
         }
     }
 
     public Addressable getEntity(DSUID dsUID) {
-        return dSEntities.get(dsUID);
+        return entities.get(dsUID);
+    }
+
+    /**
+     * @return registry of all dS entities (vDCs and devices) managed by this host
+     */
+    public EntityRegistry getEntities() {
+        return entities;
+    }
+
+    /**
+     * Registers a device added to the given vDC after the vDC has been added to this host and announces it to
+     * the connected vdSMs
+     */
+    void addDevice(Vdc vDC, Addressable device) {
+        entities.add(device, vDC.getDSUID());
+        attachMailbox(device);
+
+        for (Session connected : sessions.values()) {
+            if (connected.isConnected()) {
+                announcementScheduler.announceDevices(connected, vDC, Collections.singletonList(device));
+            }
+        }
+    }
+
+    /**
+     * Removes a vanished device from the overall dS entity registry
+     */
+    void removeDevice(Addressable device) {
+        entities.remove(device.getDSUID());
+        if (device instanceof Entity) {
+            ((Entity) device).setMailbox(null);
+        }
+        offloadExecutor.release(device.getDSUID());
+        channelValueCoalescer.remove(device.getDSUID());
+    }
+
+    /**
+     * Assigns the given entity a pinned mailbox of the {@link #offloadExecutor} (if enabled). Offloaded
+     * commands are keyed by dSUID, so they pass through this mailbox whether they are posted to it directly
+     * or not.
+     */
+    private void attachMailbox(Addressable entity) {
+        if (config.getHost().isDeviceMailboxes() && entity instanceof Entity) {
+            ((Entity) entity).setMailbox(offloadExecutor.mailbox(entity.getDSUID()));
+        }
     }
 
+    /**
+     * Send the given {@link vdcapi.Messages.Message } to all connected vDSMs without expecting a response
+     * (e.g. vanish or push notifications, which are only answered in case of an error). Each vdSM receives
+     * the message with a message id of its own session. If several vdSMs are connected the message is
+     * serialized only once (see {@link VdcServer#broadcast(Messages.Message, Collection, ToIntFunction)}).
+     *
+     * @param message
+     */
+    public void sendNotification(Messages.Message message) {
+        if(isConnected() && message != null && message.isInitialized()) {
+            Map<Channel, Session> targets = new LinkedHashMap<>();
+            sessions.forEach((channel, connected) -> {
+                if (connected.isConnected()) {
+                    targets.put(channel, connected);
+                }
+            });
+            if (targets.size() == 1) {
+                Session connected = targets.values().iterator().next();
+                Messages.Message notification = message.toBuilder()
+                        .setMessageId(connected.getMessageId())
+                        .build();
+                log.debug("[message-id: {}] send () msg: {}", notification.getMessageId(), notification);
+                server.send(connected.getChannel(), notification);
+            } else if (!targets.isEmpty()) {
+                log.debug("broadcast () to {} vdSMs msg: {}", targets.size(), message);
+                server.broadcast(message, targets.keySet(), channel -> targets.get(channel).getMessageId());
+            }
+        } else {
+            log.error("sendNotification() -- Host not connected to vdSM or message not properly initialized");
+        }
+    }
+
+    /**
+     * @return next message id of the primary session
+     */
     public int getMessageId() {
-        if(!isConnected())
+        Session primary = getPrimarySession();
+        if(primary == null)
+        {
+            throw new IllegalStateException("vDC Host not connected to vdSM");
+        }
+        return primary.getMessageId();
+    }
+
+    /**
+     * Reserves a contiguous block of message ids (e.g. for a batch of announcements)
+     *
+     * @param count number of ids
+     * @return first id of the block [first, first + count)
+     */
+    public int reserveMessageIds(int count) {
+        Session primary = getPrimarySession();
+        if(primary == null)
         {
             throw new IllegalStateException("vDC Host not connected to vdSM");
         }
-        return session.getMessageId();
+        return primary.reserveMessageIds(count);
     }
 
+    /**
+     * @return <code>true</code> if at least one vdSM is connected
+     */
     public boolean isConnected() {
-        return server.isConnected() && session != null ? session.isConnected() : false;
+        return server.isConnected() && getPrimarySession() != null;
     }
 
     /**
-     * start vDC Host
+     * start vDC Host. Returns as soon as the server is listening; vDCs and devices are announced when a vdSM
+     * says hello (see {@link #addSessionListener(SessionListener)})
      */
     @PostConstruct
     public void start() throws InterruptedException, IOException {
         try {
             server.start(this);
             registerHost();
-            waitUntilConnectionIsEstablished();
-
-            //announce all already known vDCs
-            log.info("start announcing vDC(s)");
-            dSEntities.entrySet()
-                    .stream()
-                    .filter(entity -> entity instanceof Vdc)
-                    .forEach(entity -> ((Vdc)entity).announce());
         } catch (InterruptedException | IOException e) {
             log.error("VdcHost failed to start, " + e.getMessage(), e);
             throw e;
@@ -328,20 +888,6 @@ public class VdcHost implements Addressable {
 //    // start initialisation of class containers
 //    initializeNextVdc(aCompletedCB, aFactoryReset, vdcs.begin());
 
-    /**
-     *
-     * @throws InterruptedException
-     */
-    private void waitUntilConnectionIsEstablished() throws InterruptedException {
-        int waitingTime = 0;
-        while(!isConnected()) {
-            log.info("Waiting for vdSM sending 'hello()' for another 5 sec. ");
-            TimeUnit.SECONDS.sleep(1);
-            waitingTime=+1;
-        }
-        log.info("vdSM connection established after {} seconds", waitingTime);
-    }
-
     /**
      * Register vDC Host as network service at mDNS so it can be discovered by a running vdSM in the same network.
      * Will be automatically called by Spring (Boot) framework on JVM after object initialization
@@ -367,14 +913,18 @@ public class VdcHost implements Addressable {
     }
 
     /**
-     * Unregister vDC Server from mDNS. Will be automatically called by Spring (Boot) framework on JVM shutdown
+     * Unregister vDC Server from mDNS and stop the host (timers, offload executor and server). Will be
+     * automatically called by Spring (Boot) framework on JVM shutdown
      */
     @PreDestroy
-    private void unregisterHost() {
+    public void stop() {
         if (jmDNS != null) {
             log.info("Unregister vDC Server via JmDBS");
             jmDNS.unregisterAllServices();
         }
+        requestTimer.stop();
+        pushPipeline.stop();
+        offloadExecutor.shutdown();
         server.stop();
     }
 
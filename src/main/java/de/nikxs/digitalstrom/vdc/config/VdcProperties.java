@@ -1,5 +1,6 @@
 package de.nikxs.digitalstrom.vdc.config;
 
+import de.nikxs.digitalstrom.vdc.server.TransportType;
 import de.nikxs.digitalstrom.vdc.util.DSUID;
 import io.netty.channel.ChannelOption;
 import lombok.Getter;
@@ -54,6 +55,31 @@ public class VdcProperties {
         @Max(65535)
         private int port = 0;
 
+        /**
+         * Netty transport (default: NIO). EPOLL falls back to NIO if the native transport is not available.
+         */
+        @NotNull
+        private TransportType transport = TransportType.NIO;
+
+        /**
+         * number of threads accepting vdSM connections (default: 1)
+         */
+        @Min(1)
+        private int acceptorThreads = 1;
+
+        /**
+         * number of event loop threads serving the vdSM connections. 0 uses Netty's default of twice the number
+         * of cores (default: 0)
+         */
+        @Min(0)
+        private int workerThreads = 0;
+
+        /**
+         * bind one listening socket per acceptor thread with <tt>SO_REUSEPORT</tt>, so the kernel spreads new
+         * connections across them. Requires the EPOLL transport (default: false)
+         */
+        private boolean reusePort = false;
+
         /**
          * [Netty] keep alive (default: true)
          *
@@ -95,6 +121,45 @@ public class VdcProperties {
          * @see ChannelOption#SO_SNDBUF
          */
         private int soSndbuf = 1024 * 64;
+
+        /**
+         * decode inbound vDC messages without copying their body. The protobuf message is parsed directly from
+         * a retained slice of the receive buffer (default: true)
+         */
+        private boolean zeroCopyDecoding = true;
+
+        /**
+         * consolidate flushes of outbound messages: all responses to one read are flushed at once and messages
+         * sent by the vDC host are flushed per batch window (default: true)
+         */
+        private boolean flushConsolidation = true;
+
+        /**
+         * number of pending (not yet flushed) messages which enforces an immediate flush (default: 32)
+         */
+        @Min(1)
+        private int maxPendingFlushes = 32;
+
+        /**
+         * maximum time [µs] a message sent outside of a read is held back before it is flushed. 0 flushes
+         * immediately (default: 200)
+         */
+        @Min(0)
+        private long maxFlushDelayMicros = 200;
+
+        /**
+         * [Netty] outbound buffer size at which a channel becomes writable again (default: 1024 * 32)
+         *
+         * @see ChannelOption#WRITE_BUFFER_WATER_MARK
+         */
+        private int writeBufferLowWaterMark = 1024 * 32;
+
+        /**
+         * [Netty] outbound buffer size at which a channel becomes unwritable (default: 1024 * 64)
+         *
+         * @see ChannelOption#WRITE_BUFFER_WATER_MARK
+         */
+        private int writeBufferHighWaterMark = 1024 * 64;
     }
 
     @ToString
@@ -117,5 +182,105 @@ public class VdcProperties {
          */
         private String name;
 
+        /**
+         * time [ms] after which a request sent to the vdSM (e.g. an announcement) is treated as failed if no
+         * response has been received (default: 30000)
+         */
+        @Min(1)
+        private long requestTimeout = 30000;
+
+        /**
+         * maximum number of requests waiting for a vdSM response, rounded up to the next power of two
+         * (default: 1024)
+         */
+        @Min(1)
+        private int maxPendingRequests = 1024;
+
+        /**
+         * maximum number of vdSMs connected at the same time (e.g. a redundant pair of dSS). Each of them has
+         * its own session with own message ids and pending requests, further hello() requests are rejected
+         * (default: 2)
+         */
+        @Min(1)
+        private int maxSessions = 2;
+
+        /**
+         * run offloaded vDC/device business logic on virtual threads if supported by the JVM (default: true)
+         */
+        private boolean offloadVirtualThreads = true;
+
+        /**
+         * number of threads running offloaded vDC/device business logic if virtual threads are not used
+         * (default: 16)
+         */
+        @Min(1)
+        private int offloadThreads = 16;
+
+        /**
+         * maximum number of offloaded tasks waiting for a thread if virtual threads are not used. Further tasks
+         * are dropped (default: 4096)
+         */
+        @Min(1)
+        private int offloadQueueCapacity = 4096;
+
+        /**
+         * assign each registered vDC/device a pinned mailbox, so its queue depth and drain latency can be
+         * monitored (default: true)
+         */
+        private boolean deviceMailboxes = true;
+
+        /**
+         * minimum time [ms] between two output channel updates of the same device. Values received in the
+         * meantime are coalesced, only the latest one per channel is applied. 0 disables the rate limit
+         * (default: 50)
+         */
+        @Min(0)
+        private long channelApplyInterval = 50;
+
+        /**
+         * time [ms] property changes are collected before they are pushed to the vdSM. Repeated changes of a
+         * property within this window are merged. 0 pushes every change immediately (default: 100)
+         */
+        @Min(0)
+        private long pushWindow = 100;
+
+        /**
+         * number of devices with pending property changes which enforces an immediate push (default: 4096)
+         */
+        @Min(1)
+        private int maxPendingPushDevices = 4096;
+
+        /**
+         * maximum number of vDC/device announcements waiting for a vdSM response at the same time (default: 32)
+         */
+        @Min(1)
+        private int announceWindow = 32;
+
+        /**
+         * maximum number of attempts to announce a vDC/device (default: 3)
+         */
+        @Min(1)
+        private int announceMaxAttempts = 3;
+
+        /**
+         * delay [ms] before a failed announcement is retried, doubled with every further attempt (default: 500)
+         */
+        @Min(0)
+        private long announceRetryBackoff = 500;
+
+        /**
+         * maximum number of attempts to post a scene/ identify/ local priority command to a device while the
+         * offload executor is saturated (default: 5)
+         */
+        @Min(1)
+        private int notificationMaxAttempts = 5;
+
+        /**
+         * delay [ms] before a rejected scene/ identify/ local priority command is posted again, doubled with
+         * every further attempt (default: 10)
+         */
+        @Min(0)
+        private long notificationRetryDelay = 10;
+
     }
 }
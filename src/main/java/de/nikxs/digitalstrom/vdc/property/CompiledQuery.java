@@ -0,0 +1,98 @@
+package de.nikxs.digitalstrom.vdc.property;
+
+import vdcapi.Vdcapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <tt>getProperty</tt> query tree resolved against a {@link PropertySchema}: the accessors to read, in query
+ * order. Wildcards (empty name or <tt>*</tt>) are expanded, unknown properties are dropped (the vDC API
+ * answers only known properties) and duplicates are removed.
+ * <p>
+ * Sub-elements of a query element select the properties of a container property (a property whose type has
+ * {@link Property} fields itself) and are compiled against the schema of the container's type. A container
+ * queried without sub-elements (or via wildcard) is returned with all of its properties; sub-elements of a
+ * leaf property are ignored.
+ */
+public final class CompiledQuery {
+
+    private final List<PropertyAccessor> accessors;
+
+    /**
+     * compiled sub-query per selected accessor, <code>null</code> if the whole property is selected
+     */
+    private final List<CompiledQuery> children;
+
+    private CompiledQuery(List<PropertyAccessor> accessors, List<CompiledQuery> children) {
+        this.accessors = Collections.unmodifiableList(accessors);
+        this.children = children;
+    }
+
+    static CompiledQuery compile(PropertySchema schema, List<Vdcapi.PropertyElement> query) {
+        Map<PropertyAccessor, CompiledQuery> selected = new LinkedHashMap<>();
+        for (Vdcapi.PropertyElement element : query) {
+            String name = element.getName();
+            if (name.isEmpty() || PropertySchema.WILDCARD.equals(name)) {
+                for (PropertyAccessor accessor : schema.getAccessors()) {
+                    selected.put(accessor, null);
+                }
+            } else {
+                PropertyAccessor accessor = schema.get(name);
+                if (accessor == null) {
+                    continue;
+                }
+                CompiledQuery subQuery = accessor.isContainer() && element.getElementsCount() > 0
+                        ? PropertySchema.of(accessor.getType()).compile(element.getElementsList()) : null;
+                // selecting a whole property wins over a sub-query of it
+                if (!selected.containsKey(accessor) || subQuery == null) {
+                    selected.put(accessor, subQuery);
+                }
+            }
+        }
+        return new CompiledQuery(new ArrayList<>(selected.keySet()), new ArrayList<>(selected.values()));
+    }
+
+    /**
+     * @return accessors of the selected properties
+     */
+    public List<PropertyAccessor> getAccessors() {
+        return accessors;
+    }
+
+    /**
+     * Reads the selected properties of the given entity
+     *
+     * @param entity entity of the schema's type
+     * @return one element per selected property, without value if the property is not set
+     */
+    public List<Vdcapi.PropertyElement> evaluate(Object entity) {
+        return evaluate(entity, null);
+    }
+
+    /**
+     * Reads the selected properties of the given entity, taking {@link Property#cached() cached} properties
+     * from the given snapshot
+     *
+     * @param entity entity of the schema's type
+     * @param snapshot property snapshot of the entity (may be <code>null</code>)
+     * @return one element per selected property, without value if the property is not set
+     */
+    public List<Vdcapi.PropertyElement> evaluate(Object entity, PropertySnapshot snapshot) {
+        List<Vdcapi.PropertyElement> result = new ArrayList<>(accessors.size());
+        for (int i = 0; i < accessors.size(); i++) {
+            PropertyAccessor accessor = accessors.get(i);
+            CompiledQuery subQuery = children.get(i);
+            if (subQuery != null) {
+                result.add(accessor.element(entity, subQuery));
+            } else {
+                result.add(snapshot != null && accessor.isCached()
+                        ? snapshot.element(accessor, entity) : accessor.element(entity));
+            }
+        }
+        return result;
+    }
+}
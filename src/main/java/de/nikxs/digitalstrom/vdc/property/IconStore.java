@@ -0,0 +1,146 @@
+package de.nikxs.digitalstrom.vdc.property;
+
+import com.google.protobuf.ByteString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content addressed store of device icons (<tt>deviceIcon16</tt>). A vDC usually manages many devices of the
+ * same kind showing the same icon; interning the icon data by its SHA-256 hash makes all of them share a single
+ * read-only {@link ByteString}, which is also put into the <tt>getProperty</tt> responses without copying.
+ * <p>
+ * Icons are additionally indexed by their <tt>deviceIconName</tt>, so an icon registered once can be looked up
+ * by name without loading its data again. Icons are small and few, they are never evicted.
+ */
+@Slf4j
+public class IconStore {
+
+    private static final IconStore DEFAULT = new IconStore();
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final ConcurrentMap<ByteString, ByteString> iconsByHash = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, ByteString> iconsByName = new ConcurrentHashMap<>();
+
+    private final LongAdder bytesStored = new LongAdder();
+
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * @return store shared by all entities of this JVM
+     */
+    public static IconStore getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the shared instance of the given icon
+     *
+     * @param icon icon data (png)
+     * @return shared, read-only icon data
+     */
+    public ByteString intern(byte[] icon) {
+        ByteString hash = ByteString.copyFrom(SHA256.get().digest(icon));
+        ByteString interned = iconsByHash.get(hash);
+        if (interned == null) {
+            ByteString copy = ByteString.copyFrom(icon);
+            interned = iconsByHash.putIfAbsent(hash, copy);
+            if (interned == null) {
+                bytesStored.add(icon.length);
+                return copy;
+            }
+        }
+        bytesSaved.add(icon.length);
+        return interned;
+    }
+
+    /**
+     * Returns the shared instance of the given icon and registers it under the given name
+     *
+     * @param name <tt>deviceIconName</tt> of the icon (<code>null</code>: the icon is not registered by name)
+     * @param icon icon data (png)
+     * @return shared, read-only icon data
+     */
+    public ByteString intern(String name, byte[] icon) {
+        ByteString interned = intern(icon);
+        if (name == null) {
+            return interned;
+        }
+        ByteString previous = iconsByName.put(name, interned);
+        if (previous != null && previous != interned) {
+            log.warn("Icon '{}' replaced by different icon data", name);
+        }
+        return interned;
+    }
+
+    /**
+     * @param name <tt>deviceIconName</tt> of the icon
+     * @return icon registered under the given name or <code>null</code>
+     */
+    public ByteString get(String name) {
+        return name != null ? iconsByName.get(name) : null;
+    }
+
+    /**
+     * Returns the icon registered under the given name, loading it from the given class path resource on first
+     * use (e.g. <tt>/default_icon_16x16.png</tt>)
+     *
+     * @param name <tt>deviceIconName</tt> of the icon
+     * @param resource class path resource
+     * @return shared, read-only icon data
+     * @throws IOException if the resource cannot be read
+     */
+    public ByteString load(String name, String resource) throws IOException {
+        ByteString icon = iconsByName.get(name);
+        if (icon != null) {
+            return icon;
+        }
+        try (InputStream in = IconStore.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Icon resource " + resource + " not found");
+            }
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                data.write(buffer, 0, n);
+            }
+            return intern(name, data.toByteArray());
+        }
+    }
+
+    /**
+     * @return number of distinct icons
+     */
+    public int size() {
+        return iconsByHash.size();
+    }
+
+    /**
+     * @return bytes held by the distinct icons
+     */
+    public long getBytesStored() {
+        return bytesStored.sum();
+    }
+
+    /**
+     * @return bytes which would have been held by duplicate icons without interning
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+}
@@ -0,0 +1,35 @@
+package de.nikxs.digitalstrom.vdc.property;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a dS entity as vDC API property which can be queried (<tt>getProperty</tt>) and, if
+ * writable, changed (<tt>setProperty</tt>) by the vdSM. The field needs a public getter (and setter if
+ * writable) following the bean naming conventions, e.g. generated by Lombok.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD})
+public @interface Property {
+
+    /**
+     * @return vDC API name of the property (default: name of the field)
+     */
+    String value() default "";
+
+    /**
+     * @return <code>true</code> if the vdSM may change the property
+     */
+    boolean writable() default false;
+
+    /**
+     * Marks the property as effectively static: its serialized form is kept in the entity's
+     * {@link PropertySnapshot} until the entity reports a change. Only use for properties which change
+     * exclusively through a setter that calls {@link PropertySnapshot#invalidate(String)}.
+     *
+     * @return <code>true</code> if the serialized property may be cached
+     */
+    boolean cached() default false;
+}
@@ -0,0 +1,347 @@
+package de.nikxs.digitalstrom.vdc.property;
+
+import com.google.protobuf.ByteString;
+import de.nikxs.digitalstrom.vdc.Entity;
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import vdcapi.Vdcapi;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Compiled read (and write) access to one {@link Property} of an entity class. Getter and setter are bound
+ * once via {@link LambdaMetafactory}, so reading a property costs a plain interface call instead of a
+ * reflective invocation.
+ * <p>
+ * A property whose type declares {@link Property} fields itself is a container: its element holds the
+ * elements of the nested properties instead of a value.
+ */
+public final class PropertyAccessor {
+
+    private final String name;
+
+    private final Class<?> type;
+
+    /**
+     * position of the property within its {@link PropertySchema}
+     */
+    private final int index;
+
+    private final boolean cached;
+
+    private final boolean container;
+
+    private final Function<Object, Object> getter;
+
+    private final BiConsumer<Object, Object> setter;
+
+    private PropertyAccessor(String name, Class<?> type, int index, boolean cached, boolean container,
+                             Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+        this.name = name;
+        this.type = type;
+        this.index = index;
+        this.cached = cached;
+        this.container = container;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * @return vDC API name of the property
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return declared type of the property
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return <code>true</code> if the property element may be kept in a {@link PropertySnapshot}
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * @return <code>true</code> if the property holds nested properties instead of a value
+     */
+    public boolean isContainer() {
+        return container;
+    }
+
+    /**
+     * @param entity entity
+     * @return current value of the property or <code>null</code> if not set
+     */
+    public Object get(Object entity) {
+        return getter.apply(entity);
+    }
+
+    /**
+     * @param entity entity
+     * @return current value of the property as vDC API value or <code>null</code> if not set
+     */
+    public Vdcapi.PropertyValue read(Object entity) {
+        Object value = getter.apply(entity);
+        return value != null && !container ? toPropertyValue(value) : null;
+    }
+
+    /**
+     * @param entity entity
+     * @return the property as vDC API element, without value if not set. The element of a container holds
+     * all nested properties.
+     */
+    public Vdcapi.PropertyElement element(Object entity) {
+        if (container) {
+            Object nested = getter.apply(entity);
+            return element(entity, nested != null ? PropertySchema.of(nested.getClass()).getAll() : null);
+        }
+        Vdcapi.PropertyElement.Builder element = Vdcapi.PropertyElement.newBuilder().setName(name);
+        Vdcapi.PropertyValue value = read(entity);
+        if (value != null) {
+            element.setValue(value);
+        }
+        return element.build();
+    }
+
+    /**
+     * @param entity entity
+     * @param subQuery nested properties to read if this is a container
+     * @return the container property with the selected nested properties, without elements if not set
+     */
+    public Vdcapi.PropertyElement element(Object entity, CompiledQuery subQuery) {
+        if (!container) {
+            return element(entity);
+        }
+        Vdcapi.PropertyElement.Builder element = Vdcapi.PropertyElement.newBuilder().setName(name);
+        Object nested = getter.apply(entity);
+        if (nested != null && subQuery != null) {
+            element.addAllElements(subQuery.evaluate(nested));
+        }
+        return element.build();
+    }
+
+    /**
+     * @param entity entity
+     * @param value new value
+     * @throws IllegalArgumentException if the value does not match the property's type
+     * @throws IllegalStateException if the property is read-only
+     */
+    public void write(Object entity, Vdcapi.PropertyValue value) {
+        set(entity, convert(value));
+    }
+
+    /**
+     * @param value vDC API value
+     * @return the given value converted to the property's type
+     * @throws IllegalArgumentException if the value does not match the property's type
+     */
+    public Object convert(Vdcapi.PropertyValue value) {
+        return fromPropertyValue(value);
+    }
+
+    /**
+     * @param entity entity
+     * @param value new value, already {@link #convert(Vdcapi.PropertyValue) converted}
+     * @throws IllegalStateException if the property is read-only
+     */
+    public void set(Object entity, Object value) {
+        if (setter == null) {
+            throw new IllegalStateException("Property '" + name + "' is read-only");
+        }
+        setter.accept(entity, value);
+    }
+
+    /**
+     * Compiles the accessor of the given {@link Property} field
+     *
+     * @param clazz entity class the accessor is used for
+     * @param field annotated field (declared by <code>clazz</code> or one of its super classes)
+     * @param index position of the property within the schema of <code>clazz</code>
+     * @return accessor
+     * @throws IllegalArgumentException if the field has no public getter (or setter, if writable)
+     */
+    static PropertyAccessor compile(Class<?> clazz, Field field, int index) {
+        Property property = field.getAnnotation(Property.class);
+        String name = property.value().isEmpty() ? field.getName() : property.value();
+        String suffix = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+        Class<?> type = field.getType();
+
+        Method getter = findMethod(clazz, (type == boolean.class ? "is" : "get") + suffix);
+        if (getter == null) {
+            throw new IllegalArgumentException("No public getter for property '" + name + "' of " + clazz);
+        }
+        Method setter = null;
+        if (property.writable()) {
+            setter = findMethod(clazz, "set" + suffix, type);
+            if (setter == null) {
+                throw new IllegalArgumentException("No public setter for property '" + name + "' of " + clazz);
+            }
+        }
+        try {
+            return new PropertyAccessor(name, type, index, property.cached(), isContainer(type),
+                    compileGetter(getter), setter != null ? compileSetter(setter) : null);
+        } catch (Throwable t) {
+            throw new IllegalArgumentException("Compiling accessor of property '" + name + "' failed", t);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the given type (or one of its super classes) declares {@link Property} fields
+     */
+    private static boolean isContainer(Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || type.isEnum() || type.getName().startsWith("java.")) {
+            return false;
+        }
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Property.class)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> compileGetter(Method method) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle = lookup.unreflect(method);
+        MethodType instantiated = MethodType.methodType(box(method.getReturnType()), method.getDeclaringClass());
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class), handle, instantiated);
+            return (Function<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable t) {
+            // e.g. getter declared by a class of another class loader: bind the method handle instead
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+            return entity -> {
+                try {
+                    return generic.invokeExact(entity);
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> compileSetter(Method method) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle = lookup.unreflect(method);
+        MethodType instantiated = MethodType.methodType(void.class, method.getDeclaringClass(),
+                box(method.getParameterTypes()[0]));
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class), handle, instantiated);
+            return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable t) {
+            MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (entity, value) -> {
+                try {
+                    generic.invokeExact(entity, value);
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private static Vdcapi.PropertyValue toPropertyValue(Object value) {
+        Vdcapi.PropertyValue.Builder builder = Vdcapi.PropertyValue.newBuilder();
+        if (value instanceof CharSequence) {
+            builder.setVString(value.toString());
+        } else if (value instanceof Boolean) {
+            builder.setVBool((Boolean) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            builder.setVDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            builder.setVInt64(((Number) value).longValue());
+        } else if (value instanceof ByteString) {
+            builder.setVBytes((ByteString) value);
+        } else if (value instanceof byte[]) {
+            builder.setVBytes(ByteString.copyFrom((byte[]) value));
+        } else if (value instanceof Entity.Type) {
+            builder.setVString(((Entity.Type) value).getType());
+        } else if (value instanceof DSUID) {
+            builder.setVString(value.toString());
+        } else if (value instanceof Enum) {
+            builder.setVString(((Enum<?>) value).name());
+        } else {
+            builder.setVString(value.toString());
+        }
+        return builder.build();
+    }
+
+    private Object fromPropertyValue(Vdcapi.PropertyValue value) {
+        Class<?> target = box(type);
+        if (target == String.class && value.hasVString()) {
+            return value.getVString();
+        } else if (target == Boolean.class && value.hasVBool()) {
+            return value.getVBool();
+        } else if (target == byte[].class && value.hasVBytes()) {
+            return value.getVBytes().toByteArray();
+        } else if (target == ByteString.class && value.hasVBytes()) {
+            return value.getVBytes();
+        } else if (Number.class.isAssignableFrom(target)) {
+            Number number = value.hasVInt64() ? (Number) value.getVInt64()
+                    : value.hasVUint64() ? (Number) value.getVUint64()
+                    : value.hasVDouble() ? (Number) value.getVDouble() : null;
+            if (number != null) {
+                if (target == Integer.class) {
+                    return number.intValue();
+                } else if (target == Long.class) {
+                    return number.longValue();
+                } else if (target == Double.class) {
+                    return number.doubleValue();
+                } else if (target == Float.class) {
+                    return number.floatValue();
+                }
+            }
+        }
+        throw new IllegalArgumentException("Invalid value type for property '" + name + "': " + value);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "PropertyAccessor[" + name + (isWritable() ? ", writable]" : "]");
+    }
+}
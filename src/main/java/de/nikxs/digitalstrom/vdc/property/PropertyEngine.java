@@ -0,0 +1,89 @@
+package de.nikxs.digitalstrom.vdc.property;
+
+import de.nikxs.digitalstrom.vdc.Entity;
+import lombok.extern.slf4j.Slf4j;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates <tt>getProperty</tt> queries and applies <tt>setProperty</tt> requests of the vdSM against the
+ * {@link Property} fields of a dS entity using its (cached) {@link PropertySchema}. Cached properties of an
+ * {@link Entity} are served from its {@link PropertySnapshot}.
+ */
+@Slf4j
+public class PropertyEngine {
+
+    /**
+     * @param entity queried entity
+     * @param query <tt>getProperty</tt> query
+     * @return the requested properties
+     */
+    public List<Vdcapi.PropertyElement> getProperties(Object entity, List<Vdcapi.PropertyElement> query) {
+        return PropertySchema.of(entity.getClass()).compile(query).evaluate(entity, snapshotOf(entity));
+    }
+
+    /**
+     * @param entity queried entity
+     * @param name vDC API name of the property
+     * @return the property or <code>null</code> if the entity has no such property
+     */
+    public Vdcapi.PropertyElement getProperty(Object entity, String name) {
+        PropertyAccessor accessor = PropertySchema.of(entity.getClass()).get(name);
+        if (accessor == null) {
+            return null;
+        }
+        PropertySnapshot snapshot = snapshotOf(entity);
+        return snapshot != null && accessor.isCached() ? snapshot.element(accessor, entity) : accessor.element(entity);
+    }
+
+    /**
+     * Applies the given properties. All properties are validated (known, writable, value of matching type)
+     * before the first one is written, so a request with an invalid property changes nothing.
+     *
+     * @param entity entity to change
+     * @param properties <tt>setProperty</tt> properties
+     * @return <code>ERR_OK</code> or the reason why a property could not be applied
+     */
+    public Messages.ResultCode setProperties(Object entity, List<Vdcapi.PropertyElement> properties) {
+        PropertySchema schema = PropertySchema.of(entity.getClass());
+        List<PropertyAccessor> accessors = new ArrayList<>(properties.size());
+        List<Object> values = new ArrayList<>(properties.size());
+        for (Vdcapi.PropertyElement element : properties) {
+            PropertyAccessor accessor = schema.get(element.getName());
+            if (accessor == null) {
+                log.warn("setProperty() -- Unknown property '{}'", element.getName());
+                return Messages.ResultCode.ERR_NOT_FOUND;
+            }
+            if (!accessor.isWritable()) {
+                log.warn("setProperty() -- Property '{}' is read-only", element.getName());
+                return Messages.ResultCode.ERR_FORBIDDEN;
+            }
+            if (!element.hasValue()) {
+                return Messages.ResultCode.ERR_MISSING_DATA;
+            }
+            try {
+                values.add(accessor.convert(element.getValue()));
+            } catch (IllegalArgumentException e) {
+                log.warn("setProperty() -- {}", e.getMessage());
+                return Messages.ResultCode.ERR_INVALID_VALUE_TYPE;
+            }
+            accessors.add(accessor);
+        }
+
+        PropertySnapshot snapshot = snapshotOf(entity);
+        for (int i = 0; i < accessors.size(); i++) {
+            accessors.get(i).set(entity, values.get(i));
+            if (snapshot != null) {
+                snapshot.invalidate(accessors.get(i));
+            }
+        }
+        return Messages.ResultCode.ERR_OK;
+    }
+
+    private static PropertySnapshot snapshotOf(Object entity) {
+        return entity instanceof Entity ? ((Entity) entity).getPropertySnapshot() : null;
+    }
+}
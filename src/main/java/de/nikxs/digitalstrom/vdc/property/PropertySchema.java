@@ -0,0 +1,167 @@
+package de.nikxs.digitalstrom.vdc.property;
+
+import de.nikxs.digitalstrom.vdc.server.util.ConcurrentCache;
+import lombok.extern.slf4j.Slf4j;
+import vdcapi.Vdcapi;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * All {@link Property properties} of one entity class with their compiled {@link PropertyAccessor}s. A schema
+ * is built once per class (see {@link #of(Class)}) and also caches the {@link CompiledQuery} of every query
+ * shape it has seen, so repeated vdSM queries of the same structure are answered without walking the schema.
+ */
+@Slf4j
+public final class PropertySchema {
+
+    /**
+     * wildcard property name selecting all properties of a level
+     */
+    public static final String WILDCARD = "*";
+
+    /**
+     * maximum number of cached query shapes per schema. Further shapes are compiled on every request
+     */
+    private static final int MAX_CACHED_QUERIES = 256;
+
+    private static final List<Vdcapi.PropertyElement> ALL =
+            Collections.singletonList(Vdcapi.PropertyElement.newBuilder().setName(WILDCARD).build());
+
+    private static final ConcurrentCache<Class<?>, PropertySchema> SCHEMA_CACHE = new ConcurrentCache<>();
+
+    private final Class<?> type;
+
+    private final Map<String, PropertyAccessor> accessors;
+
+    private final ConcurrentMap<String, CompiledQuery> queries = new ConcurrentHashMap<>();
+
+    private PropertySchema(Class<?> type, Map<String, PropertyAccessor> accessors) {
+        this.type = type;
+        this.accessors = Collections.unmodifiableMap(accessors);
+    }
+
+    /**
+     * @param type entity class
+     * @return the (cached) schema of the given class
+     */
+    public static PropertySchema of(Class<?> type) {
+        return SCHEMA_CACHE.get(type, () -> build(type));
+    }
+
+    private static PropertySchema build(Class<?> type) {
+        // super class properties first, a sub class may override a property of the same name
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+        Map<String, PropertyAccessor> accessors = new LinkedHashMap<>();
+        for (Class<?> c : hierarchy) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Property.class)) {
+                    try {
+                        PropertyAccessor overridden = accessors.get(propertyName(field));
+                        PropertyAccessor accessor = PropertyAccessor.compile(type, field,
+                                overridden != null ? overridden.getIndex() : accessors.size());
+                        accessors.put(accessor.getName(), accessor);
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Property '{}' of {} skipped: {}", field.getName(), type.getName(), e.getMessage());
+                    }
+                }
+            }
+        }
+        log.debug("compiled property schema of {}: {}", type.getName(), accessors.keySet());
+        return new PropertySchema(type, accessors);
+    }
+
+    private static String propertyName(Field field) {
+        String name = field.getAnnotation(Property.class).value();
+        return name.isEmpty() ? field.getName() : name;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @param name vDC API name of the property
+     * @return accessor or <code>null</code> if the entity class has no such property
+     */
+    public PropertyAccessor get(String name) {
+        return accessors.get(name);
+    }
+
+    /**
+     * @return number of properties
+     */
+    public int size() {
+        return accessors.size();
+    }
+
+    /**
+     * @return all accessors in declaration order
+     */
+    public Collection<PropertyAccessor> getAccessors() {
+        return accessors.values();
+    }
+
+    /**
+     * Returns the compiled form of the given query, compiling it on first use of its shape
+     *
+     * @param query <tt>getProperty</tt> query
+     * @return compiled query
+     */
+    public CompiledQuery compile(List<Vdcapi.PropertyElement> query) {
+        String shape = shapeOf(query);
+        CompiledQuery compiled = queries.get(shape);
+        if (compiled == null) {
+            compiled = CompiledQuery.compile(this, query);
+            if (queries.size() < MAX_CACHED_QUERIES) {
+                queries.putIfAbsent(shape, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * @return compiled query selecting all properties
+     */
+    public CompiledQuery getAll() {
+        return compile(ALL);
+    }
+
+    /**
+     * @return number of cached query shapes
+     */
+    public int getCachedQueries() {
+        return queries.size();
+    }
+
+    /**
+     * The shape of a query is the structure of its (nested) property names, values are ignored
+     */
+    static String shapeOf(List<Vdcapi.PropertyElement> query) {
+        StringBuilder shape = new StringBuilder();
+        appendShape(shape, query);
+        return shape.toString();
+    }
+
+    private static void appendShape(StringBuilder shape, List<Vdcapi.PropertyElement> elements) {
+        for (Vdcapi.PropertyElement element : elements) {
+            shape.append(element.getName());
+            if (element.getElementsCount() > 0) {
+                shape.append('{');
+                appendShape(shape, element.getElementsList());
+                shape.append('}');
+            }
+            shape.append(',');
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package de.nikxs.digitalstrom.vdc.property;
+
+import vdcapi.Vdcapi;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per entity cache of the immutable {@link Vdcapi.PropertyElement}s of its {@link Property#cached() cached}
+ * properties. The vdSM polls the static description of every device (model, vendor, icon, ...) again and
+ * again; with a snapshot these elements are built (and their serialized size computed) once and then shared
+ * by all <tt>getProperty</tt> responses until a setter reports a change via {@link #invalidate(String)}.
+ * <p>
+ * Elements are cached optimistically: an element built while the entity changed is dropped again, so a
+ * concurrent change never leaves a stale element behind.
+ */
+public final class PropertySnapshot {
+
+    private final Class<?> type;
+
+    private volatile AtomicReferenceArray<Vdcapi.PropertyElement> elements;
+
+    /**
+     * incremented by every invalidation
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param type class of the owning entity
+     */
+    public PropertySnapshot(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * Returns the cached element of the given property, building and caching it if necessary
+     *
+     * @param accessor accessor of a property of the owning entity
+     * @param entity owning entity
+     * @return property element
+     */
+    public Vdcapi.PropertyElement element(PropertyAccessor accessor, Object entity) {
+        AtomicReferenceArray<Vdcapi.PropertyElement> cache = elements();
+        Vdcapi.PropertyElement element = cache.get(accessor.getIndex());
+        if (element != null) {
+            hits.increment();
+            return element;
+        }
+        misses.increment();
+        long before = version.get();
+        element = accessor.element(entity);
+        if (cache.compareAndSet(accessor.getIndex(), null, element) && version.get() != before) {
+            // entity changed while reading, the element might be stale
+            cache.compareAndSet(accessor.getIndex(), element, null);
+        }
+        return element;
+    }
+
+    /**
+     * Drops the cached element of the given property. Has to be called after the property has changed.
+     *
+     * @param property vDC API name of the property
+     */
+    public void invalidate(String property) {
+        PropertyAccessor accessor = PropertySchema.of(type).get(property);
+        if (accessor != null) {
+            invalidate(accessor);
+        }
+    }
+
+    /**
+     * @see #invalidate(String)
+     */
+    public void invalidate(PropertyAccessor accessor) {
+        version.incrementAndGet();
+        AtomicReferenceArray<Vdcapi.PropertyElement> cache = elements;
+        if (cache != null) {
+            cache.set(accessor.getIndex(), null);
+        }
+    }
+
+    /**
+     * Drops all cached elements
+     */
+    public void invalidateAll() {
+        version.incrementAndGet();
+        elements = null;
+    }
+
+    /**
+     * @return number of property reads served from the snapshot
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of property reads which had to build the element
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private AtomicReferenceArray<Vdcapi.PropertyElement> elements() {
+        AtomicReferenceArray<Vdcapi.PropertyElement> cache = elements;
+        if (cache == null) {
+            synchronized (this) {
+                cache = elements;
+                if (cache == null) {
+                    cache = new AtomicReferenceArray<>(PropertySchema.of(type).size());
+                    elements = cache;
+                }
+            }
+        }
+        return cache;
+    }
+}
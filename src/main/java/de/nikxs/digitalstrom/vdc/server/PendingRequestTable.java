@@ -0,0 +1,191 @@
+package de.nikxs.digitalstrom.vdc.server;
+
+import de.nikxs.digitalstrom.vdc.server.util.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, lock-free table correlating {@link Request}s sent to the vdSM with their
+ * {@link vdcapi.Messages.GenericResponse} by message id.
+ * <p>
+ * The table is a ring of <tt>capacity</tt> (power of two) slots, a request occupies the slot
+ * <code>messageId &amp; (capacity - 1)</code>. As message ids are handed out sequentially by the {@link Session},
+ * two pending requests only collide if more than <tt>capacity</tt> requests are in flight. In that case
+ * {@link #put(Request)} is rejected unless the occupying request is older than <tt>maxAge</tt>, then the stale
+ * request is evicted (failed with a {@link TimeoutException}) and replaced.
+ * <p>
+ * All operations are a single array read plus at most one CAS on the happy path, message ids are never boxed.
+ */
+public final class PendingRequestTable {
+
+    private final AtomicReferenceArray<Request> slots;
+
+    private final int mask;
+
+    private final long maxAgeNanos;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Creates a new instance of PendingRequestTable.
+     *
+     * @param capacity maximum number of pending requests (rounded up to the next power of two)
+     * @param maxAge age after which a pending request is treated as stale
+     * @param unit unit of the given age
+     */
+    public PendingRequestTable(int capacity, long maxAge, TimeUnit unit) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= (1 << 30), "invalid capacity: %s", capacity);
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxAgeNanos = unit.toNanos(maxAge);
+    }
+
+    /**
+     * Adds the given request to the table
+     *
+     * @param request pending request
+     * @return <code>true</code> if added, <code>false</code> if its slot is occupied by another request which
+     * is not stale yet
+     */
+    public boolean put(Request request) {
+        final int index = request.id() & mask;
+        for (;;) {
+            Request current = slots.get(index);
+            if (current == null) {
+                if (slots.compareAndSet(index, null, request)) {
+                    size.incrementAndGet();
+                    return true;
+                }
+            } else if (isStale(current, request.timestamp())) {
+                if (slots.compareAndSet(index, current, request)) {
+                    evict(current);
+                    return true;
+                }
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @param id message id
+     * @return the pending request with the given message id or <code>null</code>
+     */
+    public Request get(int id) {
+        Request request = slots.get(id & mask);
+        return request != null && request.id() == id ? request : null;
+    }
+
+    /**
+     * @param id message id
+     * @return <code>true</code> if a request with the given message id is pending
+     */
+    public boolean contains(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * @param id message id
+     * @return <code>true</code> if a request with the given message id would be accepted by
+     * {@link #put(Request)}, i.e. its slot is empty or only occupied by a stale request
+     */
+    public boolean isSlotFree(int id) {
+        Request current = slots.get(id & mask);
+        return current == null || isStale(current, System.nanoTime());
+    }
+
+    /**
+     * Removes the pending request with the given message id
+     *
+     * @param id message id
+     * @return the removed request or <code>null</code> if no request with this id was pending
+     */
+    public Request remove(int id) {
+        final int index = id & mask;
+        for (;;) {
+            Request current = slots.get(index);
+            if (current == null || current.id() != id) {
+                return null;
+            }
+            if (slots.compareAndSet(index, current, null)) {
+                size.decrementAndGet();
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Removes the given request if (and only if) it is still pending
+     *
+     * @param request request to remove
+     * @return <code>true</code> if removed
+     */
+    public boolean remove(Request request) {
+        if (slots.compareAndSet(request.id() & mask, request, null)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all pending requests which are older than <tt>maxAge</tt>
+     *
+     * @param onExpired called for every removed request
+     * @return number of removed requests
+     */
+    public int expire(Consumer<Request> onExpired) {
+        return removeIf(System.nanoTime(), true, onExpired);
+    }
+
+    /**
+     * Removes all pending requests (e.g. if the vdSM session terminated)
+     *
+     * @param onRemoved called for every removed request
+     * @return number of removed requests
+     */
+    public int clear(Consumer<Request> onRemoved) {
+        return removeIf(System.nanoTime(), false, onRemoved);
+    }
+
+    /**
+     * @return number of pending requests
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return maximum number of pending requests
+     */
+    public int capacity() {
+        return slots.length();
+    }
+
+    private int removeIf(long now, boolean staleOnly, Consumer<Request> onRemoved) {
+        int removed = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            Request current = slots.get(i);
+            if (current != null && (!staleOnly || isStale(current, now)) && slots.compareAndSet(i, current, null)) {
+                size.decrementAndGet();
+                removed++;
+                onRemoved.accept(current);
+            }
+        }
+        return removed;
+    }
+
+    private boolean isStale(Request request, long now) {
+        return now - request.timestamp() > maxAgeNanos;
+    }
+
+    private void evict(Request stale) {
+        stale.future().completeExceptionally(new TimeoutException(
+                "Request " + stale.id() + " evicted from pending request table (no vdSM response)"));
+    }
+}
@@ -6,8 +6,7 @@ import lombok.NonNull;
 import lombok.experimental.Accessors;
 import vdcapi.Messages;
 
-import java.time.LocalDateTime;
-import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
 
 @Builder
 @Accessors(fluent=true) @Getter
@@ -15,8 +14,15 @@ public final class Request {
 
     private final @NonNull int id;
 
-    private final @NonNull Consumer<Messages.GenericResponse> callback;
+    /**
+     * completed with the corresponding {@link Messages.GenericResponse} of the vdSM or exceptionally if the
+     * request could not be sent or timed out
+     */
+    private final CompletableFuture<Messages.GenericResponse> future = new CompletableFuture<>();
 
-    private final LocalDateTime timestamp = LocalDateTime.now();
+    /**
+     * creation time [ns] of this request (see {@link System#nanoTime()})
+     */
+    private final long timestamp = System.nanoTime();
 
 }
@@ -0,0 +1,96 @@
+package de.nikxs.digitalstrom.vdc.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counters about the requests (vDC host --> vdSM) waiting for a {@link vdcapi.Messages.GenericResponse}
+ */
+public class RequestMetrics {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    private final LongAdder totalLatencyNanos = new LongAdder();
+
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public void requestSent() {
+        sent.increment();
+        inFlight.incrementAndGet();
+    }
+
+    public void responseReceived(long latencyNanos) {
+        inFlight.decrementAndGet();
+        completed.increment();
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    public void requestFailed() {
+        inFlight.decrementAndGet();
+        failed.increment();
+    }
+
+    public void requestTimedOut() {
+        inFlight.decrementAndGet();
+        timedOut.increment();
+    }
+
+    /**
+     * @return number of requests currently waiting for a response
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getTimedOut() {
+        return timedOut.sum();
+    }
+
+    /**
+     * @return average time [µs] between sending a request and receiving its response
+     */
+    public long getAverageLatencyMicros() {
+        long count = completed.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.sum() / count);
+    }
+
+    /**
+     * @return maximum time [µs] between sending a request and receiving its response
+     */
+    public long getMaxLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get());
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "RequestMetrics[inFlight=" + getInFlight() + ", sent=" + getSent() + ", completed=" + getCompleted()
+                + ", failed=" + getFailed() + ", timedOut=" + getTimedOut() + ", avgLatency="
+                + getAverageLatencyMicros() + "µs, maxLatency=" + getMaxLatencyMicros() + "µs]";
+    }
+}
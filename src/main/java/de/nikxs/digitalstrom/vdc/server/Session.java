@@ -1,45 +1,194 @@
 package de.nikxs.digitalstrom.vdc.server;
 
+import de.nikxs.digitalstrom.vdc.server.util.Preconditions;
 import de.nikxs.digitalstrom.vdc.util.DSUID;
+import io.netty.channel.Channel;
 import lombok.Getter;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+
 public class Session {
 
+    /**
+     * Message id 0 is reserved (no response expected) and never handed out
+     */
+    public static final int RESERVED_MESSAGE_ID = 0;
+
+    /**
+     * Maximum number of candidates checked against the pending requests before giving up
+     */
+    private static final int MAX_ALLOCATION_ATTEMPTS = 1 << 16;
+
     /**
      * Indicator whether vDC host is connected to a vdSM
      */
-    @Getter private boolean connected;
+    @Getter private volatile boolean connected;
 
     /**
      * vdSM (dSUID) this connection belongs to
      */
-    @Getter private DSUID vdSMdSUID;
+    @Getter private volatile DSUID vdSMdSUID;
 
-    private int messageCounter = 0; //?!?!
+    /**
+     * last message id handed out. Ids are allocated in the range [1, {@link Integer#MAX_VALUE}] and wrap around
+     * to 1, so they are positive no matter whether the vdSM treats the uint32 field as signed or not
+     */
+    private final AtomicInteger messageCounter = new AtomicInteger(RESERVED_MESSAGE_ID);
 
+    /**
+     * lifecycle state, starts with {@link SessionState#HELLO_RECEIVED}
+     */
+    private final AtomicReference<SessionState> state = new AtomicReference<>(SessionState.HELLO_RECEIVED);
+
+    /**
+     * <code>true</code> for ids which can not be used for a new request, e.g. because a still pending request
+     * occupies the same slot of the {@link PendingRequestTable}
+     */
+    private final IntPredicate messageIdInUse;
+
+    /**
+     * connection to the vdSM (<code>null</code> for sessions not bound to a connection)
+     */
+    @Getter private final Channel channel;
+
+    /**
+     * requests sent to this vdSM waiting for their response (<code>null</code> for sessions not bound to a
+     * connection)
+     */
+    @Getter private final PendingRequestTable requests;
+
+    /**
+     * creation time [ns], orders concurrent sessions
+     */
+    @Getter private final long since = System.nanoTime();
 
     /**
      * Constructs a virtual session to a vdSM with the given DSUID
      * @param vdSMdSUID
      */
     public Session(DSUID vdSMdSUID) {
+        this(vdSMdSUID, id -> false);
+    }
+
+    /**
+     * Constructs a virtual session to a vdSM with the given DSUID
+     * @param vdSMdSUID
+     * @param messageIdInUse tells whether a message id can not be used for a new request
+     */
+    public Session(DSUID vdSMdSUID, IntPredicate messageIdInUse) {
+        this(vdSMdSUID, messageIdInUse, null, null);
+    }
+
+    /**
+     * Constructs a session to the vdSM with the given DSUID connected via the given channel. Message ids are
+     * allocated per session and skipped while their slot in the session's own pending requests is taken.
+     * @param vdSMdSUID
+     * @param channel connection to the vdSM
+     * @param requests requests waiting for a response of this vdSM
+     */
+    public Session(DSUID vdSMdSUID, Channel channel, PendingRequestTable requests) {
+        this(vdSMdSUID, id -> !requests.isSlotFree(id), channel, requests);
+    }
+
+    private Session(DSUID vdSMdSUID, IntPredicate messageIdInUse, Channel channel, PendingRequestTable requests) {
         this.vdSMdSUID = vdSMdSUID;
+        this.messageIdInUse = messageIdInUse;
+        this.channel = channel;
+        this.requests = requests;
         this.connected = true;
     }
 
     /**
-     * Invalidates this sessi
+     * Invalidates this session
+     *
+     * @return state of the session before it has been invalidated ({@link SessionState#BYE} if it already was)
      */
-    public void invalidate() {
+    public SessionState invalidate() {
         connected = false;
         vdSMdSUID =  null;
+        return state.getAndSet(SessionState.BYE);
+    }
+
+    public SessionState getState() {
+        return state.get();
     }
 
+    /**
+     * Changes the state of this session if it is in the expected state
+     *
+     * @param expected expected current state
+     * @param next new state
+     * @return <code>false</code> if the session is not in the expected state (e.g. terminated meanwhile)
+     */
+    public boolean transition(SessionState expected, SessionState next) {
+        return state.compareAndSet(expected, next);
+    }
+
+    /**
+     * Lock-free and allocation-free message id generator. Skips the reserved id 0 as well as ids which are
+     * in use (see {@link #messageIdInUse}).
+     *
+     * @return next free message id
+     * @throws IllegalStateException if no free id could be found
+     */
     public int getMessageId() {
-        return ++messageCounter;
+        for (int attempt = 0; attempt < MAX_ALLOCATION_ATTEMPTS; attempt++) {
+            int id = allocate(1);
+            if (!messageIdInUse.test(id)) {
+                return id;
+            }
+        }
+        throw new IllegalStateException("No free message id available");
+    }
+
+    /**
+     * Reserves a contiguous block of message ids, e.g. for a batch of announcements. None of the ids is used by
+     * a pending request and none of them will be handed out again before the counter wraps around.
+     *
+     * @param count number of ids
+     * @return first id of the block [first, first + count)
+     * @throws IllegalStateException if no free block could be found
+     */
+    public int reserveMessageIds(int count) {
+        Preconditions.checkArgument(count > 0 && count <= MAX_ALLOCATION_ATTEMPTS, "invalid block size: %s", count);
+        for (int attempt = 0; attempt < MAX_ALLOCATION_ATTEMPTS; attempt += count) {
+            int first = allocate(count);
+            if (isFree(first, count)) {
+                return first;
+            }
+        }
+        throw new IllegalStateException("No free block of " + count + " message ids available");
     }
 
     public boolean isVdsm(DSUID dSUID) {
-        return vdSMdSUID.equals(dSUID);
+        DSUID current = vdSMdSUID;
+        return current != null && current.equals(dSUID);
+    }
+
+    /**
+     * @return first id of a block of <tt>count</tt> consecutive ids which does not cross the wrap-around
+     */
+    private int allocate(int count) {
+        for (;;) {
+            int last = messageCounter.get();
+            int first = last + 1;
+            if (first <= RESERVED_MESSAGE_ID || first > Integer.MAX_VALUE - count + 1) {
+                first = RESERVED_MESSAGE_ID + 1;
+            }
+            if (messageCounter.compareAndSet(last, first + count - 1)) {
+                return first;
+            }
+        }
+    }
+
+    private boolean isFree(int first, int count) {
+        for (int id = first; id < first + count; id++) {
+            if (messageIdInUse.test(id)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
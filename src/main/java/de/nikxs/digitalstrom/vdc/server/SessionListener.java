@@ -0,0 +1,16 @@
+package de.nikxs.digitalstrom.vdc.server;
+
+/**
+ * Listener notified about the {@link SessionState state} changes of vdSM sessions. Listeners are called on
+ * the thread causing the change (e.g. a Netty event loop) and must not block.
+ */
+@FunctionalInterface
+public interface SessionListener {
+
+    /**
+     * @param session session which changed its state
+     * @param previous previous state
+     * @param current new state
+     */
+    void stateChanged(Session session, SessionState previous, SessionState current);
+}
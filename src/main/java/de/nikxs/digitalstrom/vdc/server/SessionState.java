@@ -0,0 +1,27 @@
+package de.nikxs.digitalstrom.vdc.server;
+
+/**
+ * Lifecycle of the connection between vDC host and vdSM
+ */
+public enum SessionState {
+    /**
+     * no vdSM session, the vDC host waits for a vdSM to connect and say hello
+     */
+    LISTENING,
+    /**
+     * a vdSM has said hello, the session is established
+     */
+    HELLO_RECEIVED,
+    /**
+     * vDCs and devices are being announced to the vdSM
+     */
+    ANNOUNCING,
+    /**
+     * all vDCs and devices have been announced
+     */
+    READY,
+    /**
+     * the vdSM has said bye or the connection has been lost, the session is terminated
+     */
+    BYE
+}
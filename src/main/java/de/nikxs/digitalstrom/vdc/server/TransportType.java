@@ -0,0 +1,102 @@
+package de.nikxs.digitalstrom.vdc.server;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Netty transport used for the vdSM connections
+ */
+@Slf4j
+public enum TransportType {
+
+    /**
+     * Java NIO, available on every platform
+     */
+    NIO {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, String name) {
+            return new NioEventLoopGroup(threads, new DefaultThreadFactory(name));
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> channelClass() {
+            return NioSocketChannel.class;
+        }
+    },
+
+    /**
+     * native epoll (Linux only): fewer allocations and system calls than NIO and support of
+     * <tt>SO_REUSEPORT</tt>
+     */
+    EPOLL {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, String name) {
+            return new EpollEventLoopGroup(threads, new DefaultThreadFactory(name));
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> channelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+    };
+
+    /**
+     * @param threads number of event loops (0: Netty's default of twice the number of cores)
+     * @param name prefix of the thread names
+     * @return new event loop group of this transport
+     */
+    public abstract EventLoopGroup newEventLoopGroup(int threads, String name);
+
+    /**
+     * @return channel class accepting vdSM connections
+     */
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    /**
+     * @return channel class of client connections (e.g. of a simulated vdSM)
+     */
+    public abstract Class<? extends SocketChannel> channelClass();
+
+    /**
+     * @return <code>true</code> if this transport can be used on the current platform
+     */
+    public boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * @return this transport if it is available, {@link #NIO} otherwise
+     */
+    public TransportType resolve() {
+        if (isAvailable()) {
+            return this;
+        }
+        log.warn("Transport {} not available on this platform, falling back to {}", this, NIO);
+        return NIO;
+    }
+}
@@ -2,24 +2,22 @@ package de.nikxs.digitalstrom.vdc.server;
 
 import de.nikxs.digitalstrom.vdc.VdcHost;
 import de.nikxs.digitalstrom.vdc.config.VdcProperties;
+import de.nikxs.digitalstrom.vdc.server.handler.BroadcastFrame;
+import de.nikxs.digitalstrom.vdc.server.handler.FlushCoalescingHandler;
 import de.nikxs.digitalstrom.vdc.server.handler.ServerChannelIdleHandler;
 import de.nikxs.digitalstrom.vdc.server.handler.VdcMessageDeserializer;
 import de.nikxs.digitalstrom.vdc.server.handler.VdcMessageHandler;
-import de.nikxs.digitalstrom.vdc.server.handler.VdcMessageSerializer;
-import de.nikxs.digitalstrom.vdc.server.transport.VdcHeader;
-import de.nikxs.digitalstrom.vdc.server.util.ByteUtil;
+import de.nikxs.digitalstrom.vdc.server.handler.VdcMessageEncoder;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.ChannelGroupFuture;
 import io.netty.channel.group.ChannelGroupFutureListener;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import lombok.Getter;
@@ -30,6 +28,13 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.SocketUtils;
 import vdcapi.Messages;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
 
 @Slf4j
 @Component
@@ -74,20 +79,55 @@ public class VdcServer {
      */
     private EventLoopGroup handlerGroup;
 
+    /**
+     * Netty transport of the acceptor and handler groups
+     */
+    @Getter
+    private final TransportType transport;
+
+    /**
+     * listening sockets (several if bound with <tt>SO_REUSEPORT</tt>)
+     */
+    private final List<Channel> serverChannels = new ArrayList<>();
+
     /**
      * Holder for the incoming client (vdSM) connection;
      */
     private ChannelGroup allChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
 
+    /**
+     * bytes not serialized again thanks to {@link #broadcast(Messages.Message, Collection, ToIntFunction)}
+     */
+    private final LongAdder broadcastBytesSaved = new LongAdder();
+
+    /**
+     * vDC Server configuration
+     */
+    private final VdcProperties.Server config;
+
     @Autowired
     public VdcServer(VdcProperties config) {
         log.info("Initializing vDC Server...");
+        this.config = config.getServer();
+        transport = config.getServer().getTransport().resolve();
         bootstrap = new ServerBootstrap();
-        acceptorGroup = new NioEventLoopGroup();  // used to accept new sessions
-        handlerGroup = new NioEventLoopGroup();   // handle existing connections
+        // used to accept new sessions
+        acceptorGroup = transport.newEventLoopGroup(config.getServer().getAcceptorThreads(), "vdc-acceptor");
+        // handle existing connections
+        handlerGroup = transport.newEventLoopGroup(config.getServer().getWorkerThreads(), "vdc-worker");
+        log.info("vDC Server transport: {} ({} acceptor(s), {} worker threads)", transport,
+                config.getServer().getAcceptorThreads(),
+                config.getServer().getWorkerThreads() > 0 ? config.getServer().getWorkerThreads() : "default");
 
-        bootstrap.channel(NioServerSocketChannel.class);
+        bootstrap.channel(transport.serverChannelClass());
         bootstrap.option(ChannelOption.SO_BACKLOG, config.getServer().getSoBacklog());
+        if (config.getServer().isReusePort()) {
+            if (transport == TransportType.EPOLL) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            } else {
+                log.warn("SO_REUSEPORT requires the EPOLL transport, binding a single acceptor");
+            }
+        }
 
         bootstrap.childOption(ChannelOption.SO_KEEPALIVE, config.getServer().isSoKeepalive());
         bootstrap.childOption(ChannelOption.TCP_NODELAY, config.getServer().isTcpNodelay());
@@ -96,6 +136,8 @@ public class VdcServer {
         bootstrap.childOption(ChannelOption.SO_LINGER, config.getServer().getSoLinger());
         bootstrap.childOption(ChannelOption.SO_RCVBUF, config.getServer().getSoRcvbuf());
         bootstrap.childOption(ChannelOption.SO_SNDBUF, config.getServer().getSoSndbuf());
+        bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                config.getServer().getWriteBufferLowWaterMark(), config.getServer().getWriteBufferHighWaterMark()));
     }
 
     /**
@@ -109,7 +151,7 @@ public class VdcServer {
                 this.port = SocketUtils.findAvailableTcpPort(1025, 65535);
             }
 
-            VdcMessageHandler messageHandler = new VdcMessageHandler(vDCHost);
+            VdcMessageHandler messageHandler = new VdcMessageHandler(vDCHost.getDispatcher());
             ChannelInitializer<SocketChannel> initializer = new ChannelInitializer<SocketChannel>() {
                 @Override
                 protected void initChannel(SocketChannel ch) {
@@ -117,69 +159,45 @@ public class VdcServer {
                             "idlestate",
                             new IdleStateHandler(IDLE_CHANNEL_TIMEOUT, IDLE_CHANNEL_TIMEOUT,
                                     IDLE_CHANNEL_TIMEOUT));
+                    if (config.isFlushConsolidation()) {
+                        ch.pipeline().addLast("flush",
+                                new FlushCoalescingHandler(config.getMaxPendingFlushes(), config.getMaxFlushDelayMicros()));
+                    }
                     ch.pipeline().addLast("idle", new ServerChannelIdleHandler());
-                    ch.pipeline().addLast("incoming", new VdcMessageDeserializer());
+                    ch.pipeline().addLast("incoming", new VdcMessageDeserializer(config.isZeroCopyDecoding()));
                     ch.pipeline().addLast("coreHandler", messageHandler);
-                    ch.pipeline().addLast("outgoing", new VdcMessageSerializer());
+
+                    ch.pipeline().addLast("encoder", new VdcMessageEncoder());
 
                     //each incoming client (vdSM) connection (channel) will be collected and used for
-                    //further outbound (vDC Host --> vdSM) communication.
+                    //further outbound (vDC Host --> vdSM) communication. Closing it ends the vdSM session.
                     ch.pipeline().addLast("grouper", new ChannelInboundHandlerAdapter() {
                         @Override
                         public void channelActive(ChannelHandlerContext ctx) throws Exception {
-
-                            Channel channel = ctx.channel();
-                            channel.pipeline().addLast(new PbrpcClientHandler());
-                            channel.pipeline().addLast(new VdcMessageSerializer());
-                            channel.pipeline().addLast(new PbrpcMessageDeserializer());
-
-                            channel.pipeline().addLast("yourHandlerName", new SimpleChannelInboundHandler() {
-                                public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-                                    // remove handler after receiving response
-                                    ctx.getPipeline().remove(this);
-                                    // do logic
-                                }
-                            });
-                            channel.pipeline().addLast("discoveryServer", new SimpleChannelUpstreamHandler() {
-
-                                @Override
-                                public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-                                    try {
-                                        String response = getStringMessage(e);
-                                        if (response == null)
-                                            return;
-                                        String[] resp = response.split(":");
-                                        if (resp.length == 2) {
-                                            String host = resp[0];
-                                            InetAddress.getByName(host);
-                                            int port = Integer.parseInt(resp[1]);
-                                            if (!hosts.contains(response)) {
-                                                hosts.add(response);
-                                                for (DiscoveryListener listener : listeners) {
-                                                    listener.newHost(name, response);
-                                                }
-                                            }
-
-                                        }
-                                    } catch (Exception ex) {
-                                        Constants.ahessianLogger.warn("", ex);
-                                    }
-                                }
-                            });
-
-                            allChannels.add(channel);
+                            allChannels.add(ctx.channel());
                             super.channelActive(ctx);
                         }
+
+                        @Override
+                        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+                            allChannels.remove(ctx.channel());
+                            vDCHost.connectionClosed(ctx.channel());
+                            super.channelInactive(ctx);
+                        }
                     });
                 }
             };
             bootstrap.group(acceptorGroup, handlerGroup).childHandler(initializer);
-            bootstrap.bind(this.port).sync().channel();
+            // with SO_REUSEPORT each acceptor thread gets a listening socket of its own
+            int acceptors = config.isReusePort() && transport == TransportType.EPOLL ? config.getAcceptorThreads() : 1;
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(bootstrap.bind(this.port).sync().channel());
+            }
         } catch (InterruptedException e) {
             log.error("Starting VdcServer failed" + e.getMessage(), e);
             throw e;
         }
-        log.info("VdcServer started [Port:{}]", this.port);
+        log.info("VdcServer started [Port:{}, listening sockets: {}]", this.port, serverChannels.size());
     }
 
     /**
@@ -187,6 +205,8 @@ public class VdcServer {
      */
     public void stop() {
         log.info("Stopping vDC Server");
+        serverChannels.forEach(Channel::close);
+        serverChannels.clear();
         if (acceptorGroup != null) {
             acceptorGroup.shutdownGracefully();
         }
@@ -195,35 +215,128 @@ public class VdcServer {
         }
     }
 
-    public void send(Messages.Message message) {
-        if(isConnected()) {
-            byte[] bodyBytes = ByteUtil.getNonEmptyBytes(message.toByteArray());
+    /**
+     * Sends the given message to all connected vdSMs. The message is serialized by {@link VdcMessageEncoder}
+     * into a single pooled buffer per channel.
+     * <p>
+     * This method never blocks. Flushes are consolidated by {@link FlushCoalescingHandler} (if enabled) and the
+     * outcome is reported by the returned future. Callers producing bulk traffic should check
+     * {@link #isWritable()} to honour the back-pressure of the vdSM link.
+     *
+     * @param message message to send
+     * @return future notified once the message is written to all channels or <code>null</code> if no vdSM
+     * is connected
+     */
+    public ChannelGroupFuture send(Messages.Message message) {
+        if(!isConnected()) {
+            return null;
+        }
+
+        if (!isWritable()) {
+            log.debug("vdSM link saturated, message (id: {}) queued in outbound buffer", message.getMessageId());
+        }
+
+        final ChannelGroupFuture cf = allChannels.writeAndFlush(message);
+        cf.addListener((ChannelGroupFutureListener) future -> {
+            if (!future.isSuccess()) {
+                log.error("Sending message (id: {}) failed", message.getMessageId(), future.cause());
+            }
+        });
+        return cf;
+    }
+
+    /**
+     * Sends the given message to the vdSM connected via the given channel only (e.g. a request of that vdSM's
+     * session). Never blocks, see {@link #send(Messages.Message)}.
+     *
+     * @param channel connection to the vdSM
+     * @param message message to send
+     * @return future notified once the message is written or <code>null</code> if the channel is not active
+     */
+    public ChannelFuture send(Channel channel, Messages.Message message) {
+        if (channel == null || !channel.isActive()) {
+            return null;
+        }
+
+        if (!channel.isWritable()) {
+            log.debug("vdSM link saturated, message (id: {}) queued in outbound buffer", message.getMessageId());
+        }
 
-            VdcHeader header = bodyBytes != null ? new VdcHeader(bodyBytes.length) : new VdcHeader(0);
-            byte[] headerBytes = header.toBytes();
+        final ChannelFuture cf = channel.writeAndFlush(message);
+        cf.addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                log.error("Sending message (id: {}) failed", message.getMessageId(), future.cause());
+            }
+        });
+        return cf;
+    }
 
-            ByteBuf encoded = Unpooled.copiedBuffer(headerBytes, bodyBytes);
-            log.info("Send total byte size=" + (headerBytes.length + bodyBytes.length) + ", body size=" + bodyBytes.length);
+    /**
+     * Sends the given message to several vdSMs, each of them with a message id of its own session. The message
+     * is serialized only once (see {@link BroadcastFrame}); every channel gets a small header with its message
+     * id and a retained duplicate of the shared body. Never blocks.
+     *
+     * @param message message to send, its message id is replaced
+     * @param channels connections to the vdSMs
+     * @param messageIds allocates the message id for a channel
+     * @return number of channels the message has been written to
+     */
+    public int broadcast(Messages.Message message, Collection<Channel> channels, ToIntFunction<Channel> messageIds) {
+        BroadcastFrame frame;
+        try {
+            frame = BroadcastFrame.encode(message, PooledByteBufAllocator.DEFAULT);
+        } catch (IOException | EncoderException e) {
+            log.error("Encoding broadcast message (type: {}) failed", message.getType(), e);
+            return 0;
+        }
 
-            final ChannelGroupFuture cf = allChannels.writeAndFlush(encoded);
-            cf.addListener((ChannelGroupFutureListener) cf1 -> {
-                cf1.
-                if(cf1.isSuccess()) {
-                    System.out.println("CFListener: SUCCESS! YEAH! HELL! YEAH!");
-                } else {
-                    System.out.println("CFListener: failure! FAILure! FAILURE!");
-                    System.out.println(cf1.cause());
+        int frameLength = frame.length();
+        int written = 0;
+        try {
+            for (Channel channel : channels) {
+                if (!channel.isActive()) {
+                    continue;
                 }
-            });
-            if (!cf.isSuccess()) {
-                System.out.println("Send failed: " + cf.cause());
+                int messageId = messageIds.applyAsInt(channel);
+                channel.writeAndFlush(frame.frame(messageId, channel.alloc())).addListener(
+                        (ChannelFutureListener) future -> {
+                            if (!future.isSuccess()) {
+                                log.error("Sending message (id: {}) failed", messageId, future.cause());
+                            }
+                        });
+                written++;
             }
-
-            cf.get();
+        } finally {
+            frame.release();
+        }
+        if (written > 1) {
+            broadcastBytesSaved.add((long) (written - 1) * frameLength);
         }
+        return written;
+    }
+
+    /**
+     * @return bytes which would have been serialized additionally if broadcast messages were encoded per
+     * channel
+     */
+    public long getBroadcastBytesSaved() {
+        return broadcastBytesSaved.sum();
     }
 
     public boolean isConnected() {
-        return (channel != null) && channel.isWritable();
+        return !allChannels.isEmpty();
+    }
+
+    /**
+     * @return <code>true</code> if all connected vdSM channels accept further messages without exceeding
+     * their outbound buffer's high water mark
+     */
+    public boolean isWritable() {
+        for (Channel channel : allChannels) {
+            if (!channel.isWritable()) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -1,5 +1,6 @@
 package de.nikxs.digitalstrom.vdc.server.codec;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.CodecException;
 
 public interface Codec {
@@ -15,6 +16,18 @@ public interface Codec {
      */
     Object decode(Class<?> clazz, byte[] bytes) throws CodecException;
 
+    /**
+     * Deserialization directly from the readable bytes of the given buffer (without copying them first).
+     * The buffer is neither released nor is its reader index moved.
+     *
+     * @param clazz Deserialized class definition
+     * @param buf buffer holding the serialized object
+     * @return Deserialized object
+     *
+     * @throws CodecException
+     */
+    Object decode(Class<?> clazz, ByteBuf buf) throws CodecException;
+
     /**
      * Deserialization
      *
@@ -1,8 +1,12 @@
 package de.nikxs.digitalstrom.vdc.server.codec;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.Parser;
 import de.nikxs.digitalstrom.vdc.server.util.Computable;
 import de.nikxs.digitalstrom.vdc.server.util.ConcurrentCache;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.CodecException;
 
 import java.lang.reflect.Method;
@@ -25,6 +29,11 @@ public class ProtobufCodec implements Codec {
      */
     private static final String METHOD_NAME_TOBYTE = "toByteArray";
 
+    /**
+     * Protobuf Generates the name of the static accessor of a message's parser in native Java code
+     */
+    private static final String METHOD_NAME_PARSER = "parser";
+
     /**
      * Method cache, used by Protobuf to generate some codecs in native Java code. Caching methods include:
      *
@@ -39,6 +48,12 @@ public class ProtobufCodec implements Codec {
      */
     private static final Computable<String, Method> PROTOBUF_METHOD_CACHE = new ConcurrentCache<String, Method>();
 
+    /**
+     * Parser cache, used to decode messages from a <code>CodedInputStream</code> without the reflective
+     * <code>parseFrom(byte[] bytes)</code> call
+     */
+    private static final Computable<String, Parser<?>> PROTOBUF_PARSER_CACHE = new ConcurrentCache<String, Parser<?>>();
+
     /**
      * @see Codec#decode(java.lang.Class, byte[])
      */
@@ -62,6 +77,34 @@ public class ProtobufCodec implements Codec {
         }
     }
 
+    /**
+     * Parses the readable bytes of the given buffer in place. Heap buffers and direct buffers consisting of a
+     * single NIO buffer are wrapped by a <code>CodedInputStream</code>, only composite buffers are copied.
+     *
+     * @see Codec#decode(java.lang.Class, io.netty.buffer.ByteBuf)
+     */
+    @Override
+    public Object decode(final Class<?> clazz, ByteBuf buf) throws CodecException {
+        try {
+            if (buf == null || !buf.isReadable()) {
+                return null;
+            }
+            Parser<?> parser = PROTOBUF_PARSER_CACHE.get(clazz.getName(),
+                    new Callable<Parser<?>>() {
+                        @Override
+                        public Parser<?> call() throws Exception {
+                            return (Parser<?>) clazz.getMethod(METHOD_NAME_PARSER).invoke(null);
+                        }
+                    });
+            CodedInputStream input = buf.nioBufferCount() == 1
+                    ? CodedInputStream.newInstance(buf.nioBuffer())
+                    : CodedInputStream.newInstance(ByteBufUtil.getBytes(buf));
+            return parser.parseFrom(input);
+        } catch (Exception e) {
+            throw new CodecException("Decode failed due to " + e.getMessage(), e);
+        }
+    }
+
     /**
      * @see Codec#encode(java.lang.Class, java.lang.Object)
      */
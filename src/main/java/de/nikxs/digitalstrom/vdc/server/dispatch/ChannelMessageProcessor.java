@@ -0,0 +1,26 @@
+package de.nikxs.digitalstrom.vdc.server.dispatch;
+
+import io.netty.channel.Channel;
+import vdcapi.Messages;
+
+/**
+ * {@link MessageProcessor} which needs to know the vdSM connection a message has been received on, e.g. to
+ * look up the session of the sending vdSM
+ */
+@FunctionalInterface
+public interface ChannelMessageProcessor extends MessageProcessor {
+
+    /**
+     * @param channel channel the message has been received on (<code>null</code> if dispatched without channel)
+     * @param message incoming message
+     * @return response which is sent back to the vdSM or <code>null</code> if there is nothing to respond
+     * @throws Exception if processing fails
+     */
+    @Override
+    Messages.Message process(Channel channel, Messages.Message message) throws Exception;
+
+    @Override
+    default Messages.Message process(Messages.Message message) throws Exception {
+        return process(null, message);
+    }
+}
@@ -0,0 +1,17 @@
+package de.nikxs.digitalstrom.vdc.server.dispatch;
+
+/**
+ * Thread a {@link MessageProcessor} is executed on
+ */
+public enum ExecutionMode {
+    /**
+     * directly on the Netty event loop which has read the message. Only suitable for short, non-blocking
+     * processing (e.g. session handling, ping)
+     */
+    INLINE,
+    /**
+     * on the offload executor of the {@link MessageDispatcher}, so slow processing (e.g. device drivers doing
+     * I/O) does not delay other vdSM messages
+     */
+    OFFLOAD
+}
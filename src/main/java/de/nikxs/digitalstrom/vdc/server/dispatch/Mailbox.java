@@ -0,0 +1,219 @@
+package de.nikxs.digitalstrom.vdc.server.dispatch;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single consumer mailbox of one key (usually the dSUID of a device). Any thread may post commands, which are
+ * executed one after another in posting order on the (shared) threads of the owning {@link OffloadExecutor}.
+ * At most one thread drains a mailbox at a time, so the commands of a device need no further synchronization
+ * while thousands of devices are processed in parallel.
+ * <p>
+ * Mailboxes are obtained via {@link OffloadExecutor#mailbox(Object)} (pinned, e.g. for a registered device)
+ * or created on the fly by {@link OffloadExecutor#execute(Object, Runnable)} and removed once idle.
+ */
+public final class Mailbox implements Runnable {
+
+    /**
+     * maximum number of commands executed before the thread is yielded to other mailboxes
+     */
+    private static final int DRAIN_BATCH_SIZE = 16;
+
+    private final Object key;
+
+    private final OffloadExecutor owner;
+
+    private final Queue<Envelope> commands = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    private final LongAdder processed = new LongAdder();
+
+    private final LongAdder totalDrainLatencyNanos = new LongAdder();
+
+    private final AtomicLong maxDrainLatencyNanos = new AtomicLong();
+
+    private volatile boolean pinned;
+
+    Mailbox(Object key, OffloadExecutor owner) {
+        this.key = key;
+        this.owner = owner;
+    }
+
+    /**
+     * Executes the given command after all commands posted before. The command is dropped if the executor is
+     * saturated (see {@link OffloadExecutor#execute(Object, Runnable)}).
+     *
+     * @param command command
+     */
+    public void post(Runnable command) {
+        owner.execute(key, command);
+    }
+
+    /**
+     * @return key (e.g. dSUID) of this mailbox
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * @return number of commands waiting for execution
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return highest number of commands which have been waiting at the same time
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * @return number of executed commands
+     */
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    /**
+     * @return average time [µs] between posting a command and its execution
+     */
+    public long getAverageDrainLatencyMicros() {
+        long count = processed.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalDrainLatencyNanos.sum() / count);
+    }
+
+    /**
+     * @return maximum time [µs] between posting a command and its execution
+     */
+    public long getMaxDrainLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxDrainLatencyNanos.get());
+    }
+
+    /**
+     * must only be called while holding the owner's lock of {@link #key}, see {@link OffloadExecutor}
+     *
+     * @return the queued command, see {@link #withdraw(Envelope)}
+     */
+    Envelope enqueue(Runnable command) {
+        Envelope envelope = new Envelope(command, System.nanoTime());
+        commands.add(envelope);
+        int current = depth.incrementAndGet();
+        if (current > maxDepth.get()) {
+            maxDepth.accumulateAndGet(current, Math::max);
+        }
+        return envelope;
+    }
+
+    /**
+     * Removes a queued command which could not be scheduled
+     *
+     * @return <code>false</code> if the command has already been taken by a draining thread
+     */
+    boolean withdraw(Envelope envelope) {
+        if (commands.remove(envelope)) {
+            depth.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hands this mailbox to a thread of the owner unless it is already scheduled
+     *
+     * @throws RejectedExecutionException if the owner is saturated or shut down. The queued commands are kept.
+     */
+    void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                owner.executor().execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    boolean isIdle() {
+        return commands.isEmpty() && !scheduled.get();
+    }
+
+    boolean isPinned() {
+        return pinned;
+    }
+
+    void setPinned(boolean pinned) {
+        this.pinned = pinned;
+    }
+
+    @Override
+    public void run() {
+        for (;;) {
+            drain();
+            scheduled.set(false);
+            if (commands.isEmpty()) {
+                owner.idle(this);
+                return;
+            }
+            try {
+                schedule();
+                return;
+            } catch (RejectedExecutionException e) {
+                // saturated: keep draining on this thread instead of dropping accepted commands
+                if (!scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < DRAIN_BATCH_SIZE; i++) {
+            Envelope envelope = commands.poll();
+            if (envelope == null) {
+                return;
+            }
+            depth.decrementAndGet();
+            long latency = System.nanoTime() - envelope.postedNanos;
+            totalDrainLatencyNanos.add(latency);
+            if (latency > maxDrainLatencyNanos.get()) {
+                maxDrainLatencyNanos.accumulateAndGet(latency, Math::max);
+            }
+            OffloadExecutor.runSafely(envelope.command);
+            processed.increment();
+        }
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "Mailbox[" + key + ", depth=" + getDepth() + ", maxDepth=" + getMaxDepth() + ", processed="
+                + getProcessed() + ", avgDrainLatency=" + getAverageDrainLatencyMicros() + "µs, maxDrainLatency="
+                + getMaxDrainLatencyMicros() + "µs]";
+    }
+
+    static final class Envelope {
+        private final Runnable command;
+        private final long postedNanos;
+
+        private Envelope(Runnable command, long postedNanos) {
+            this.command = command;
+            this.postedNanos = postedNanos;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package de.nikxs.digitalstrom.vdc.server.dispatch;
+
+import de.nikxs.digitalstrom.vdc.server.transport.error.ErrorCode;
+import de.nikxs.digitalstrom.vdc.server.util.Preconditions;
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import de.nikxs.digitalstrom.vdc.util.DsUtil;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+import vdcapi.Messages;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static de.nikxs.digitalstrom.vdc.util.DsUtil.buildGenericResponse;
+
+/**
+ * Table driven routing of incoming (vdSM --> vDC) messages to the {@link MessageProcessor} registered for their
+ * {@link vdcapi.Messages.Type}.
+ * <p>
+ * Registrations are rare compared to lookups, so the table is an {@link EnumMap} which is copied on every
+ * change and read without locking. Each type has its own {@link ProcessorMetrics}.
+ * <p>
+ * Offloaded messages are serialized per addressed dSUID (see {@link OffloadExecutor#execute(Object, Runnable)}),
+ * so messages to the same device are processed in order while different devices proceed in parallel.
+ * Notifications addressing several devices at once are fanned out inline by their processors.
+ * <p>
+ * Requests without registered processor are answered with <code>ERR_NOT_IMPLEMENTED</code>, requests the
+ * saturated offload executor rejects with <code>ERR_SERVICE_NOT_AVAILABLE</code>. Other messages (e.g.
+ * notifications) are dropped in both cases.
+ */
+@Slf4j
+public class MessageDispatcher {
+
+    /**
+     * message types the vdSM expects a response for
+     */
+    private static final Set<Messages.Type> REQUEST_TYPES = Collections.unmodifiableSet(EnumSet.of(
+            Messages.Type.VDSM_REQUEST_HELLO,
+            Messages.Type.VDSM_REQUEST_GET_PROPERTY,
+            Messages.Type.VDSM_REQUEST_SET_PROPERTY,
+            Messages.Type.VDSM_REQUEST_GENERIC_REQUEST,
+            Messages.Type.VDSM_SEND_REMOVE,
+            Messages.Type.VDSM_SEND_BYE));
+
+    private final OffloadExecutor offloadExecutor;
+
+    private final Map<Messages.Type, ProcessorMetrics> metrics = new EnumMap<>(Messages.Type.class);
+
+    private volatile EnumMap<Messages.Type, Registration> registrations = new EnumMap<>(Messages.Type.class);
+
+    /**
+     * Creates a new instance of MessageDispatcher.
+     *
+     * @param offloadExecutor executor running processors registered with {@link ExecutionMode#OFFLOAD}
+     */
+    public MessageDispatcher(OffloadExecutor offloadExecutor) {
+        Preconditions.checkArgument(offloadExecutor != null, "offload executor must not be 'null'");
+        this.offloadExecutor = offloadExecutor;
+        for (Messages.Type type : Messages.Type.values()) {
+            metrics.put(type, new ProcessorMetrics());
+        }
+    }
+
+    /**
+     * Registers a processor executed on the event loop (see {@link ExecutionMode#INLINE})
+     *
+     * @see #register(Messages.Type, ExecutionMode, MessageProcessor)
+     */
+    public MessageProcessor register(Messages.Type type, MessageProcessor processor) {
+        return register(type, ExecutionMode.INLINE, processor);
+    }
+
+    /**
+     * Registers the processor for the given message type. An already registered processor is replaced.
+     *
+     * @param type message type
+     * @param mode thread the processor is executed on
+     * @param processor processor
+     * @return the replaced processor or <code>null</code>
+     */
+    public synchronized MessageProcessor register(Messages.Type type, ExecutionMode mode,
+                                                  MessageProcessor processor) {
+        Preconditions.checkArgument(type != null && mode != null && processor != null,
+                "type, mode and processor must not be 'null'");
+        EnumMap<Messages.Type, Registration> copy = new EnumMap<>(registrations);
+        Registration previous = copy.put(type, new Registration(processor, mode));
+        registrations = copy;
+        log.debug("registered {} processor for {}", mode, type);
+        return previous != null ? previous.processor : null;
+    }
+
+    /**
+     * Registers a processor which needs the channel the message has been received on
+     *
+     * @see #register(Messages.Type, ExecutionMode, MessageProcessor)
+     */
+    public MessageProcessor register(Messages.Type type, ExecutionMode mode, ChannelMessageProcessor processor) {
+        return register(type, mode, (MessageProcessor) processor);
+    }
+
+    /**
+     * @param type message type
+     * @return the removed processor or <code>null</code>
+     */
+    public synchronized MessageProcessor unregister(Messages.Type type) {
+        EnumMap<Messages.Type, Registration> copy = new EnumMap<>(registrations);
+        Registration previous = copy.remove(type);
+        registrations = copy;
+        return previous != null ? previous.processor : null;
+    }
+
+    public boolean isRegistered(Messages.Type type) {
+        return registrations.containsKey(type);
+    }
+
+    /**
+     * @return the execution mode of the processor registered for the given type or <code>null</code>
+     */
+    public ExecutionMode getExecutionMode(Messages.Type type) {
+        Registration registration = registrations.get(type);
+        return registration != null ? registration.mode : null;
+    }
+
+    /**
+     * @return counters of the given message type
+     */
+    public ProcessorMetrics getMetrics(Messages.Type type) {
+        return metrics.get(type);
+    }
+
+    /**
+     * Routes the given message to its processor without channel information
+     *
+     * @see #dispatch(Messages.Message, Channel, Consumer)
+     */
+    public void dispatch(Messages.Message message, Consumer<Messages.Message> responder) {
+        dispatch(message, null, responder);
+    }
+
+    /**
+     * Routes the given message to its processor. Inline processors are executed by the calling thread, offloaded
+     * ones on the offload executor.
+     *
+     * @param message incoming message
+     * @param channel channel the message has been received on
+     * @param responder consumer sending a (non <code>null</code>) response back to the vdSM
+     */
+    public void dispatch(Messages.Message message, Channel channel, Consumer<Messages.Message> responder) {
+        Registration registration = registrations.get(message.getType());
+        if (registration == null) {
+            log.warn("unsupported messageType {}", message.getType());
+            if (REQUEST_TYPES.contains(message.getType())) {
+                responder.accept(buildGenericResponse(Messages.ResultCode.ERR_NOT_IMPLEMENTED,
+                        message.getMessageId()));
+            }
+            return;
+        }
+
+        log.debug("vdSM ==> {} ...", message.getType());
+        if (registration.mode == ExecutionMode.INLINE) {
+            invoke(registration.processor, message, channel, responder);
+        } else if (!offloadExecutor.tryExecute(serializationKey(message),
+                () -> invoke(registration.processor, message, channel, responder))) {
+            log.warn("{} rejected, offload executor saturated", message.getType());
+            if (REQUEST_TYPES.contains(message.getType())) {
+                responder.accept(buildGenericResponse(Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE,
+                        message.getMessageId()));
+            }
+        }
+    }
+
+    /**
+     * @return the addressed dSUID or <code>null</code> if the message does not address exactly one (valid) dSUID
+     */
+    private static DSUID serializationKey(Messages.Message message) {
+        List<String> targets = DsUtil.getTargetDSUIDs(message);
+        if (targets.size() != 1) {
+            return null;
+        }
+        try {
+            return DSUID.fromDSUID(targets.get(0));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void invoke(MessageProcessor processor, Messages.Message message, Channel channel,
+                        Consumer<Messages.Message> responder) {
+        long start = System.nanoTime();
+        Messages.Message response;
+        boolean success = false;
+        try {
+            response = processor.process(channel, message);
+            success = true;
+        } catch (Exception e) {
+            log.error(ErrorCode.UNEXPECTED_ERROR.getMessage() + e.getMessage(), e);
+            response = REQUEST_TYPES.contains(message.getType())
+                    ? buildGenericResponse(Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE, message.getMessageId())
+                    : null;
+        } finally {
+            metrics.get(message.getType()).record(System.nanoTime() - start, success);
+        }
+
+        if (response != null) {
+            responder.accept(response);
+        }
+    }
+
+    /**
+     * Entry of the dispatch table
+     */
+    private static final class Registration {
+        private final MessageProcessor processor;
+        private final ExecutionMode mode;
+
+        private Registration(MessageProcessor processor, ExecutionMode mode) {
+            this.processor = processor;
+            this.mode = mode;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package de.nikxs.digitalstrom.vdc.server.dispatch;
+
+import io.netty.channel.Channel;
+import vdcapi.Messages;
+
+/**
+ * Processes one type of incoming (vdSM --> vDC) message, see {@link MessageDispatcher#register(Messages.Type,
+ * ExecutionMode, MessageProcessor)}
+ */
+@FunctionalInterface
+public interface MessageProcessor {
+
+    /**
+     * @param message incoming message
+     * @return response which is sent back to the vdSM or <code>null</code> if there is nothing to respond
+     * (e.g. for notifications)
+     * @throws Exception if processing fails; requests are then answered with a
+     * {@link vdcapi.Messages.GenericResponse} (<code>ERR_SERVICE_NOT_AVAILABLE</code>)
+     */
+    Messages.Message process(Messages.Message message) throws Exception;
+
+    /**
+     * Called by the {@link MessageDispatcher}. Processors which need the originating vdSM connection implement
+     * {@link ChannelMessageProcessor} instead of overriding this method.
+     *
+     * @param channel channel the message has been received on (<code>null</code> if dispatched without channel)
+     * @param message incoming message
+     * @return response which is sent back to the vdSM or <code>null</code>
+     * @throws Exception if processing fails
+     */
+    default Messages.Message process(Channel channel, Messages.Message message) throws Exception {
+        return process(message);
+    }
+}
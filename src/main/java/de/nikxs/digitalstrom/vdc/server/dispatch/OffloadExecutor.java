@@ -0,0 +1,230 @@
+package de.nikxs.digitalstrom.vdc.server.dispatch;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executes (device level) business logic off the Netty event loop, so a slow device driver (e.g. doing HTTP
+ * calls) does not delay other vdSM messages.
+ * <p>
+ * Tasks are run on virtual threads if the JVM supports them (Java 21+) and enabled, otherwise on a bounded
+ * thread pool. Tasks submitted with a key (usually the dSUID of the addressed device) are executed one after
+ * another in submission order via the {@link Mailbox} of the key, tasks of different keys run in parallel.
+ * Mailboxes of registered devices are pinned (see {@link #mailbox(Object)}), all others only exist as long as
+ * they have pending tasks, so idle keys do not occupy memory.
+ */
+@Slf4j
+public class OffloadExecutor implements Executor {
+
+    private final ExecutorService executor;
+
+    private final boolean virtualThreads;
+
+    private final ConcurrentMap<Object, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a new instance of OffloadExecutor.
+     *
+     * @param preferVirtualThreads use virtual threads if available
+     * @param maxThreads number of threads of the pool used if virtual threads are not available/ disabled
+     * @param queueCapacity maximum number of tasks (respective busy mailboxes) waiting for a pool thread
+     */
+    public OffloadExecutor(boolean preferVirtualThreads, int maxThreads, int queueCapacity) {
+        ExecutorService virtual = preferVirtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        if (virtual != null) {
+            this.executor = virtual;
+            this.virtualThreads = true;
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new DefaultThreadFactory("vdc-offload", true));
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+            this.virtualThreads = false;
+        }
+        log.info("Offloading vDC business logic to {}", virtualThreads ? "virtual threads"
+                : "a pool of " + maxThreads + " threads");
+    }
+
+    /**
+     * Executes the given task without ordering guarantees
+     *
+     * @throws RejectedExecutionException if the executor is saturated or shut down
+     */
+    @Override
+    public void execute(Runnable task) {
+        try {
+            executor.execute(() -> runSafely(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes the given task after all tasks previously submitted with the same key. If the executor is
+     * saturated the task is dropped (see {@link #getRejected()}), use {@link #tryExecute(Object, Runnable)} to
+     * react on it.
+     *
+     * @param key serialization key (e.g. dSUID of the addressed device). <code>null</code> means no ordering
+     *            guarantee, see {@link #execute(Runnable)}
+     * @param task task
+     */
+    public void execute(Object key, Runnable task) {
+        if (key == null) {
+            execute(task);
+            return;
+        }
+        tryExecute(key, task);
+    }
+
+    /**
+     * Executes the given task after all tasks previously submitted with the same key.
+     *
+     * @param key serialization key (e.g. dSUID of the addressed device) or <code>null</code>
+     * @param task task
+     * @return <code>false</code> if the task has been rejected because the executor is saturated or shut down.
+     * Only this task is dropped, tasks accepted before are still executed.
+     */
+    public boolean tryExecute(Object key, Runnable task) {
+        if (key == null) {
+            try {
+                execute(task);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+        // tasks are only enqueued while holding the map's lock of the key, so a mailbox is never removed
+        // while a task is added to it
+        Mailbox.Envelope[] posted = new Mailbox.Envelope[1];
+        Mailbox mailbox = mailboxes.compute(key, (k, existing) -> {
+            Mailbox m = existing != null ? existing : new Mailbox(k, this);
+            posted[0] = m.enqueue(task);
+            return m;
+        });
+        try {
+            mailbox.schedule();
+        } catch (RejectedExecutionException e) {
+            // a concurrently scheduled drain might have taken the task meanwhile
+            if (mailbox.withdraw(posted[0])) {
+                rejected(mailbox);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the mailbox of the given key and keeps it (and its metrics) even while it is idle, until
+     * {@link #release(Object)} is called.
+     *
+     * @param key key (e.g. dSUID of a device)
+     * @return pinned mailbox
+     */
+    public Mailbox mailbox(Object key) {
+        return mailboxes.compute(key, (k, existing) -> {
+            Mailbox m = existing != null ? existing : new Mailbox(k, this);
+            m.setPinned(true);
+            return m;
+        });
+    }
+
+    /**
+     * Unpins the mailbox of the given key (e.g. of a vanished device). It is removed as soon as it is idle.
+     *
+     * @param key key
+     */
+    public void release(Object key) {
+        mailboxes.computeIfPresent(key, (k, m) -> {
+            m.setPinned(false);
+            return m.isIdle() ? null : m;
+        });
+    }
+
+    /**
+     * @return the mailbox of the given key or <code>null</code> if the key is neither pinned nor busy
+     */
+    public Mailbox getMailbox(Object key) {
+        return mailboxes.get(key);
+    }
+
+    /**
+     * @return <code>true</code> if tasks are run on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return number of existing mailboxes (pinned or busy)
+     */
+    public int getMailboxCount() {
+        return mailboxes.size();
+    }
+
+    /**
+     * @return number of tasks dropped because the executor was saturated or shut down
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * removes the given mailbox if it is neither pinned nor busy
+     */
+    void idle(Mailbox mailbox) {
+        mailboxes.computeIfPresent(mailbox.getKey(),
+                (k, m) -> m == mailbox && !m.isPinned() && m.isIdle() ? null : m);
+    }
+
+    private void rejected(Mailbox mailbox) {
+        rejected.increment();
+        log.warn("Offload executor saturated, rejected task of '{}'", mailbox.getKey());
+        idle(mailbox);
+    }
+
+    static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            log.error("Offloaded task failed: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Looks up <code>Executors.newVirtualThreadPerTaskExecutor()</code> reflectively, as the code base still
+     * targets Java 8
+     *
+     * @return virtual thread executor or <code>null</code> if not supported by the running JVM
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Virtual threads not available ({}), falling back to a thread pool", e.toString());
+            return null;
+        }
+    }
+}
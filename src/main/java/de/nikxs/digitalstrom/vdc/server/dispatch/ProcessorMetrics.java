@@ -0,0 +1,68 @@
+package de.nikxs.digitalstrom.vdc.server.dispatch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free throughput and latency counters of one message type handled by the {@link MessageDispatcher}
+ */
+public class ProcessorMetrics {
+
+    private final LongAdder processed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos, boolean success) {
+        processed.increment();
+        if (!success) {
+            failed.increment();
+        }
+        totalNanos.add(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * @return number of processed messages (including failed ones)
+     */
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    /**
+     * @return number of messages whose processor threw an exception
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return average processing time [µs]
+     */
+    public long getAverageLatencyMicros() {
+        long count = processed.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / count);
+    }
+
+    /**
+     * @return maximum processing time [µs]
+     */
+    public long getMaxLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "ProcessorMetrics[processed=" + getProcessed() + ", failed=" + getFailed() + ", avgLatency="
+                + getAverageLatencyMicros() + "µs, maxLatency=" + getMaxLatencyMicros() + "µs]";
+    }
+}
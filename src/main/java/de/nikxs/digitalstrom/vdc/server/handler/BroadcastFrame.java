@@ -0,0 +1,153 @@
+package de.nikxs.digitalstrom.vdc.server.handler;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import de.nikxs.digitalstrom.vdc.server.transport.VdcHeader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.DefaultByteBufHolder;
+import vdcapi.Messages;
+
+import java.io.IOException;
+
+/**
+ * Outbound {@link Messages.Message} serialized once for all vdSM channels it is sent to (e.g. push or vanish
+ * notifications).
+ * <p>
+ * A frame consists of a small per-channel header and a shared body. The header holds the length prefix, the
+ * message type and the message id, which is written as varint padded to 5 bytes so the frame size does not
+ * depend on the id. The body holds all other fields; it is serialized once into a pooled buffer and every
+ * channel gets a retained duplicate of it. Protobuf accepts padded varints, so the vdSM parses the frame like
+ * any other message.
+ * <p>
+ * A frame is reference counted and must be released once the per-channel frames have been written.
+ */
+public class BroadcastFrame extends DefaultByteBufHolder {
+
+    private static final int MESSAGE_ID_TAG =
+            (Messages.Message.MESSAGE_ID_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+
+    /**
+     * size of the message id field (tag + padded varint)
+     */
+    private static final int MESSAGE_ID_FIELD_LEN = 1 + 5;
+
+    /**
+     * serialized type field, the first field of the message
+     */
+    private final byte[] type;
+
+    private BroadcastFrame(ByteBuf body, byte[] type) {
+        super(body);
+        this.type = type;
+    }
+
+    /**
+     * Serializes all fields of the given message except its message id
+     *
+     * @param message message to broadcast
+     * @param alloc allocator of the shared body
+     * @return frame holding the shared body
+     * @throws IOException if serialization failed
+     * @throws io.netty.handler.codec.EncoderException if the message exceeds the maximum vDC message size
+     */
+    public static BroadcastFrame encode(Messages.Message message, ByteBufAllocator alloc) throws IOException {
+        Messages.Message shared = message.toBuilder().clearType().clearMessageId().buildPartial();
+        int sharedLen = shared.getSerializedSize();
+
+        int typeNumber = message.getType().getNumber();
+        byte[] type = new byte[CodedOutputStream.computeEnumSize(Messages.Message.TYPE_FIELD_NUMBER, typeNumber)];
+        CodedOutputStream output = CodedOutputStream.newInstance(type);
+        output.writeEnum(Messages.Message.TYPE_FIELD_NUMBER, typeNumber);
+        output.checkNoSpaceLeft();
+        VdcMessageEncoder.checkBodyLen(type.length + MESSAGE_ID_FIELD_LEN + sharedLen);
+
+        ByteBuf body = alloc.ioBuffer(sharedLen, sharedLen);
+        try {
+            VdcMessageEncoder.writeBody(shared, sharedLen, body);
+        } catch (IOException | RuntimeException e) {
+            body.release();
+            throw e;
+        }
+        return new BroadcastFrame(body, type);
+    }
+
+    /**
+     * Builds the frame of one channel. The shared body is not copied.
+     *
+     * @param messageId message id of the channel's vdSM session
+     * @param alloc allocator of the per-channel header
+     * @return complete vDC frame, owned by the caller (released once written)
+     */
+    public ByteBuf frame(int messageId, ByteBufAllocator alloc) {
+        int headerLen = VdcHeader.VDC_HEAD_LEN + type.length + MESSAGE_ID_FIELD_LEN;
+        ByteBuf header = alloc.ioBuffer(headerLen, headerLen);
+        header.writeShort(length() - VdcHeader.VDC_HEAD_LEN);
+        header.writeBytes(type);
+        header.writeByte(MESSAGE_ID_TAG);
+        writePaddedVarint32(header, messageId);
+        return alloc.compositeBuffer(2).addComponents(true, header, content().retainedDuplicate());
+    }
+
+    /**
+     * @return size of each per-channel frame in bytes (length prefix included)
+     */
+    public int length() {
+        return VdcHeader.VDC_HEAD_LEN + type.length + MESSAGE_ID_FIELD_LEN + sharedLength();
+    }
+
+    /**
+     * @return size of the shared body in bytes
+     */
+    public int sharedLength() {
+        return content().readableBytes();
+    }
+
+    /**
+     * Writes the given value as varint of exactly 5 bytes (the maximum size of a 32 bit varint)
+     */
+    static void writePaddedVarint32(ByteBuf out, int value) {
+        for (int i = 0; i < 4; i++) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    @Override
+    public BroadcastFrame replace(ByteBuf content) {
+        return new BroadcastFrame(content, type);
+    }
+
+    @Override
+    public BroadcastFrame retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public BroadcastFrame retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public BroadcastFrame touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public BroadcastFrame touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "BroadcastFrame[sharedLength=" + (refCnt() > 0 ? sharedLength() : 0) + "]";
+    }
+}
@@ -0,0 +1,155 @@
+package de.nikxs.digitalstrom.vdc.server.handler;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consolidates flushes of outbound vDC messages to reduce the number of write syscalls.
+ * <p>
+ * <ul>
+ * <li>While inbound messages are read, flushes issued by the responding handlers are deferred till
+ * <code>channelReadComplete</code>, so all responses to one read are written at once.</li>
+ * <li>Flushes issued outside a read (e.g. push notifications sent by the vDC host) are deferred for at most
+ * <tt>maxDelayMicros</tt> microseconds, so a burst of messages ends up in one flush.</li>
+ * <li>A flush is done immediately once <tt>maxPendingFlushes</tt> flushes are pending or the channel became
+ * unwritable (outbound buffer exceeded its high water mark), so back-pressure is never hidden.</li>
+ * </ul>
+ * This handler is stateful and must not be shared between channels. All methods are invoked on the channel's
+ * event loop, so no synchronization is needed.
+ */
+@Slf4j
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+    /**
+     * Number of pending flushes which enforces an immediate flush
+     */
+    private final int maxPendingFlushes;
+
+    /**
+     * Maximum time [µs] a flush issued outside a read is deferred. <code>0</code> disables the batch window
+     */
+    private final long maxDelayMicros;
+
+    private final Runnable flushTask = this::scheduledFlush;
+
+    private ChannelHandlerContext ctx;
+
+    private int pendingFlushes;
+
+    private boolean readInProgress;
+
+    private ScheduledFuture<?> nextScheduledFlush;
+
+    /**
+     * Creates a new instance of FlushCoalescingHandler.
+     *
+     * @param maxPendingFlushes number of pending flushes which enforces an immediate flush
+     * @param maxDelayMicros maximum time [µs] a flush outside a read is deferred
+     */
+    public FlushCoalescingHandler(int maxPendingFlushes, long maxDelayMicros) {
+        if (maxPendingFlushes <= 0) {
+            throw new IllegalArgumentException("maxPendingFlushes: " + maxPendingFlushes + " (expected: > 0)");
+        }
+        this.maxPendingFlushes = maxPendingFlushes;
+        this.maxDelayMicros = Math.max(0, maxDelayMicros);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfPending(ctx);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (++pendingFlushes >= maxPendingFlushes || !ctx.channel().isWritable()) {
+            flushNow(ctx);
+        } else if (readInProgress) {
+            // will be flushed on channelReadComplete
+            return;
+        } else if (maxDelayMicros == 0) {
+            flushNow(ctx);
+        } else if (nextScheduledFlush == null) {
+            nextScheduledFlush = ctx.executor().schedule(flushTask, maxDelayMicros, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        readInProgress = false;
+        flushIfPending(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            // push everything out, so the outbound buffer drains as fast as possible
+            flushIfPending(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        flushIfPending(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelScheduledFlush();
+        ctx.fireChannelInactive();
+    }
+
+    private void scheduledFlush() {
+        nextScheduledFlush = null;
+        flushIfPending(ctx);
+    }
+
+    private void flushIfPending(ChannelHandlerContext ctx) {
+        if (pendingFlushes > 0) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        cancelScheduledFlush();
+        pendingFlushes = 0;
+        ctx.flush();
+    }
+
+    private void cancelScheduledFlush() {
+        if (nextScheduledFlush != null) {
+            nextScheduledFlush.cancel(false);
+            nextScheduledFlush = null;
+        }
+    }
+}
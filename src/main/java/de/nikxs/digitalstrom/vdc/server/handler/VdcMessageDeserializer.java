@@ -1,5 +1,6 @@
 package de.nikxs.digitalstrom.vdc.server.handler;
 
+import de.nikxs.digitalstrom.vdc.server.transport.DSFrame;
 import de.nikxs.digitalstrom.vdc.server.transport.DSMessages;
 import de.nikxs.digitalstrom.vdc.server.transport.VdcHeader;
 import io.netty.buffer.ByteBuf;
@@ -11,10 +12,40 @@ import java.util.List;
 
 /**
  * Deserialization handler
+ * <p>
+ * Supports two modes:
+ * <ul>
+ * <li><b>copying</b> (no-arg constructor) -- header and body are copied into a <code>byte[]</code> and
+ * emitted as {@link DSMessages}</li>
+ * <li><b>zero-copy</b> (used by the <code>VdcServer</code> unless <tt>vdc.server.zero-copy-decoding</tt> is
+ * disabled) -- the unsigned short length prefix is read directly from the inbound buffer and the body is
+ * emitted as a retained slice wrapped into a reference counted {@link DSFrame}</li>
+ * </ul>
  */
 @Slf4j
 public class VdcMessageDeserializer extends ByteToMessageDecoder {
 
+    /**
+     * <code>true</code> if bodies should be handed over as retained slices instead of copies
+     */
+    private final boolean zeroCopy;
+
+    /**
+     * Creates a new instance of VdcMessageDeserializer using the copying mode.
+     */
+    public VdcMessageDeserializer() {
+        this(false);
+    }
+
+    /**
+     * Creates a new instance of VdcMessageDeserializer.
+     *
+     * @param zeroCopy <code>true</code> to emit {@link DSFrame}s, <code>false</code> to emit {@link DSMessages}
+     */
+    public VdcMessageDeserializer(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
     /**
      * @see io.netty.handler.codec.ByteToMessageDecoder#decode(io.netty.channel.ChannelHandlerContext,
      *      io.netty.buffer.ByteBuf, java.util.List)
@@ -28,6 +59,11 @@ public class VdcMessageDeserializer extends ByteToMessageDecoder {
             return;
         }
 
+        if (zeroCopy) {
+            decodeFrame(in, out);
+            return;
+        }
+
         in.markReaderIndex();
 
         byte[] bytes = new byte[VdcHeader.VDC_HEAD_LEN];
@@ -54,4 +90,21 @@ public class VdcMessageDeserializer extends ByteToMessageDecoder {
 //            out.add(new DSMessages(body));
 //        }
     }
+
+    /**
+     * Zero-copy variant of {@link #decode(ChannelHandlerContext, ByteBuf, List)}. The length prefix is peeked
+     * (network byte order) without moving the reader index, so nothing has to be reset on a partial body.
+     *
+     * @param in cumulated inbound bytes
+     * @param out decoded frames
+     */
+    private void decodeFrame(ByteBuf in, List<Object> out) {
+        int bodyLen = in.getUnsignedShort(in.readerIndex());
+        if (in.readableBytes() < VdcHeader.VDC_HEAD_LEN + bodyLen) {
+            return;
+        }
+
+        in.skipBytes(VdcHeader.VDC_HEAD_LEN);
+        out.add(new DSFrame(in.readRetainedSlice(bodyLen)));
+    }
 }
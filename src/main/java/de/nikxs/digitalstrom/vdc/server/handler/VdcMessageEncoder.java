@@ -0,0 +1,110 @@
+package de.nikxs.digitalstrom.vdc.server.handler;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import de.nikxs.digitalstrom.vdc.server.transport.DSMessages;
+import de.nikxs.digitalstrom.vdc.server.transport.VdcHeader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToByteEncoder;
+import lombok.extern.slf4j.Slf4j;
+import vdcapi.Messages;
+
+import java.io.IOException;
+
+/**
+ * Serialization handler for outbound {@link Messages.Message}s.
+ * <p>
+ * In contrast to {@link VdcMessageSerializer} the message is not converted into an intermediate
+ * <code>byte[]</code>. Exactly one (pooled, preferably direct) buffer of the final frame size is taken from
+ * the channel's allocator; the 2 byte length prefix is written and the protobuf message is streamed into the
+ * remaining bytes by a <code>CodedOutputStream</code>.
+ */
+@Slf4j
+public class VdcMessageEncoder extends MessageToByteEncoder<Messages.Message> {
+
+    /**
+     * Creates a new instance of VdcMessageEncoder preferring direct buffers.
+     */
+    public VdcMessageEncoder() {
+        super(true);
+    }
+
+    /**
+     * Allocates a buffer of exactly the frame size (header + serialized message). The serialized size is
+     * memoized by protobuf so {@link #encode(ChannelHandlerContext, Messages.Message, ByteBuf)} gets it for free.
+     *
+     * @see MessageToByteEncoder#allocateBuffer(ChannelHandlerContext, Object, boolean)
+     */
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Messages.Message msg, boolean preferDirect) {
+        int frameLen = VdcHeader.VDC_HEAD_LEN + checkBodyLen(msg.getSerializedSize());
+        return preferDirect ? ctx.alloc().ioBuffer(frameLen, frameLen) : ctx.alloc().heapBuffer(frameLen, frameLen);
+    }
+
+    /**
+     * @see MessageToByteEncoder#encode(ChannelHandlerContext, Object, ByteBuf)
+     */
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Messages.Message msg, ByteBuf out) throws Exception {
+        writeFrame(msg, out);
+        log.debug("Send total byte size={}, body size={}", out.readableBytes(),
+                out.readableBytes() - VdcHeader.VDC_HEAD_LEN);
+    }
+
+    /**
+     * Writes the given message as vDC frame (length prefix in network byte order followed by the serialized
+     * protobuf message) to the given buffer.
+     *
+     * @param msg message to write
+     * @param out target buffer
+     * @throws IOException if serialization failed
+     * @throws EncoderException if the message exceeds {@link DSMessages#MAX_DATA_SIZE}
+     */
+    public static void writeFrame(Messages.Message msg, ByteBuf out) throws IOException {
+        int bodyLen = checkBodyLen(msg.getSerializedSize());
+
+        out.ensureWritable(VdcHeader.VDC_HEAD_LEN + bodyLen);
+        out.writeShort(bodyLen);
+        writeBody(msg, bodyLen, out);
+    }
+
+    /**
+     * Streams the serialized protobuf message into the given buffer (without copying it into a
+     * <code>byte[]</code> first)
+     *
+     * @param msg message to write, which might be partial
+     * @param bodyLen serialized size of the message
+     * @param out target buffer with at least <tt>bodyLen</tt> writable bytes
+     * @throws IOException if serialization failed
+     */
+    static void writeBody(MessageLite msg, int bodyLen, ByteBuf out) throws IOException {
+        int bodyIndex = out.writerIndex();
+        if (out.nioBufferCount() == 1) {
+            CodedOutputStream output = CodedOutputStream.newInstance(out.nioBuffer(bodyIndex, bodyLen));
+            msg.writeTo(output);
+            output.flush();
+            output.checkNoSpaceLeft();
+            out.writerIndex(bodyIndex + bodyLen);
+        } else {
+            msg.writeTo(new ByteBufOutputStream(out));
+        }
+    }
+
+    /**
+     * Ensures the body of a frame does not exceed the maximum accepted vDC message size
+     *
+     * @param bodyLen size of the serialized message
+     * @return the given size
+     * @throws EncoderException if the size exceeds {@link DSMessages#MAX_DATA_SIZE}
+     */
+    static int checkBodyLen(int bodyLen) {
+        if (bodyLen > DSMessages.MAX_DATA_SIZE) {
+            throw new EncoderException("vDC message too large: " + bodyLen + " bytes (max. "
+                    + DSMessages.MAX_DATA_SIZE + ")");
+        }
+        return bodyLen;
+    }
+}
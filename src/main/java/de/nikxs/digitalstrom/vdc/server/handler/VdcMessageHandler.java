@@ -1,11 +1,14 @@
 package de.nikxs.digitalstrom.vdc.server.handler;
 
-import de.nikxs.digitalstrom.vdc.VdcHost;
+import de.nikxs.digitalstrom.vdc.server.transport.DSFrame;
 import de.nikxs.digitalstrom.vdc.server.transport.DSMessages;
 import de.nikxs.digitalstrom.vdc.server.transport.error.ErrorCode;
 import de.nikxs.digitalstrom.vdc.server.codec.Codec;
 import de.nikxs.digitalstrom.vdc.server.codec.ProtobufCodec;
+import de.nikxs.digitalstrom.vdc.server.dispatch.MessageDispatcher;
 import de.nikxs.digitalstrom.vdc.server.util.Preconditions;
+import de.nikxs.digitalstrom.vdc.util.DsUtil;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.CodecException;
@@ -13,22 +16,33 @@ import lombok.extern.slf4j.Slf4j;
 import vdcapi.Messages;
 
 /**
- * Processing handler, internal routing to call the specified service bean and returning the result
+ * Processing handler, decodes the incoming messages and routes them via the {@link MessageDispatcher}.
+ * Accepts both {@link DSMessages} (copying deserializer) and {@link DSFrame} (zero-copy deserializer).
+ * The handler is stateless and shared by all vdSM channels.
  */
 @Slf4j
-public class VdcMessageHandler extends SimpleChannelInboundHandler<DSMessages> {
+@ChannelHandler.Sharable
+public class VdcMessageHandler extends SimpleChannelInboundHandler<Object> {
 
     /**
      * Configurable, the default use of protobuf to do body serialization
      */
-    private Codec codec = new ProtobufCodec();
-    private VdcHost host;
+    private final Codec codec = new ProtobufCodec();
+    private final MessageDispatcher dispatcher;
 
     /**
      * Creates a new instance of VdcMessageHandler.
      */
-    public VdcMessageHandler(VdcHost host) {
-        this.host = host;
+    public VdcMessageHandler(MessageDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * @see SimpleChannelInboundHandler#acceptInboundMessage(Object)
+     */
+    @Override
+    public boolean acceptInboundMessage(Object msg) throws Exception {
+        return msg instanceof DSFrame || msg instanceof DSMessages;
     }
 
     /**
@@ -36,103 +50,42 @@ public class VdcMessageHandler extends SimpleChannelInboundHandler<DSMessages> {
      *      Object)
      */
     @Override
-    public void channelRead0(ChannelHandlerContext ctx, DSMessages in) throws Exception {
+    public void channelRead0(ChannelHandlerContext ctx, Object in) throws Exception {
         Preconditions
                 .checkArgument(in != null, "vDC msg is null which should never happen");
+        Messages.Message message = null;
         try {
-//            if (DSMessages.getErrorCode() != null) {
-//                ctx.channel().writeAndFlush(DSMessages.copyLiteOf(DSMessages)); // ONLY COMMUNICATIN ERROR HERE FIXME
-//                return;
-//            }
-
-            Messages.Message message = (Messages.Message) codec.decode(Messages.Message.class, in.data());
-            Messages.Message response = null;
-            // incoming messages (vdSM - vDC) messages needs to be delegated to vDC host for further processing
-            switch (message.getType()) {
-
-                case VDSM_REQUEST_HELLO:
-                    log.debug("vdSM ==> request hello() ...");
-                    response = host.processHello(message);
-                    break;
-
-                case VDSM_SEND_PING:
-                    log.debug("vdSM ==> send ping() ...");
-                    response = host.processPing(message);
-                    break;
-
-                case VDSM_SEND_BYE:
-                    log.debug("vdSM ==> send bye() ...");
-                    response = host.processBye(message);
-                    break;
-
-                case VDSM_SEND_REMOVE:
-                    log.debug("vdSM ==> send remove() ...");
-                    response = host.processRemove(message);
-                    break;
-
-                case GENERIC_RESPONSE:
-                    log.debug("vdSM ==> send genericResponse() ...");
-                    host.processGenericResponse(message);
-                    break;
-
-                case VDSM_REQUEST_GET_PROPERTY:
-                    log.debug("vdSM ==> send getProperty() ...");
-                    break;
-
-                case VDSM_REQUEST_SET_PROPERTY:
-                    log.debug("vdSM ==> send setProperty() ...");
-                    break;
-
-                case VDSM_REQUEST_GENERIC_REQUEST:
-                    log.warn("unsupported messageType {}", message.getType().toString());
-                    break;
-
-                default:
-                    log.warn("unsupported messageType {}", message.getType().toString());
-                    break;
-
-                    //                case VDC_SEND_ANNOUNCE_DEVICE: doNothing();
-//                case VDC_SEND_VANISH: doNothing();
-//                case VDC_SEND_PUSH_NOTIFICATION: doNothing();
-//                case VDC_SEND_ANNOUNCE_VDC: doNothing();
-//                case VDC_SEND_IDENTIFY: doNothing();
-
-//                case VDSM_NOTIFICATION_CALL_SCENE: doNothing();
-//                case VDSM_NOTIFICATION_SAVE_SCENE: doNothing();
-//                case VDSM_NOTIFICATION_UNDO_SCENE: doNothing();
-//                case VDSM_NOTIFICATION_SET_LOCAL_PRIO: doNothing();
-//                case VDSM_NOTIFICATION_CALL_MIN_SCENE: doNothing();
-//                case VDSM_NOTIFICATION_IDENTIFY: doNothing();
-//                case VDSM_NOTIFICATION_SET_CONTROL_VALUE: doNothing();
-//                case VDSM_NOTIFICATION_DIM_CHANNEL: doNothing();
-//                case VDSM_NOTIFICATION_SET_OUTPUT_CHANNEL_VALUE: doNothing();
-            }
-
-            if (response != null) {
-                DSMessages out = new DSMessages(response.toByteArray());
-                ctx.channel().writeAndFlush(out);
-            }
-
-
-            // LOG.info(servDesc + " exec using " + (System.currentTimeMillis() - start) + "ms");
-//        } catch (ServiceNotFoundException e) {
-//            log.error(ErrorCode.SERVICE_NOT_FOUND.getMessage() + e.getMessage(), e);
-//            ctx.channel().writeAndFlush(
-//                    DSMessages.copyLiteOf(DSMessages).setErrorCode(ErrorCode.SERVICE_NOT_FOUND));
+            message = decode(in);
+            // incoming messages (vdSM - vDC) messages are routed to the processors registered by the vDC host
+            dispatcher.dispatch(message, ctx.channel(), response -> ctx.channel().writeAndFlush(response));
         } catch (CodecException e) {
+            // without a decoded message id there is nothing to correlate an error response with
             log.error(ErrorCode.PROTOBUF_CODEC_ERROR.getMessage() + e.getMessage(), e);
-            ctx.channel().writeAndFlush(new DSMessages(null));
-                    //DSMessages.copyLiteOf(in.setErrorCode(ErrorCode.PROTOBUF_CODEC_ERROR));
-//        } catch (InvocationTargetException e) {
-//            log.error(ErrorCode.INVOCATION_TARGET_EXCEPTION.getMessage() + e.getMessage(), e);
-//            ctx.channel().writeAndFlush(
-//                    DSMessages.copyLiteOf(DSMessages).setErrorCode(
-//                            ErrorCode.INVOCATION_TARGET_EXCEPTION));
+            ctx.close();
         } catch (Exception e) {
             log.error(ErrorCode.UNEXPECTED_ERROR.getMessage() + e.getMessage(), e);
-            ctx.channel().writeAndFlush(new DSMessages(null));
-                    //DSMessages.copyLiteOf(DSMessages).setErrorCode(ErrorCode.UNEXPECTED_ERROR));
+            if (message == null) {
+                ctx.close();
+            } else if (message.getMessageId() > 0) {
+                // requests carry a message id and are answered, notifications are not
+                ctx.channel().writeAndFlush(DsUtil.buildGenericResponse(
+                        Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE, message.getMessageId()));
+            }
+        }
+    }
+
+    /**
+     * Decodes the protobuf body of an inbound {@link DSFrame} (in place) or {@link DSMessages}. A frame is
+     * released by {@link SimpleChannelInboundHandler} after {@link #channelRead0(ChannelHandlerContext, Object)}
+     *
+     * @param in inbound message
+     * @return decoded vDC API message
+     */
+    private Messages.Message decode(Object in) {
+        if (in instanceof DSFrame) {
+            return (Messages.Message) codec.decode(Messages.Message.class, ((DSFrame) in).content());
         }
+        return (Messages.Message) codec.decode(Messages.Message.class, ((DSMessages) in).data());
     }
 
     /**
@@ -147,6 +100,8 @@ public class VdcMessageHandler extends SimpleChannelInboundHandler<DSMessages> {
      */
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        // the channel lifecycle is tracked further down the pipeline
+        ctx.fireChannelActive();
     }
 
     /**
@@ -155,8 +110,7 @@ public class VdcMessageHandler extends SimpleChannelInboundHandler<DSMessages> {
      */
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        log.error(cause.getCause().getMessage(), cause.getCause());
-        // ctx.channel().writeAndFlush(retMsg);
-        ctx.fireChannelRead(new DSMessages(new byte[0])); // FIXME is this handling of communication anomalies OK？
+        log.error(ErrorCode.COMMUNICATION_ERROR.getMessage() + cause.getMessage(), cause);
+        ctx.close();
     }
 }
@@ -13,8 +13,12 @@ import java.util.List;
 
 /**
  * Serialized Handler
+ *
+ * @deprecated replaced by {@link VdcMessageEncoder} in the channel pipeline, kept as reference for
+ * <tt>VdcMessageEncoderBenchmark</tt>
  */
 @Slf4j
+@Deprecated
 public class VdcMessageSerializer extends MessageToMessageEncoder<DSMessages> {
 
     /**
@@ -0,0 +1,70 @@
+package de.nikxs.digitalstrom.vdc.server.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+
+/**
+ * Zero-copy counterpart of {@link DSMessages}. Instead of copying the serialized protobuf body into a
+ * <code>byte[]</code> the frame holds a retained slice of the inbound <code>ByteBuf</code> which is parsed
+ * in place.
+ * <p>
+ * A frame is reference counted and must be released as soon as its body has been parsed. This is done
+ * implicitly if the frame is consumed by a {@link io.netty.channel.SimpleChannelInboundHandler}.
+ *
+ * @see DSMessages
+ */
+public class DSFrame extends DefaultByteBufHolder {
+
+    /**
+     * Creates a new instance of DSFrame.
+     *
+     * @param body (retained) slice holding the serialized protobuf message
+     */
+    public DSFrame(ByteBuf body) {
+        super(body);
+    }
+
+    /**
+     * @return length of the serialized protobuf message in bytes
+     */
+    public int length() {
+        return content().readableBytes();
+    }
+
+    @Override
+    public DSFrame replace(ByteBuf content) {
+        return new DSFrame(content);
+    }
+
+    @Override
+    public DSFrame retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public DSFrame retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public DSFrame touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public DSFrame touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "DSFrame[dataLength=" + (refCnt() > 0 ? length() : 0) + "]";
+    }
+}
@@ -1,16 +1,19 @@
 package de.nikxs.digitalstrom.vdc.util;
 
-import lombok.EqualsAndHashCode;
+import io.netty.buffer.ByteBuf;
 
-import javax.xml.bind.DatatypeConverter;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
-import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * digitalStrom UID (dsUID) is unique identifier each entities /(eg. vDC, vdSD, ...) in a dS system needs to provide.
@@ -70,18 +73,47 @@ import java.util.UUID;
  *          </tr>
  *       </table>
  *
+ * Internally a dSUID is stored binary as two longs (the UUID part) plus the 17th byte, its hash code is computed
+ * once on construction. Parsing works directly on the hex characters (no intermediate strings or UUIDs) and
+ * parsed instances are interned, so repeated lookups of the same dSUID (e.g. in vdSM requests) return the
+ * canonical instance without allocating.
+ *
  *  @see <a href="http://www.ietf.org/rfc/rfc4122.txt">RFC 4122</a>
  */
-@EqualsAndHashCode
-public final class DSUID {
+public final class DSUID implements Comparable<DSUID> {
 
     public static short SGTIN96_HEADER = 0x30; // SGTIN96 8bit header byte
 
+    /**
+     * number of hex digits of the UUID part (16 bytes)
+     */
+    private static final int UUID_DIGITS = 32;
+
+    /**
+     * number of hex digits of a complete dSUID (17 bytes)
+     */
+    private static final int DSUID_DIGITS = 34;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * size of the (direct mapped) cache of interned dSUIDs, must be a power of two
+     */
+    private static final int INTERN_CACHE_SIZE = 4096;
+
+    /**
+     * interned dSUIDs; a slot is overwritten on collision, so the cache never grows
+     */
+    private static final AtomicReferenceArray<DSUID> INTERN_CACHE = new AtomicReferenceArray<>(INTERN_CACHE_SIZE);
+
     /**
      * Inner UUID of this DSUID which will be created by "generateXXX" methods
      */
-    private UUID uuid;    // 128-bit (16 byte)
-    private char[] dsuid; // 136-bit (17 byte)
+    private final long mostSigBits;   // 64-bit (8 byte)
+    private final long leastSigBits;  // 64-bit (8 byte)
+    private final byte instance;      // 17th byte
+    private final int hash;
+    private volatile String dsuid;    // lazily created string representation
     private Type type = Type.UUID;
 
     public enum NamespaceUUID {
@@ -93,8 +125,11 @@ public final class DSUID {
         
         private String uuid;
 
+        private final byte[] bytes;
+
         NamespaceUUID(String uuid) {
             this.uuid = uuid;
+            this.bytes = parseHex(getUuidPlain());
         }
 
         public String getUuid() {
@@ -126,23 +161,33 @@ public final class DSUID {
         UUID
     }
 
-    /* helper variable used for generating a time based (variant 1) UUID */
-    private static final Object lock = new Object();
-    private static long lastTime;
-    private static long clockSequence = 0;
+    /* helper variables used for generating a time based (variant 1) UUID */
+    private static final int CLOCK_SEQUENCE_BITS = 16;
+    private static final long CLOCK_SEQUENCE_MASK = (1L << CLOCK_SEQUENCE_BITS) - 1;
+
+    /**
+     * last used timestamp (millis) and clock sequence packed into one long: <tt>lastTime << 16 | clockSequence</tt>
+     */
+    private static final AtomicLong clock = new AtomicLong();
     private static final long hostIdentifier = getHostId();
 
+    /* message digests are not thread safe, but expensive to look up: keep one per thread */
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> messageDigest("MD5"));
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> messageDigest("SHA-1"));
+
     private DSUID() {
         this(UUID.randomUUID());
     }
 
-    private DSUID(String dsuid) {
-        this(uuidFromDSUID(dsuid));
+    private DSUID(UUID uuid) {
+        this(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), (byte) 0);
     }
 
-    private DSUID(UUID uuid) {
-        this.uuid = uuid;
-        this.dsuid = toDSUID(uuid);
+    private DSUID(long mostSigBits, long leastSigBits, byte instance) {
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+        this.instance = instance;
+        this.hash = hash(mostSigBits, leastSigBits, instance);
     }
 
 //    /**
@@ -154,10 +199,32 @@ public final class DSUID {
 //    }
 
     /**
-     * get the string representation of this DSUID
+     * get the string representation of this DSUID (34 upper case hex digits)
      */
     public String toString() {
-        return new String(this.dsuid);
+        String s = dsuid;
+        if (s == null) {
+            char[] chars = new char[DSUID_DIGITS];
+            writeHex(chars, 0, mostSigBits, 16);
+            writeHex(chars, 16, leastSigBits, 16);
+            writeHex(chars, 32, instance, 2);
+            dsuid = s = new String(chars);
+        }
+        return s;
+    }
+
+    /**
+     * @return the UUID part (first 16 bytes) of this DSUID
+     */
+    public UUID toUUID() {
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * @return the 17th byte of this DSUID (e.g. to distinguish sub devices)
+     */
+    public int getInstance() {
+        return instance & 0xFF;
     }
 
     /**
@@ -165,8 +232,40 @@ public final class DSUID {
      * @param val
      * @return
      */
+    @Override
     public int compareTo(DSUID val) {
-        return this.uuid.compareTo(val.uuid);
+        int result = Long.compare(this.mostSigBits, val.mostSigBits);
+        if (result == 0) {
+            result = Long.compare(this.leastSigBits, val.leastSigBits);
+        }
+        return result != 0 ? result : Integer.compare(getInstance(), val.getInstance());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DSUID)) {
+            return false;
+        }
+        DSUID other = (DSUID) o;
+        return hash == other.hash
+                && mostSigBits == other.mostSigBits
+                && leastSigBits == other.leastSigBits
+                && instance == other.instance;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * @return the canonical (interned) instance of this DSUID
+     */
+    public DSUID intern() {
+        return intern(mostSigBits, leastSigBits, instance, this);
     }
 
     /**
@@ -176,18 +275,11 @@ public final class DSUID {
      */
     public static DSUID generateV1() {
 
-        long currentTimeMillis = System.currentTimeMillis();
+        long state = nextClock(System.currentTimeMillis());
+        long currentTimeMillis = state >>> CLOCK_SEQUENCE_BITS;
+        long clockSequence = state & CLOCK_SEQUENCE_MASK;
         long time;
 
-        synchronized (lock) {
-            if (currentTimeMillis > lastTime) {
-                lastTime = currentTimeMillis;
-                clockSequence = 0;
-            } else  {
-                ++clockSequence;
-            }
-        }
-
         time = currentTimeMillis << 32;  // low Time
         time |= ((currentTimeMillis & 0xFFFF00000000L) >> 16); // mid Time
         time |= 0x1000 | ((currentTimeMillis >> 48) & 0x0FFF); // hi Time
@@ -210,16 +302,8 @@ public final class DSUID {
      * @return A new {@code DSUID} based on UUIDv3
      */
     public static DSUID generateV3(NamespaceUUID ns, String name) {
-
-        byte[] nsbytes = DatatypeConverter.parseHexBinary(ns.getUuidPlain());
-        byte[] namebytes = name.getBytes(Charset.forName("UTF-8"));
-
-        // concat both byte arrays
-        byte[] allBytes = new byte[nsbytes.length + namebytes.length];
-        System.arraycopy(nsbytes, 0, allBytes, 0, nsbytes.length);
-        System.arraycopy(namebytes, 0, allBytes, nsbytes.length, namebytes.length);
-
-        return new DSUID(UUID.nameUUIDFromBytes(allBytes));
+        // same bits as UUID.nameUUIDFromBytes(ns + name) but without a new MessageDigest per call
+        return nameBased(MD5.get(), ns, name, 0x30, 0x80);
     }
 
     /**
@@ -231,34 +315,24 @@ public final class DSUID {
      * @return A new {@code DSUID} based on UUIDv3
      */
     public static DSUID generateV5(NamespaceUUID ns, String name) {
+        return nameBased(SHA1.get(), ns, name, 0x50, 0x90);
+    }
 
-        byte[] nsbytes = DatatypeConverter.parseHexBinary(ns.getUuidPlain());
-        byte[] namebytes = name.getBytes(Charset.forName("UTF-8"));
-
-        // concat both byte arrays
-        byte[] allBytes = new byte[nsbytes.length + namebytes.length];
-        System.arraycopy(nsbytes, 0, allBytes, 0, nsbytes.length);
-        System.arraycopy(namebytes, 0, allBytes, nsbytes.length, namebytes.length);
-
-        MessageDigest md;
-        try {
-            md = MessageDigest.getInstance("SHA-1");
-        } catch (NoSuchAlgorithmException nsae) {
-            throw new InternalError("MD5 not supported", nsae);
+    /**
+     * Bulk variant of {@link #generateV5(NamespaceUUID, String)} e.g. to create the dSUIDs of all devices of a
+     * gateway from their hardware GUIDs at once. The result has the same order as the given names.
+     *
+     * @param ns namespace the new uuids should base on
+     * @param names names (e.g. hardware GUIDs) which should be considered when generating the uuids
+     * @return list of new {@code DSUID}s based on UUIDv5
+     */
+    public static List<DSUID> generateV5(NamespaceUUID ns, List<String> names) {
+        MessageDigest md = SHA1.get();
+        List<DSUID> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            result.add(nameBased(md, ns, name, 0x50, 0x90));
         }
-        byte[] sha1Bytes = md.digest(allBytes);
-        sha1Bytes[6]  &= 0x0f;  /* clear version        */
-        sha1Bytes[6]  |= 0x50;  /* set to version 5     */
-        sha1Bytes[8]  &= 0x3f;  /* clear variant        */
-        sha1Bytes[8]  |= 0x90;  /* set to IETF variant  */
-
-        long msb = 0;
-        long lsb = 0;
-        for (int i=0; i<8; i++)
-            msb = (msb << 8) | (sha1Bytes[i] & 0xff);
-        for (int i=8; i<16; i++)
-            lsb = (lsb << 8) | (sha1Bytes[i] & 0xff);
-        return new DSUID(new UUID(msb, lsb));
+        return result;
     }
 
     /**
@@ -274,39 +348,200 @@ public final class DSUID {
      * Creates a {@code DSUID} from the string standard representation as
      * described in the {@link #toString} method.
      *
-     * generate a DSUID from a given DSUID string representation.
+     * generate a DSUID from a given DSUID string representation. Besides the 34 digit dSUID representation
+     * the 32 digit UUID representation (17th byte is 0) is accepted; dashes are ignored.
      *
-     * @return A new {@code DSUID} from the specified string
+     * @return the canonical {@code DSUID} of the specified string
+     * @throws IllegalArgumentException if the given string is not a valid dSUID
      */
-    public static DSUID fromDSUID(String dsuid) {
-        return new DSUID(dsuid);
+    public static DSUID fromDSUID(CharSequence dsuid) {
+        if (dsuid == null) {
+            throw new IllegalArgumentException("dSUID must not be 'null'");
+        }
+        long msb = 0;
+        long lsb = 0;
+        int instance = 0;
+        int digits = 0;
+        for (int i = 0; i < dsuid.length(); i++) {
+            char c = dsuid.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            int value = hexValue(c);
+            if (value < 0 || digits == DSUID_DIGITS) {
+                throw invalid(dsuid);
+            }
+            if (digits < 16) {
+                msb = (msb << 4) | value;
+            } else if (digits < UUID_DIGITS) {
+                lsb = (lsb << 4) | value;
+            } else {
+                instance = (instance << 4) | value;
+            }
+            digits++;
+        }
+        if (digits != UUID_DIGITS && digits != DSUID_DIGITS) {
+            throw invalid(dsuid);
+        }
+        return intern(msb, lsb, (byte) instance, null);
     }
 
-    private static UUID uuidFromDSUID(String dsuid) {
-        // UUID string format
-        // 0      7 8 11 1215 1619 20        31 32
-        // xxxxxxxx-xxxx-Mxxx-Nxxx-xxxxxxxxxxxx(ii) // last digit belongs to dSUID and must be ignored
-        // 9888dd3d-b345-4109-b088-2673306d0c65 00
-        return UUID.fromString(
-                dsuid.substring(0, 8) + "-" +
-                dsuid.substring(8, 12) + "-" +
-                dsuid.substring(12, 16) + "-" +
-                dsuid.substring(16, 20) + "-" +
-                dsuid.substring(20, 32));
+    /**
+     * Creates a {@code DSUID} from its ASCII encoded hex representation without copying the bytes into a string
+     * first (see {@link #fromDSUID(CharSequence)}).
+     *
+     * @param buf buffer holding the representation
+     * @param index index of the first character
+     * @param length number of characters
+     * @return the canonical {@code DSUID}
+     * @throws IllegalArgumentException if the given bytes are not a valid dSUID
+     */
+    public static DSUID fromDSUID(ByteBuf buf, int index, int length) {
+        return fromDSUID(new AsciiSequence(buf, index, length));
     }
 
     /**
-     * converts UUID (128-bit) to DSUID (136-bit) by appending a "0" byte at
-     * @param uuid
-     * @return
+     * Advances the V1 clock without locking: the clock sequence is reset whenever the time moves forward and
+     * incremented otherwise. If the sequence overflows within one millisecond the timestamp is advanced instead,
+     * so concurrent callers never get the same (time, sequence) pair.
+     *
+     * @return the new clock state (see {@link #clock})
      */
-    private char[] toDSUID(UUID uuid) {
-        ByteBuffer bb = ByteBuffer.wrap(new byte[17]);
-        bb.putLong(uuid.getMostSignificantBits());
-        bb.putLong(uuid.getLeastSignificantBits());
+    private static long nextClock(long currentTimeMillis) {
+        while (true) {
+            long last = clock.get();
+            long lastTime = last >>> CLOCK_SEQUENCE_BITS;
+            long next;
+            if (currentTimeMillis > lastTime) {
+                next = currentTimeMillis << CLOCK_SEQUENCE_BITS;
+            } else if ((last & CLOCK_SEQUENCE_MASK) < CLOCK_SEQUENCE_MASK) {
+                next = last + 1;
+            } else {
+                next = (lastTime + 1) << CLOCK_SEQUENCE_BITS;
+            }
+            if (clock.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Creates a namespace based dSUID by hashing namespace and name with the given (reset) digest and setting
+     * the version and variant bits.
+     */
+    private static DSUID nameBased(MessageDigest md, NamespaceUUID ns, String name, int version, int variant) {
+        md.reset();
+        md.update(ns.bytes);
+        byte[] hash = md.digest(name.getBytes(StandardCharsets.UTF_8));
+        hash[6]  &= 0x0f;     /* clear version        */
+        hash[6]  |= version;  /* set to version       */
+        hash[8]  &= 0x3f;     /* clear variant        */
+        hash[8]  |= variant;  /* set to IETF variant  */
 
-        String s_uuid = DatatypeConverter.printHexBinary(bb.array());
-        return s_uuid.toCharArray();
+        long msb = 0;
+        long lsb = 0;
+        for (int i=0; i<8; i++)
+            msb = (msb << 8) | (hash[i] & 0xff);
+        for (int i=8; i<16; i++)
+            lsb = (lsb << 8) | (hash[i] & 0xff);
+        return new DSUID(msb, lsb, (byte) 0);
+    }
+
+    private static MessageDigest messageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new InternalError(algorithm + " not supported", nsae);
+        }
+    }
+
+    private static byte[] parseHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (hexValue(hex.charAt(2 * i)) << 4 | hexValue(hex.charAt(2 * i + 1)));
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the canonical instance for the given bits. The candidate (if given) or a new instance is stored
+     * in the intern cache on a miss.
+     */
+    private static DSUID intern(long msb, long lsb, byte instance, DSUID candidate) {
+        int hash = hash(msb, lsb, instance);
+        int slot = (hash ^ (hash >>> 16)) & (INTERN_CACHE_SIZE - 1);
+        DSUID cached = INTERN_CACHE.get(slot);
+        if (cached != null && cached.hash == hash && cached.mostSigBits == msb && cached.leastSigBits == lsb
+                && cached.instance == instance) {
+            return cached;
+        }
+        DSUID created = candidate != null ? candidate : new DSUID(msb, lsb, instance);
+        INTERN_CACHE.set(slot, created);
+        return created;
+    }
+
+    private static int hash(long msb, long lsb, byte instance) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32)) * 31 + instance;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    private static void writeHex(char[] chars, int offset, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[offset + i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static IllegalArgumentException invalid(CharSequence dsuid) {
+        return new IllegalArgumentException("Invalid dSUID string: " + dsuid);
+    }
+
+    /**
+     * {@link CharSequence} view on ASCII characters of a {@link ByteBuf}
+     */
+    private static final class AsciiSequence implements CharSequence {
+        private final ByteBuf buf;
+        private final int index;
+        private final int length;
+
+        private AsciiSequence(ByteBuf buf, int index, int length) {
+            this.buf = buf;
+            this.index = index;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int i) {
+            return (char) (buf.getByte(index + i) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiSequence(buf, index + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return buf.toString(index, length, Charset.forName("US-ASCII"));
+        }
     }
 
     /**
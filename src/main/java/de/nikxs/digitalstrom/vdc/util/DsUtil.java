@@ -3,6 +3,9 @@ package de.nikxs.digitalstrom.vdc.util;
 import lombok.extern.slf4j.Slf4j;
 import vdcapi.Messages;
 
+import java.util.Collections;
+import java.util.List;
+
 @Slf4j
 public class DsUtil {
 
@@ -67,4 +70,57 @@ public class DsUtil {
 
         return message.getType().equals(type) ? true : false;
     }
+
+    /**
+     * Extracts the dSUID(s) of the dS entities addressed by the given vdSM message without copying them
+     *
+     * @param message incoming vdSM message
+     * @return addressed dSUID(s) as sent by the vdSM. Empty if the message type addresses no entity or no
+     * dSUID is given
+     */
+    public static List<String> getTargetDSUIDs(Messages.Message message) {
+        switch (message.getType()) {
+            case VDSM_REQUEST_HELLO:
+                return single(message.getVdsmRequestHello().hasDSUID(), message.getVdsmRequestHello().getDSUID());
+            case VDSM_REQUEST_GET_PROPERTY:
+                return single(message.getVdsmRequestGetProperty().hasDSUID(),
+                        message.getVdsmRequestGetProperty().getDSUID());
+            case VDSM_REQUEST_SET_PROPERTY:
+                return single(message.getVdsmRequestSetProperty().hasDSUID(),
+                        message.getVdsmRequestSetProperty().getDSUID());
+            case VDSM_REQUEST_GENERIC_REQUEST:
+                return single(message.getVdsmRequestGenericRequest().hasDSUID(),
+                        message.getVdsmRequestGenericRequest().getDSUID());
+            case VDSM_SEND_PING:
+                return single(message.getVdsmSendPing().hasDSUID(), message.getVdsmSendPing().getDSUID());
+            case VDSM_SEND_REMOVE:
+                return single(message.getVdsmSendRemove().hasDSUID(), message.getVdsmSendRemove().getDSUID());
+            case VDSM_SEND_BYE:
+                return single(message.getVdsmSendBye().hasDSUID(), message.getVdsmSendBye().getDSUID());
+            case VDSM_NOTIFICATION_CALL_SCENE:
+                return message.getVdsmSendCallScene().getDSUIDList();
+            case VDSM_NOTIFICATION_SAVE_SCENE:
+                return message.getVdsmSendSaveScene().getDSUIDList();
+            case VDSM_NOTIFICATION_UNDO_SCENE:
+                return message.getVdsmSendUndoScene().getDSUIDList();
+            case VDSM_NOTIFICATION_SET_LOCAL_PRIO:
+                return message.getVdsmSendSetLocalPrio().getDSUIDList();
+            case VDSM_NOTIFICATION_CALL_MIN_SCENE:
+                return message.getVdsmSendCallMinScene().getDSUIDList();
+            case VDSM_NOTIFICATION_IDENTIFY:
+                return message.getVdsmSendIdentify().getDSUIDList();
+            case VDSM_NOTIFICATION_SET_CONTROL_VALUE:
+                return message.getVdsmSendSetControlValue().getDSUIDList();
+            case VDSM_NOTIFICATION_DIM_CHANNEL:
+                return message.getVdsmSendDimChannel().getDSUIDList();
+            case VDSM_NOTIFICATION_SET_OUTPUT_CHANNEL_VALUE:
+                return message.getVdsmSendOutputChannelValue().getDSUIDList();
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    private static List<String> single(boolean present, String dSUID) {
+        return present ? Collections.singletonList(dSUID) : Collections.<String>emptyList();
+    }
 }
@@ -0,0 +1,158 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.config.VdcProperties;
+import de.nikxs.digitalstrom.vdc.server.Session;
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AnnouncementSchedulerTest {
+
+    private static final DSUID VDSM = DSUID.fromDSUID("9888DD3DB3454109B0882673306D0C6500");
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+
+    private final RecordingHost host = new RecordingHost();
+
+    private final Session session = new Session(VDSM);
+
+    @After
+    public void tearDown() {
+        timer.stop();
+        host.stop();
+    }
+
+    @Test
+    public void should_Limit_Pending_Announcements_To_Window() {
+        AnnouncementScheduler scheduler = new AnnouncementScheduler(host, timer, 2, 3, 100);
+        CompletableFuture<AnnouncementScheduler.Report> report =
+                scheduler.announce(session, Collections.singletonList(TestVdc.withDevices(5)));
+        Assert.assertEquals(1, host.getRequests().size());
+
+        // accepted vDC releases its devices, two of them fit into the window
+        host.respond(0, Messages.ResultCode.ERR_OK);
+        Assert.assertEquals(3, host.getRequests().size());
+        host.respond(1, Messages.ResultCode.ERR_OK);
+        Assert.assertEquals(4, host.getRequests().size());
+
+        for (int i = 2; i < 6; i++) {
+            host.respond(i, Messages.ResultCode.ERR_OK);
+        }
+        Assert.assertEquals(6, host.getRequests().size());
+        Assert.assertEquals(6, report.getNow(null).getAnnounced());
+        Assert.assertEquals(0, report.getNow(null).getFailed());
+    }
+
+    @Test
+    public void should_Retry_With_Exponential_Backoff() throws InterruptedException {
+        AnnouncementScheduler scheduler = new AnnouncementScheduler(host, timer, 2, 3, 100);
+        CompletableFuture<AnnouncementScheduler.Report> report =
+                scheduler.announce(session, Collections.singletonList(TestVdc.withDevices(1)));
+
+        long failed = System.nanoTime();
+        host.respond(0, Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE);
+        Assert.assertEquals(1, host.getRequests().size());
+        host.awaitRequests(2);
+        Assert.assertTrue(millisSince(failed) >= 90);
+
+        failed = System.nanoTime();
+        host.respond(1, Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE);
+        host.awaitRequests(3);
+        Assert.assertTrue(millisSince(failed) >= 190);
+
+        // attempts exhausted
+        host.respond(2, Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE);
+        Assert.assertEquals(3, host.getRequests().size());
+        Assert.assertEquals(0, report.getNow(null).getAnnounced());
+        Assert.assertEquals(2, report.getNow(null).getFailed());
+        Assert.assertEquals(2, report.getNow(null).getRetries());
+    }
+
+    @Test
+    public void should_Not_Retry_Rejected_Announcement() {
+        AnnouncementScheduler scheduler = new AnnouncementScheduler(host, timer, 2, 3, 100);
+        CompletableFuture<AnnouncementScheduler.Report> report =
+                scheduler.announce(session, Collections.singletonList(TestVdc.withDevices(2)));
+
+        host.respond(0, Messages.ResultCode.ERR_FORBIDDEN);
+
+        Assert.assertEquals(1, host.getRequests().size());
+        Assert.assertEquals(3, report.getNow(null).getFailed());
+        Assert.assertEquals(0, report.getNow(null).getRetries());
+    }
+
+    @Test
+    public void should_Announce_Device_Added_During_Session() throws InterruptedException {
+        Vdc vdc = TestVdc.withDevices(1);
+        host.addVdc(vdc);
+        host.processHello(new EmbeddedChannel(), hello());
+        host.awaitRequests(1);
+        host.respond(0, Messages.ResultCode.ERR_OK);
+        host.awaitRequests(2);
+        host.respond(1, Messages.ResultCode.ERR_OK);
+
+        Addressable added = new RecordingDevice();
+        vdc.addDevice(added);
+
+        host.awaitRequests(3);
+        Messages.Message announcement = host.getRequests().get(2).getMessage();
+        Assert.assertEquals(Messages.Type.VDC_SEND_ANNOUNCE_DEVICE, announcement.getType());
+        Assert.assertEquals(added.getDSUID().toString(), announcement.getVdcSendAnnounceDevice().getDSUID());
+        Assert.assertEquals(vdc.getDSUID().toString(), announcement.getVdcSendAnnounceDevice().getVdcDSUID());
+    }
+
+    @Test
+    public void should_Start_Announcing_Once_Offload_Executor_Accepts() throws InterruptedException {
+        VdcProperties config = new VdcProperties();
+        config.getHost().setOffloadVirtualThreads(false);
+        config.getHost().setOffloadThreads(1);
+        config.getHost().setOffloadQueueCapacity(1);
+        config.getHost().setAnnounceRetryBackoff(50);
+        RecordingHost saturated = new RecordingHost(config);
+        CountDownLatch blocked = new CountDownLatch(1);
+        try {
+            saturated.addVdc(new TestVdc());
+            saturated.getOffloadExecutor().execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            saturated.getOffloadExecutor().execute("queued", () -> { });
+
+            Messages.Message response = saturated.processHello(new EmbeddedChannel(), hello());
+            Assert.assertEquals(Messages.Type.VDC_RESPONSE_HELLO, response.getType());
+            Assert.assertTrue(saturated.getRequests().isEmpty());
+
+            blocked.countDown();
+            saturated.awaitRequests(1);
+            Assert.assertEquals(Messages.Type.VDC_SEND_ANNOUNCE_VDC, saturated.getRequests().get(0).getMessage().getType());
+        } finally {
+            blocked.countDown();
+            saturated.stop();
+        }
+    }
+
+    private static Messages.Message hello() {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_REQUEST_HELLO)
+                .setMessageId(1)
+                .setVdsmRequestHello(Vdcapi.vdsm_RequestHello.newBuilder().setDSUID(VDSM.toString()).setApiVersion(3))
+                .build();
+    }
+
+    private static long millisSince(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanos);
+    }
+}
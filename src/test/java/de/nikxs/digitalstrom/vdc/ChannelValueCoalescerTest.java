@@ -0,0 +1,124 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.server.dispatch.OffloadExecutor;
+import io.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import vdcapi.Vdcapi;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class ChannelValueCoalescerTest {
+
+    private final OffloadExecutor executor = new OffloadExecutor(false, 2, 64);
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+
+    private ChannelValueCoalescer coalescer;
+
+    @After
+    public void tearDown() {
+        timer.stop();
+        executor.shutdown();
+    }
+
+    @Test
+    public void should_Apply_Buffered_Values_Atomically() throws InterruptedException {
+        coalescer = new ChannelValueCoalescer(new EntityRegistry(), executor, timer, 0);
+        RecordingDevice device = new RecordingDevice();
+
+        for (int i = 0; i < 100; i++) {
+            coalescer.offerValue(device, "brightness", i, false);
+        }
+        coalescer.offerValue(device, "hue", 120, false);
+        Assert.assertTrue(device.getValues().isEmpty());
+
+        coalescer.offerValue(device, "saturation", 50, true);
+
+        Poll.awaitSize(device.getValues(), 1);
+        Map<String, Double> values = device.getValues().get(0);
+        Assert.assertEquals(3, values.size());
+        Assert.assertEquals(99.0, values.get("brightness"), 0.0);
+        Assert.assertEquals(120.0, values.get("hue"), 0.0);
+        Assert.assertEquals(50.0, values.get("saturation"), 0.0);
+    }
+
+    @Test
+    public void should_Rate_Limit_And_Keep_Latest_Value() throws InterruptedException {
+        coalescer = new ChannelValueCoalescer(new EntityRegistry(), executor, timer, 100);
+        RecordingDevice device = new RecordingDevice();
+
+        for (int i = 0; i <= 1000; i++) {
+            coalescer.offerValue(device, "brightness", i, true);
+        }
+
+        Poll.until(() -> !device.getValues().isEmpty() && latest(device).get("brightness") == 1000.0);
+        Assert.assertEquals(1000.0, latest(device).get("brightness"), 0.0);
+        Assert.assertTrue("expected coalesced applies, got " + device.getValues().size(),
+                device.getValues().size() < 10);
+        Assert.assertEquals(1001, coalescer.getReceived());
+        Assert.assertEquals(1001, coalescer.getApplied() + coalescer.getCoalesced());
+    }
+
+    @Test
+    public void should_Apply_Value_Before_Later_Dim() throws InterruptedException {
+        coalescer = new ChannelValueCoalescer(new EntityRegistry(), executor, timer, 100);
+        RecordingDevice device = new RecordingDevice();
+        coalescer.offerValue(device, "brightness", 10, true);
+        Poll.awaitSize(device.getCalls(), 1);
+
+        // held back by the rate limit
+        coalescer.offerValue(device, "hue", 120, true);
+        coalescer.offerDim(device, dim("brightness", 1));
+
+        Poll.awaitSize(device.getCalls(), 3);
+        Assert.assertEquals(Arrays.asList("values:{brightness=10.0}", "values:{hue=120.0}", "dim:brightness=1"),
+                device.getCalls());
+    }
+
+    @Test
+    public void should_Apply_Dim_Before_Later_Value() throws InterruptedException {
+        coalescer = new ChannelValueCoalescer(new EntityRegistry(), executor, timer, 100);
+        RecordingDevice device = new RecordingDevice();
+        coalescer.offerValue(device, "brightness", 10, true);
+        Poll.awaitSize(device.getCalls(), 1);
+
+        // held back by the rate limit
+        coalescer.offerDim(device, dim("brightness", 1));
+        coalescer.offerValue(device, "hue", 120, true);
+
+        Poll.awaitSize(device.getCalls(), 3);
+        Assert.assertEquals(Arrays.asList("values:{brightness=10.0}", "dim:brightness=1", "values:{hue=120.0}"),
+                device.getCalls());
+    }
+
+    @Test
+    public void should_Keep_Only_Latest_Command_Of_Channel() throws InterruptedException {
+        coalescer = new ChannelValueCoalescer(new EntityRegistry(), executor, timer, 100);
+        RecordingDevice device = new RecordingDevice();
+        coalescer.offerValue(device, "brightness", 10, true);
+        Poll.awaitSize(device.getCalls(), 1);
+
+        // held back by the rate limit
+        coalescer.offerValue(device, "brightness", 20, true);
+        coalescer.offerDim(device, dim("hue", 1));
+        coalescer.offerDim(device, dim("brightness", -1));
+        coalescer.offerDim(device, dim("hue", 0));
+
+        Poll.awaitSize(device.getCalls(), 3);
+        Assert.assertEquals(Arrays.asList("values:{brightness=10.0}", "dim:brightness=-1", "dim:hue=0"),
+                device.getCalls());
+        Assert.assertEquals(2, coalescer.getCoalesced());
+    }
+
+    private static Vdcapi.vdsm_NotificationDimChannel dim(String channel, int mode) {
+        return Vdcapi.vdsm_NotificationDimChannel.newBuilder().setChannelId(channel).setMode(mode).build();
+    }
+
+    private static Map<String, Double> latest(RecordingDevice device) {
+        return device.getValues().get(device.getValues().size() - 1);
+    }
+}
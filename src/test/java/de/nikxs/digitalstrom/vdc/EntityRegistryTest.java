@@ -0,0 +1,157 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class EntityRegistryTest {
+
+    private static final DSUID VDC_1 = DSUID.fromDSUID("9888DD3DB3454109B0882673306D0C6500");
+    private static final DSUID VDC_2 = DSUID.fromDSUID("9888DD3DB3454109B0882673306D0C6600");
+
+    @Test
+    public void should_Resolve_Canonical_And_Non_Canonical_Strings() {
+        EntityRegistry registry = new EntityRegistry();
+        Addressable device = device("6123A881016010000000F2CA0DEB370700");
+        registry.add(device, VDC_1);
+
+        Assert.assertSame(device, registry.get("6123A881016010000000F2CA0DEB370700"));
+        Assert.assertSame(device, registry.get("6123a881016010000000f2ca0deb370700"));
+        Assert.assertNull(registry.get("not a dSUID"));
+
+        registry.remove(device.getDSUID());
+        Assert.assertNull(registry.get("6123A881016010000000F2CA0DEB370700"));
+    }
+
+    @Test
+    public void should_Group_Resolved_Entities_By_Vdc() {
+        EntityRegistry registry = new EntityRegistry();
+        Addressable a = device("6123A881016010000000F2CA0DEB370100");
+        Addressable b = device("6123A881016010000000F2CA0DEB370200");
+        Addressable c = device("6123A881016010000000F2CA0DEB370300");
+        registry.add(a, VDC_1);
+        registry.add(b, VDC_2);
+        registry.add(c, VDC_1);
+        List<String> unknown = new ArrayList<>();
+
+        Map<DSUID, List<Addressable>> groups = registry.resolveByVdc(Arrays.asList(
+                a.getDSUID().toString(), b.getDSUID().toString(), "6123A881016010000000F2CA0DEB370400",
+                c.getDSUID().toString()), unknown::add);
+
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(Arrays.asList(a, c), groups.get(VDC_1));
+        Assert.assertEquals(Arrays.asList(b), groups.get(VDC_2));
+        Assert.assertEquals(Arrays.asList("6123A881016010000000F2CA0DEB370400"), unknown);
+    }
+
+    @Test
+    public void should_Follow_Zone_Change_Of_Vdc() {
+        EntityRegistry registry = new EntityRegistry();
+        Vdc vdc = new TestVdc();
+        vdc.setZoneID(1);
+        registry.add(vdc);
+        Assert.assertEquals(Collections.singleton(vdc), registry.getByZone(1));
+
+        vdc.setZoneID(2);
+
+        Assert.assertTrue(registry.getByZone(1).isEmpty());
+        Assert.assertEquals(Collections.singleton(vdc), registry.getByZone(2));
+
+        registry.remove(vdc.getDSUID());
+        vdc.setZoneID(3);
+        Assert.assertTrue(registry.getByZone(2).isEmpty());
+        Assert.assertTrue(registry.getByZone(3).isEmpty());
+    }
+
+    @Test
+    public void should_Follow_Device_Class_Change() {
+        EntityRegistry registry = new EntityRegistry();
+        Entity lamp = new Entity(Entity.Type.VDSD, DSUID.generateV4(), "lamp") {
+        };
+        registry.add(lamp, VDC_1);
+        Assert.assertTrue(registry.getByDeviceClass("light").isEmpty());
+
+        lamp.setDeviceClass("light", "1");
+        Assert.assertEquals(Collections.singleton(lamp), registry.getByDeviceClass("light"));
+
+        lamp.setDeviceClass("heating", "1");
+        Assert.assertTrue(registry.getByDeviceClass("light").isEmpty());
+        Assert.assertEquals(Collections.singleton(lamp), registry.getByDeviceClass("heating"));
+        Assert.assertEquals(Collections.singleton(lamp), registry.getByVdc(VDC_1));
+    }
+
+    @Test
+    public void should_Keep_Snapshot_Until_Next_Mutation() {
+        EntityRegistry registry = new EntityRegistry();
+        Addressable a = device("6123A881016010000000F2CA0DEB370100");
+        Addressable b = device("6123A881016010000000F2CA0DEB370200");
+        registry.add(a, VDC_1);
+
+        List<Addressable> first = registry.snapshot();
+        Assert.assertSame(first, registry.snapshot());
+        Assert.assertEquals(Collections.singletonList(a), first);
+
+        registry.add(b, VDC_1);
+        List<Addressable> second = registry.snapshot();
+        Assert.assertEquals(Collections.singletonList(a), first);
+        Assert.assertEquals(2, second.size());
+        Assert.assertTrue(second.containsAll(Arrays.asList(a, b)));
+        Assert.assertEquals(Collections.emptyList(), registry.snapshot(Vdc.class));
+
+        registry.remove(a.getDSUID());
+        Assert.assertEquals(Collections.singletonList(b), registry.snapshot());
+        try {
+            registry.snapshot().add(a);
+            Assert.fail("snapshot must be immutable");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void should_Resolve_Stable_Entity_While_Others_Are_Added_And_Removed() throws Exception {
+        EntityRegistry registry = new EntityRegistry();
+        Addressable stable = device("6123A881016010000000F2CA0DEB370100");
+        registry.add(stable, VDC_1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> churn = executor.submit(() -> {
+                while (running.get()) {
+                    Addressable other = device(DSUID.generateV4().toString());
+                    registry.add(other, VDC_1);
+                    registry.remove(other.getDSUID());
+                }
+            });
+            for (int i = 0; i < 100_000; i++) {
+                Assert.assertSame(stable, registry.get(stable.getDSUID()));
+                Assert.assertSame(stable, registry.get(stable.getDSUID().toString()));
+                Assert.assertTrue(registry.getByVdc(VDC_1).contains(stable));
+                List<Addressable> snapshot = registry.snapshot();
+                Assert.assertTrue(snapshot.size() == 1 || snapshot.size() == 2);
+                Assert.assertTrue(snapshot.contains(stable));
+            }
+            running.set(false);
+            churn.get(5, TimeUnit.SECONDS);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(Collections.singletonList(stable), registry.snapshot());
+        Assert.assertEquals(1, registry.size());
+    }
+
+    private static Addressable device(String dSUID) {
+        return new RecordingDevice(DSUID.fromDSUID(dSUID));
+    }
+}
@@ -0,0 +1,72 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.server.dispatch.OffloadExecutor;
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import io.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import vdcapi.Messages;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class NotificationPosterTest {
+
+    private static final DSUID DEVICE = DSUID.fromDSUID("9888DD3DB3454109B0882673306D0C6500");
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+
+    private final OffloadExecutor executor = new OffloadExecutor(false, 1, 1);
+
+    private final CountDownLatch blocked = new CountDownLatch(1);
+
+    @Before
+    public void saturate() {
+        executor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute("queued", () -> { });
+    }
+
+    @After
+    public void tearDown() {
+        blocked.countDown();
+        timer.stop();
+        executor.shutdown();
+    }
+
+    @Test
+    public void should_Repost_Rejected_Command() throws InterruptedException {
+        NotificationPoster poster = new NotificationPoster(executor, timer, 10, 20);
+        CountDownLatch called = new CountDownLatch(1);
+
+        poster.post(DEVICE, Messages.Type.VDSM_NOTIFICATION_CALL_SCENE, called::countDown);
+        Assert.assertEquals(1, poster.getRetried());
+
+        blocked.countDown();
+        Assert.assertTrue(called.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, poster.getDropped());
+    }
+
+    @Test
+    public void should_Count_Dropped_Command_Per_Type() throws InterruptedException {
+        NotificationPoster poster = new NotificationPoster(executor, timer, 2, 10);
+        CountDownLatch called = new CountDownLatch(1);
+
+        poster.post(DEVICE, Messages.Type.VDSM_NOTIFICATION_IDENTIFY, called::countDown);
+
+        Assert.assertTrue(Poll.until(() -> poster.getDropped() > 0));
+        Assert.assertEquals(1, poster.getRetried());
+        Assert.assertEquals(1, poster.getDropped(Messages.Type.VDSM_NOTIFICATION_IDENTIFY));
+        Assert.assertEquals(0, poster.getDropped(Messages.Type.VDSM_NOTIFICATION_CALL_SCENE));
+
+        blocked.countDown();
+        Assert.assertFalse(called.await(100, TimeUnit.MILLISECONDS));
+    }
+}
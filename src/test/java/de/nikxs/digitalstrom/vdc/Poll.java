@@ -0,0 +1,49 @@
+package de.nikxs.digitalstrom.vdc;
+
+import org.junit.Assert;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Waits for results of asynchronous processing (offload executor, timer) in tests
+ */
+public final class Poll {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final long INTERVAL_MILLIS = 5;
+
+    private Poll() {
+    }
+
+    /**
+     * Polls the given condition until it holds or the timeout of 5s has elapsed
+     *
+     * @param condition condition to wait for
+     * @return <code>true</code> if the condition holds
+     */
+    public static boolean until(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(INTERVAL_MILLIS);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until the given (concurrent) collection has reached the given size and asserts it has not grown
+     * beyond
+     *
+     * @param collection collection filled asynchronously
+     * @param count expected size
+     */
+    public static void awaitSize(Collection<?> collection, int count) throws InterruptedException {
+        until(() -> collection.size() >= count);
+        Assert.assertEquals(count, collection.size());
+    }
+}
@@ -0,0 +1,93 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import io.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import vdcapi.Vdcapi;
+
+import java.util.concurrent.TimeUnit;
+
+public class PropertyPushPipelineTest {
+
+    private static final DSUID DEVICE = DSUID.fromDSUID("9888DD3DB3454109B0882673306D0C6500");
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+
+    private final RecordingHost host = new RecordingHost().alwaysConnected();
+
+    @After
+    public void tearDown() {
+        timer.stop();
+        host.stop();
+    }
+
+    @Test
+    public void should_Merge_Changes_Within_Push_Window() throws InterruptedException {
+        PropertyPushPipeline pipeline = new PropertyPushPipeline(host, timer, 50, 16);
+
+        pipeline.push(DEVICE, property("brightness", 10));
+        pipeline.push(DEVICE, property("hue", 120));
+        pipeline.push(DEVICE, property("brightness", 20));
+        Assert.assertTrue(host.getNotifications().isEmpty());
+
+        host.awaitNotifications(1);
+        Vdcapi.vdc_SendPushProperty push = host.getNotifications().get(0).getVdcSendPushProperty();
+        Assert.assertEquals(DEVICE.toString(), push.getDSUID());
+        Assert.assertEquals(2, push.getPropertiesCount());
+        Assert.assertEquals("brightness", push.getProperties(0).getName());
+        Assert.assertEquals(20, push.getProperties(0).getValue().getVInt64());
+        Assert.assertEquals("hue", push.getProperties(1).getName());
+        Assert.assertEquals(3, pipeline.getReceived());
+        Assert.assertEquals(1, pipeline.getMerged());
+        Assert.assertEquals(1, pipeline.getSent());
+    }
+
+    @Test
+    public void should_Open_New_Window_After_Push() throws InterruptedException {
+        PropertyPushPipeline pipeline = new PropertyPushPipeline(host, timer, 50, 16);
+        pipeline.push(DEVICE, property("brightness", 10));
+        host.awaitNotifications(1);
+
+        pipeline.push(DEVICE, property("brightness", 20));
+        Assert.assertEquals(1, host.getNotifications().size());
+
+        host.awaitNotifications(2);
+        Assert.assertEquals(20, host.getNotifications().get(1).getVdcSendPushProperty().getProperties(0)
+                .getValue().getVInt64());
+        Assert.assertEquals(0, pipeline.getMerged());
+    }
+
+    @Test
+    public void should_Flush_Early_At_Max_Pending_Devices() {
+        PropertyPushPipeline pipeline = new PropertyPushPipeline(host, timer, TimeUnit.MINUTES.toMillis(1), 3);
+
+        pipeline.push(DSUID.generateV4(), property("brightness", 10));
+        pipeline.push(DSUID.generateV4(), property("brightness", 20));
+        Assert.assertTrue(host.getNotifications().isEmpty());
+        Assert.assertEquals(2, pipeline.getPendingDevices());
+
+        pipeline.push(DSUID.generateV4(), property("brightness", 30));
+        Assert.assertEquals(3, host.getNotifications().size());
+        Assert.assertEquals(0, pipeline.getPendingDevices());
+    }
+
+    @Test
+    public void should_Push_Immediately_Without_Window() {
+        PropertyPushPipeline pipeline = new PropertyPushPipeline(host, timer, 0, 16);
+
+        pipeline.push(DEVICE, property("brightness", 10));
+        Assert.assertEquals(1, host.getNotifications().size());
+        pipeline.push(DEVICE, property("brightness", 20));
+        Assert.assertEquals(2, host.getNotifications().size());
+
+        Assert.assertEquals(0, pipeline.getMerged());
+        Assert.assertEquals(0, pipeline.getPendingDevices());
+    }
+
+    private static Vdcapi.PropertyElement property(String name, long value) {
+        return Vdcapi.PropertyElement.newBuilder().setName(name)
+                .setValue(Vdcapi.PropertyValue.newBuilder().setVInt64(value)).build();
+    }
+}
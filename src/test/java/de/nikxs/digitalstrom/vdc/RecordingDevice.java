@@ -0,0 +1,84 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import lombok.Getter;
+import lombok.Setter;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test device recording the commands it receives, in the order they have been applied
+ */
+public class RecordingDevice implements Addressable {
+
+    @Getter
+    private final DSUID dSUID;
+
+    /**
+     * applied commands, e.g. <tt>scene:5</tt>, <tt>values:{brightness=10.0}</tt> or <tt>dim:brightness=1</tt>
+     */
+    @Getter
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+
+    /**
+     * output channel values of each {@link #setOutputChannelValues(Map)} call
+     */
+    @Getter
+    private final List<Map<String, Double>> values = new CopyOnWriteArrayList<>();
+
+    @Getter
+    private final List<Messages.Message> byes = new CopyOnWriteArrayList<>();
+
+    /**
+     * time [ms] a scene call takes, simulates a slow device driver
+     */
+    @Setter
+    private volatile long sceneDelayMillis;
+
+    public RecordingDevice() {
+        this(DSUID.generateV4());
+    }
+
+    public RecordingDevice(DSUID dSUID) {
+        this.dSUID = dSUID;
+    }
+
+    @Override
+    public String getName() {
+        return "device " + dSUID;
+    }
+
+    @Override
+    public void callScene(Vdcapi.vdsm_NotificationCallScene notification) {
+        if (sceneDelayMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(sceneDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        calls.add("scene:" + notification.getScene());
+    }
+
+    @Override
+    public void setOutputChannelValues(Map<String, Double> values) {
+        this.values.add(values);
+        calls.add("values:" + values);
+    }
+
+    @Override
+    public void dimChannel(Vdcapi.vdsm_NotificationDimChannel notification) {
+        calls.add("dim:" + notification.getChannelId() + "=" + notification.getMode());
+    }
+
+    @Override
+    public Messages.Message bye(Messages.Message request) {
+        byes.add(request);
+        return Addressable.super.bye(request);
+    }
+}
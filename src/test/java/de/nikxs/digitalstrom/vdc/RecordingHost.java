@@ -0,0 +1,92 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.config.VdcProperties;
+import de.nikxs.digitalstrom.vdc.server.Session;
+import de.nikxs.digitalstrom.vdc.server.VdcServer;
+import lombok.Getter;
+import vdcapi.Messages;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Host recording the requests and notifications it would send to the vdSM. Responses to the recorded requests
+ * are completed by the test. Has to be {@link #stop() stopped} after the test.
+ */
+public class RecordingHost extends VdcHost {
+
+    @Getter
+    private final List<Sent> requests = new CopyOnWriteArrayList<>();
+
+    @Getter
+    private final List<Messages.Message> notifications = new CopyOnWriteArrayList<>();
+
+    private volatile boolean alwaysConnected;
+
+    public RecordingHost() {
+        this(new VdcProperties());
+    }
+
+    public RecordingHost(VdcProperties config) {
+        super(config, new VdcServer(config));
+    }
+
+    /**
+     * Treats the host as connected without a vdSM session, e.g. to record push notifications
+     *
+     * @return this host
+     */
+    public RecordingHost alwaysConnected() {
+        this.alwaysConnected = true;
+        return this;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return alwaysConnected || super.isConnected();
+    }
+
+    @Override
+    public CompletableFuture<Messages.GenericResponse> sendAsync(Session target, Messages.Message message) {
+        Sent request = new Sent(message);
+        requests.add(request);
+        return request.response;
+    }
+
+    @Override
+    public void sendNotification(Messages.Message message) {
+        notifications.add(message);
+    }
+
+    /**
+     * Completes the recorded request with the given index
+     *
+     * @param index index of the request
+     * @param code result code of the response
+     */
+    public void respond(int index, Messages.ResultCode code) {
+        requests.get(index).response.complete(Messages.GenericResponse.newBuilder().setCode(code).build());
+    }
+
+    public void awaitRequests(int count) throws InterruptedException {
+        Poll.awaitSize(requests, count);
+    }
+
+    public void awaitNotifications(int count) throws InterruptedException {
+        Poll.awaitSize(notifications, count);
+    }
+
+    /**
+     * Recorded request and its (pending) response
+     */
+    public static final class Sent {
+        @Getter
+        private final Messages.Message message;
+        private final CompletableFuture<Messages.GenericResponse> response = new CompletableFuture<>();
+
+        private Sent(Messages.Message message) {
+            this.message = message;
+        }
+    }
+}
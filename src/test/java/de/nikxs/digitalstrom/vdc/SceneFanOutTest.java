@@ -0,0 +1,83 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.config.VdcProperties;
+import de.nikxs.digitalstrom.vdc.server.VdcServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class SceneFanOutTest {
+
+    private final RecordingDevice device = new RecordingDevice();
+
+    private VdcHost host;
+
+    @After
+    public void tearDown() {
+        host.stop();
+    }
+
+    @Test
+    public void should_Apply_Scene_Before_Following_Value() throws InterruptedException {
+        start(0);
+
+        dispatch(callScene(5));
+        dispatch(setOutputChannelValue(42));
+
+        Poll.awaitSize(device.getCalls(), 2);
+        Assert.assertEquals(Arrays.asList("scene:5", "values:{0=42.0}"), device.getCalls());
+    }
+
+    @Test
+    public void should_Apply_Held_Back_Value_Before_Following_Scene() throws InterruptedException {
+        start(TimeUnit.SECONDS.toMillis(10));
+        dispatch(setOutputChannelValue(1));
+        Poll.awaitSize(device.getCalls(), 1);
+
+        // held back by the rate limit
+        dispatch(setOutputChannelValue(2));
+        dispatch(callScene(5));
+
+        Poll.awaitSize(device.getCalls(), 3);
+        Assert.assertEquals(Arrays.asList("values:{0=1.0}", "values:{0=2.0}", "scene:5"), device.getCalls());
+    }
+
+    private void start(long channelApplyInterval) {
+        VdcProperties config = new VdcProperties();
+        config.getHost().setChannelApplyInterval(channelApplyInterval);
+        host = new VdcHost(config, new VdcServer(config));
+        // a slow device driver
+        device.setSceneDelayMillis(50);
+        Vdc vdc = new TestVdc();
+        vdc.addDevice(device);
+        host.addVdc(vdc);
+    }
+
+    private void dispatch(Messages.Message message) {
+        host.getDispatcher().dispatch(message, response -> Assert.fail("notifications are not answered"));
+    }
+
+    private Messages.Message callScene(int scene) {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_NOTIFICATION_CALL_SCENE)
+                .setVdsmSendCallScene(Vdcapi.vdsm_NotificationCallScene.newBuilder()
+                        .addDSUID(device.getDSUID().toString())
+                        .setScene(scene))
+                .build();
+    }
+
+    private Messages.Message setOutputChannelValue(double value) {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_NOTIFICATION_SET_OUTPUT_CHANNEL_VALUE)
+                .setVdsmSendOutputChannelValue(Vdcapi.vdsm_NotificationSetOutputChannelValue.newBuilder()
+                        .addDSUID(device.getDSUID().toString())
+                        .setChannel(0)
+                        .setValue(value))
+                .build();
+    }
+}
@@ -0,0 +1,29 @@
+package de.nikxs.digitalstrom.vdc;
+
+import vdcapi.Messages;
+
+/**
+ * Test vDC ignoring the responses to its announcement
+ */
+public class TestVdc extends Vdc {
+
+    public TestVdc() {
+        super("test-vdc");
+    }
+
+    /**
+     * @param devices number of {@link RecordingDevice}s managed by the vDC
+     * @return new vDC
+     */
+    public static TestVdc withDevices(int devices) {
+        TestVdc vdc = new TestVdc();
+        for (int i = 0; i < devices; i++) {
+            vdc.addDevice(new RecordingDevice());
+        }
+        return vdc;
+    }
+
+    @Override
+    public void announceCB(Messages.GenericResponse response) {
+    }
+}
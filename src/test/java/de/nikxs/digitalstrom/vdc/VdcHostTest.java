@@ -0,0 +1,181 @@
+package de.nikxs.digitalstrom.vdc;
+
+import de.nikxs.digitalstrom.vdc.config.VdcProperties;
+import de.nikxs.digitalstrom.vdc.server.RequestMetrics;
+import de.nikxs.digitalstrom.vdc.server.Session;
+import de.nikxs.digitalstrom.vdc.server.VdcServer;
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class VdcHostTest {
+
+    private static final DSUID VDSM = DSUID.fromDSUID("9888DD3DB3454109B0882673306D0C6500");
+
+    private static final DSUID OTHER_VDSM = DSUID.fromDSUID("9888DD3DB3454109B0882673306D0C6600");
+
+    // announcements stay unanswered
+    private final RecordingHost host = new RecordingHost();
+
+    private final VdcProperties config = new VdcProperties();
+
+    // sends requests via the session's channel
+    private final VdcHost sender = new VdcHost(config, new VdcServer(config));
+
+    @After
+    public void tearDown() {
+        host.stop();
+        sender.stop();
+    }
+
+    @Test
+    public void should_Forward_Bye_Only_When_Last_Session_Ends() throws InterruptedException {
+        RecordingDevice device = new RecordingDevice();
+        Vdc vdc = new TestVdc();
+        vdc.addDevice(device);
+        host.addVdc(vdc);
+        EmbeddedChannel first = new EmbeddedChannel();
+        EmbeddedChannel second = new EmbeddedChannel();
+        host.processHello(first, hello(VDSM));
+        host.processHello(second, hello(OTHER_VDSM));
+
+        Messages.Message response = host.processBye(first, bye(VDSM));
+        Assert.assertEquals(Messages.ResultCode.ERR_OK, response.getGenericResponse().getCode());
+        Assert.assertEquals(1, host.getSessions().size());
+
+        host.processBye(second, bye(OTHER_VDSM));
+        // a forwarded first bye would have been applied before on the device's mailbox
+        Poll.awaitSize(device.getByes(), 1);
+        Assert.assertEquals(OTHER_VDSM.toString(), device.getByes().get(0).getVdsmSendBye().getDSUID());
+    }
+
+    @Test
+    public void should_Complete_Request_With_Response() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        Session session = connect(channel);
+        Messages.Message request = announceVdc(session.getMessageId());
+
+        CompletableFuture<Messages.GenericResponse> response = sender.sendAsync(session, request, 5,
+                TimeUnit.SECONDS);
+        Assert.assertEquals(request, channel.readOutbound());
+        Assert.assertEquals(1, session.getRequests().size());
+        Assert.assertEquals(1, sender.getRequestMetrics().getInFlight());
+
+        sender.processGenericResponse(channel, response(request.getMessageId()));
+
+        Assert.assertEquals(Messages.ResultCode.ERR_OK, response.get(5, TimeUnit.SECONDS).getCode());
+        assertCompleted(session, 1, 0, 0);
+    }
+
+    @Test
+    public void should_Expire_Request_Without_Response() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        Session session = connect(channel);
+        Messages.Message request = announceVdc(session.getMessageId());
+
+        CompletableFuture<Messages.GenericResponse> response = sender.sendAsync(session, request, 50,
+                TimeUnit.MILLISECONDS);
+        Assert.assertNotNull(channel.readOutbound());
+
+        try {
+            response.get(5, TimeUnit.SECONDS);
+            Assert.fail("request must time out");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        // metrics are updated after the future has been completed
+        Poll.until(() -> sender.getRequestMetrics().getTimedOut() > 0);
+        assertCompleted(session, 0, 0, 1);
+
+        // a late response is ignored
+        sender.processGenericResponse(channel, response(request.getMessageId()));
+        Assert.assertEquals(0, sender.getRequestMetrics().getCompleted());
+    }
+
+    @Test
+    public void should_Fail_Request_If_Write_Fails() throws Exception {
+        IOException broken = new IOException("broken pipe");
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(broken);
+            }
+        });
+        Session session = connect(channel);
+
+        CompletableFuture<Messages.GenericResponse> response =
+                sender.sendAsync(session, announceVdc(session.getMessageId()), 5, TimeUnit.SECONDS);
+
+        try {
+            response.get(5, TimeUnit.SECONDS);
+            Assert.fail("request must fail");
+        } catch (ExecutionException e) {
+            Assert.assertSame(broken, e.getCause());
+        }
+        Poll.until(() -> sender.getRequestMetrics().getFailed() > 0);
+        assertCompleted(session, 0, 1, 0);
+    }
+
+    private Session connect(EmbeddedChannel channel) {
+        Messages.Message response = sender.processHello(channel, hello(VDSM));
+        Assert.assertEquals(Messages.Type.VDC_RESPONSE_HELLO, response.getType());
+        return sender.getPrimarySession();
+    }
+
+    private void assertCompleted(Session session, long completed, long failed, long timedOut) {
+        RequestMetrics metrics = sender.getRequestMetrics();
+        Assert.assertEquals(0, session.getRequests().size());
+        Assert.assertEquals(0, metrics.getInFlight());
+        Assert.assertEquals(1, metrics.getSent());
+        Assert.assertEquals(completed, metrics.getCompleted());
+        Assert.assertEquals(failed, metrics.getFailed());
+        Assert.assertEquals(timedOut, metrics.getTimedOut());
+    }
+
+    private static Messages.Message announceVdc(int messageId) {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDC_SEND_ANNOUNCE_VDC)
+                .setMessageId(messageId)
+                .setVdcSendAnnounceVdc(Vdcapi.vdc_SendAnnounceVdc.newBuilder().setDSUID(DSUID.generateV4().toString()))
+                .build();
+    }
+
+    private static Messages.Message response(int messageId) {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.GENERIC_RESPONSE)
+                .setMessageId(messageId)
+                .setGenericResponse(Messages.GenericResponse.newBuilder().setCode(Messages.ResultCode.ERR_OK))
+                .build();
+    }
+
+    private static Messages.Message hello(DSUID vdSM) {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_REQUEST_HELLO)
+                .setMessageId(1)
+                .setVdsmRequestHello(Vdcapi.vdsm_RequestHello.newBuilder().setDSUID(vdSM.toString()).setApiVersion(3))
+                .build();
+    }
+
+    private static Messages.Message bye(DSUID vdSM) {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_SEND_BYE)
+                .setMessageId(2)
+                .setVdsmSendBye(Vdcapi.vdsm_SendBye.newBuilder().setDSUID(vdSM.toString()))
+                .build();
+    }
+}
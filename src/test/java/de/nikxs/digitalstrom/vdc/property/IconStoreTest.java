@@ -0,0 +1,45 @@
+package de.nikxs.digitalstrom.vdc.property;
+
+import com.google.protobuf.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class IconStoreTest {
+
+    @Test
+    public void should_Share_Identical_Icons() {
+        IconStore store = new IconStore();
+        ByteString first = store.intern("lamp", new byte[]{1, 2, 3, 4});
+        ByteString second = store.intern("lamp", new byte[]{1, 2, 3, 4});
+        ByteString other = store.intern("switch", new byte[]{4, 3, 2, 1});
+
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, other);
+        Assert.assertSame(first, store.get("lamp"));
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(8, store.getBytesStored());
+        Assert.assertEquals(4, store.getBytesSaved());
+    }
+
+    @Test
+    public void should_Intern_Icon_Without_Name() {
+        IconStore store = new IconStore();
+        ByteString named = store.intern("lamp", new byte[]{1, 2, 3, 4});
+
+        Assert.assertSame(named, store.intern(null, new byte[]{1, 2, 3, 4}));
+        Assert.assertNull(store.get(null));
+        Assert.assertSame(named, store.get("lamp"));
+    }
+
+    @Test
+    public void should_Load_Icon_Resource_Once() throws IOException {
+        IconStore store = new IconStore();
+        ByteString icon = store.load("default", "/default_icon_16x16.png");
+
+        Assert.assertTrue(icon.size() > 0);
+        Assert.assertSame(icon, store.load("default", "/default_icon_16x16.png"));
+        Assert.assertEquals(0, store.getBytesSaved());
+    }
+}
@@ -0,0 +1,221 @@
+package de.nikxs.digitalstrom.vdc.property;
+
+import org.junit.Assert;
+import org.junit.Test;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PropertyEngineTest {
+
+    private final PropertyEngine engine = new PropertyEngine();
+
+    @Test
+    public void should_Read_Queried_Properties_In_Query_Order() {
+        TestEntity entity = new TestEntity();
+        List<Vdcapi.PropertyElement> result = engine.getProperties(entity,
+                Arrays.asList(query("zoneID"), query("unknown"), query("name")));
+
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals("zoneID", result.get(0).getName());
+        Assert.assertEquals(7, result.get(0).getValue().getVInt64());
+        Assert.assertEquals("name", result.get(1).getName());
+        Assert.assertEquals("lamp", result.get(1).getValue().getVString());
+    }
+
+    @Test
+    public void should_Expand_Wildcard_And_Omit_Value_Of_Unset_Property() {
+        List<Vdcapi.PropertyElement> result = engine.getProperties(new TestEntity(),
+                Collections.singletonList(query("")));
+
+        Assert.assertEquals(4, result.size());
+        Assert.assertFalse(element(result, "model").hasValue());
+        Assert.assertTrue(element(result, "active").getValue().getVBool());
+        Assert.assertEquals(7, element(result, "zoneID").getValue().getVInt64());
+    }
+
+    @Test
+    public void should_Evaluate_Nested_Query() {
+        List<Vdcapi.PropertyElement> result = engine.getProperties(new TestDevice(),
+                Collections.singletonList(Vdcapi.PropertyElement.newBuilder().setName("output")
+                        .addElements(query("function")).build()));
+
+        Assert.assertEquals(1, result.size());
+        Vdcapi.PropertyElement output = element(result, "output");
+        Assert.assertFalse(output.hasValue());
+        Assert.assertEquals(1, output.getElementsCount());
+        Assert.assertEquals(3, element(output.getElementsList(), "function").getValue().getVInt64());
+    }
+
+    @Test
+    public void should_Return_Whole_Container_Without_Sub_Query() {
+        List<Vdcapi.PropertyElement> result = engine.getProperties(new TestDevice(),
+                Arrays.asList(query("output"), query("name")));
+
+        Assert.assertEquals(2, result.size());
+        Vdcapi.PropertyElement output = element(result, "output");
+        Assert.assertEquals(2, output.getElementsCount());
+        Assert.assertEquals(3, element(output.getElementsList(), "function").getValue().getVInt64());
+        Assert.assertEquals("brightness", element(output.getElementsList(), "channel").getValue().getVString());
+        Assert.assertEquals("lamp", element(result, "name").getValue().getVString());
+    }
+
+    @Test
+    public void should_Cache_Compiled_Query_Per_Shape() {
+        PropertySchema schema = PropertySchema.of(TestEntity.class);
+        CompiledQuery first = schema.compile(Arrays.asList(query("name"), query("zoneID")));
+        CompiledQuery second = schema.compile(Arrays.asList(query("name"), query("zoneID")));
+
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, schema.compile(Collections.singletonList(query("name"))));
+    }
+
+    @Test
+    public void should_Write_Writable_Properties_Only() {
+        TestEntity entity = new TestEntity();
+
+        Assert.assertEquals(Messages.ResultCode.ERR_OK, engine.setProperties(entity,
+                Arrays.asList(property("name", Vdcapi.PropertyValue.newBuilder().setVString("bulb")),
+                        property("zoneID", Vdcapi.PropertyValue.newBuilder().setVUint64(12)))));
+        Assert.assertEquals("bulb", entity.getName());
+        Assert.assertEquals(12, entity.getZoneID());
+
+        Assert.assertEquals(Messages.ResultCode.ERR_FORBIDDEN, engine.setProperties(entity,
+                Collections.singletonList(property("active", Vdcapi.PropertyValue.newBuilder().setVBool(false)))));
+        Assert.assertEquals(Messages.ResultCode.ERR_NOT_FOUND, engine.setProperties(entity,
+                Collections.singletonList(property("unknown", Vdcapi.PropertyValue.newBuilder().setVBool(false)))));
+        Assert.assertEquals(Messages.ResultCode.ERR_INVALID_VALUE_TYPE, engine.setProperties(entity,
+                Collections.singletonList(property("name", Vdcapi.PropertyValue.newBuilder().setVBool(false)))));
+        Assert.assertEquals("bulb", entity.getName());
+    }
+
+    @Test
+    public void should_Not_Write_Any_Property_If_One_Is_Invalid() {
+        TestEntity entity = new TestEntity();
+
+        Assert.assertEquals(Messages.ResultCode.ERR_INVALID_VALUE_TYPE, engine.setProperties(entity,
+                Arrays.asList(property("name", Vdcapi.PropertyValue.newBuilder().setVString("bulb")),
+                        property("zoneID", Vdcapi.PropertyValue.newBuilder().setVString("kitchen")))));
+        Assert.assertEquals(Messages.ResultCode.ERR_FORBIDDEN, engine.setProperties(entity,
+                Arrays.asList(property("zoneID", Vdcapi.PropertyValue.newBuilder().setVUint64(12)),
+                        property("active", Vdcapi.PropertyValue.newBuilder().setVBool(false)))));
+
+        Assert.assertEquals("lamp", entity.getName());
+        Assert.assertEquals(7, entity.getZoneID());
+    }
+
+    @Test
+    public void should_Serve_Cached_Property_From_Snapshot_Until_Invalidated() {
+        TestEntity entity = new TestEntity();
+        PropertySnapshot snapshot = new PropertySnapshot(TestEntity.class);
+        PropertyAccessor model = PropertySchema.of(TestEntity.class).get("model");
+
+        entity.setModel("dimmer");
+        Vdcapi.PropertyElement first = snapshot.element(model, entity);
+        Assert.assertSame(first, snapshot.element(model, entity));
+        Assert.assertEquals(1, snapshot.getHits());
+
+        entity.setModel("switch");
+        Assert.assertSame(first, snapshot.element(model, entity));
+        snapshot.invalidate("model");
+        Assert.assertEquals("switch", snapshot.element(model, entity).getValue().getVString());
+        Assert.assertEquals(2, snapshot.getMisses());
+    }
+
+    private static Vdcapi.PropertyElement element(List<Vdcapi.PropertyElement> elements, String name) {
+        for (Vdcapi.PropertyElement element : elements) {
+            if (name.equals(element.getName())) {
+                return element;
+            }
+        }
+        throw new AssertionError("no property '" + name + "' in " + elements);
+    }
+
+    private static Vdcapi.PropertyElement query(String name) {
+        return Vdcapi.PropertyElement.newBuilder().setName(name).build();
+    }
+
+    private static Vdcapi.PropertyElement property(String name, Vdcapi.PropertyValue.Builder value) {
+        return Vdcapi.PropertyElement.newBuilder().setName(name).setValue(value).build();
+    }
+
+    public static class TestEntity {
+
+        @Property(writable = true)
+        private String name = "lamp";
+
+        @Property(writable = true)
+        private int zoneID = 7;
+
+        @Property
+        private boolean active = true;
+
+        @Property(cached = true)
+        private String model;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getZoneID() {
+            return zoneID;
+        }
+
+        public void setZoneID(int zoneID) {
+            this.zoneID = zoneID;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            this.model = model;
+        }
+    }
+
+    public static class TestDevice {
+
+        @Property
+        private String name = "lamp";
+
+        @Property
+        private TestOutput output = new TestOutput();
+
+        public String getName() {
+            return name;
+        }
+
+        public TestOutput getOutput() {
+            return output;
+        }
+    }
+
+    public static class TestOutput {
+
+        @Property
+        private int function = 3;
+
+        @Property
+        private String channel = "brightness";
+
+        public int getFunction() {
+            return function;
+        }
+
+        public String getChannel() {
+            return channel;
+        }
+    }
+}
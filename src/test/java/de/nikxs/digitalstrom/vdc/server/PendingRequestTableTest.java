@@ -0,0 +1,126 @@
+package de.nikxs.digitalstrom.vdc.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class PendingRequestTableTest {
+
+    private static final int THREADS = 16;
+
+    @Test
+    public void should_Round_Capacity_Up_To_Power_Of_Two() {
+        Assert.assertEquals(1, new PendingRequestTable(1, 1, TimeUnit.SECONDS).capacity());
+        Assert.assertEquals(1024, new PendingRequestTable(1000, 1, TimeUnit.SECONDS).capacity());
+        Assert.assertEquals(1024, new PendingRequestTable(1024, 1, TimeUnit.SECONDS).capacity());
+    }
+
+    @Test
+    public void should_Remove_Request_On_Completion() {
+        PendingRequestTable table = new PendingRequestTable(16, 1, TimeUnit.MINUTES);
+        Request request = Request.builder().id(7).build();
+
+        Assert.assertTrue(table.put(request));
+        Assert.assertTrue(table.contains(7));
+        Assert.assertSame(request, table.remove(7));
+        Assert.assertNull(table.remove(7));
+        Assert.assertEquals(0, table.size());
+    }
+
+    @Test
+    public void should_Reject_Colliding_Live_Request() {
+        PendingRequestTable table = new PendingRequestTable(16, 1, TimeUnit.MINUTES);
+
+        Assert.assertTrue(table.put(Request.builder().id(1).build()));
+        Assert.assertFalse(table.put(Request.builder().id(17).build()));
+        Assert.assertNull(table.get(17));
+        Assert.assertNotNull(table.get(1));
+    }
+
+    @Test
+    public void should_Evict_Stale_Request() throws Exception {
+        PendingRequestTable table = new PendingRequestTable(16, 1, TimeUnit.MILLISECONDS);
+        Request stale = Request.builder().id(1).build();
+        Assert.assertTrue(table.put(stale));
+
+        TimeUnit.MILLISECONDS.sleep(5);
+
+        Request fresh = Request.builder().id(17).build();
+        Assert.assertTrue(table.put(fresh));
+        Assert.assertSame(fresh, table.get(17));
+        Assert.assertEquals(1, table.size());
+        Assert.assertTrue(stale.future().isCompletedExceptionally());
+    }
+
+    @Test
+    public void should_Expire_Stale_Requests() throws Exception {
+        PendingRequestTable table = new PendingRequestTable(16, 1, TimeUnit.MILLISECONDS);
+        for (int id = 1; id <= 8; id++) {
+            table.put(Request.builder().id(id).build());
+        }
+
+        TimeUnit.MILLISECONDS.sleep(5);
+        List<Request> expired = new ArrayList<>();
+
+        Assert.assertEquals(8, table.expire(expired::add));
+        Assert.assertEquals(8, expired.size());
+        Assert.assertEquals(0, table.size());
+    }
+
+    /**
+     * Many threads concurrently put and remove requests of their own id range while the same number of threads
+     * race to remove requests of all ranges. Every request which was added must be removed exactly once, requests
+     * rejected due to a colliding slot must never be returned.
+     */
+    @Test
+    public void should_Stay_Consistent_Under_Concurrent_Access() throws Exception {
+        final int perThread = 20_000;
+        final PendingRequestTable table = new PendingRequestTable(THREADS * 64, 1, TimeUnit.MINUTES);
+        final AtomicIntegerArray added = new AtomicIntegerArray(THREADS * perThread + 1);
+        final AtomicIntegerArray removed = new AtomicIntegerArray(THREADS * perThread + 1);
+        final CyclicBarrier start = new CyclicBarrier(THREADS * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS * 2);
+
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int first = t * perThread + 1;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int id = first; id < first + perThread; id++) {
+                    if (!table.put(Request.builder().id(id).build())) {
+                        continue;
+                    }
+                    added.incrementAndGet(id);
+                    if (table.remove(id) != null) {
+                        removed.incrementAndGet(id);
+                    }
+                }
+                return null;
+            }));
+            results.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < perThread; i++) {
+                    int id = random.nextInt(1, THREADS * perThread + 1);
+                    if (table.remove(id) != null) {
+                        removed.incrementAndGet(id);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(0, table.size());
+        for (int id = 1; id < removed.length(); id++) {
+            Assert.assertEquals("removals of request " + id, added.get(id), removed.get(id));
+        }
+    }
+}
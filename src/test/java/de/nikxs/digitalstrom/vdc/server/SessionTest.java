@@ -0,0 +1,67 @@
+package de.nikxs.digitalstrom.vdc.server;
+
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class SessionTest {
+
+    private static final DSUID VDSM = DSUID.fromDSUID("9888DD3DB3454109B0882673306D0C6500");
+
+    private static final DSUID OTHER_VDSM = DSUID.fromDSUID("9888DD3DB3454109B0882673306D0C6600");
+
+    @Test
+    public void should_Pass_Through_Lifecycle_States() {
+        Session session = new Session(VDSM);
+        Assert.assertEquals(SessionState.HELLO_RECEIVED, session.getState());
+
+        Assert.assertTrue(session.transition(SessionState.HELLO_RECEIVED, SessionState.ANNOUNCING));
+        Assert.assertFalse(session.transition(SessionState.HELLO_RECEIVED, SessionState.ANNOUNCING));
+        Assert.assertTrue(session.transition(SessionState.ANNOUNCING, SessionState.READY));
+
+        Assert.assertEquals(SessionState.READY, session.invalidate());
+        Assert.assertEquals(SessionState.BYE, session.getState());
+        Assert.assertFalse(session.isConnected());
+    }
+
+    @Test
+    public void should_Not_Leave_Bye_State() {
+        Session session = new Session(VDSM);
+        session.transition(SessionState.HELLO_RECEIVED, SessionState.ANNOUNCING);
+        session.invalidate();
+
+        Assert.assertFalse(session.transition(SessionState.ANNOUNCING, SessionState.READY));
+        Assert.assertEquals(SessionState.BYE, session.invalidate());
+    }
+
+    @Test
+    public void should_Allocate_Message_Ids_Per_Session() {
+        PendingRequestTable requests = new PendingRequestTable(16, 1, TimeUnit.MINUTES);
+        Session first = new Session(VDSM, null, requests);
+        Session second = new Session(OTHER_VDSM, null, new PendingRequestTable(16, 1, TimeUnit.MINUTES));
+        Assert.assertTrue(requests.put(Request.builder().id(2).build()));
+
+        Assert.assertEquals(1, first.getMessageId());
+        Assert.assertEquals(3, first.getMessageId());
+        Assert.assertEquals(1, second.getMessageId());
+        Assert.assertEquals(2, second.getMessageId());
+    }
+
+    @Test
+    public void should_Skip_Ids_Of_Taken_Slots_After_Wrap_Around() {
+        PendingRequestTable requests = new PendingRequestTable(16, 1, TimeUnit.MINUTES);
+        Session session = new Session(VDSM, null, requests);
+        int pending = session.getMessageId();
+        Assert.assertTrue(requests.put(Request.builder().id(pending).build()));
+
+        for (int i = 0; i < 100; i++) {
+            int id = session.getMessageId();
+            Assert.assertNotEquals(pending & 15, id & 15);
+            Request request = Request.builder().id(id).build();
+            Assert.assertTrue("id " + id + " collides with pending request " + pending, requests.put(request));
+            Assert.assertTrue(requests.remove(request));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package de.nikxs.digitalstrom.vdc.server;
+
+import de.nikxs.digitalstrom.vdc.VdcHost;
+import de.nikxs.digitalstrom.vdc.config.VdcProperties;
+import de.nikxs.digitalstrom.vdc.server.transport.DSMessages;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures connections/s and messages/s of {@link VdcServer} per transport over loopback.
+ * <p>
+ * <tt>connections</tt> opens and closes a vdSM connection per operation, <tt>messages</tt> sends a burst of
+ * pings to the host and waits for all pongs. With <tt>reusePort</tt> the server binds one listening socket per
+ * acceptor thread (EPOLL only, ignored for NIO).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VdcServerTransportBenchmark {
+
+    private static final int PINGS_PER_INVOCATION = 1024;
+
+    private static final String LOOPBACK = "127.0.0.1";
+
+    @Param({"NIO", "EPOLL"})
+    private TransportType transport;
+
+    @Param({"false", "true"})
+    private boolean reusePort;
+
+    private VdcServer server;
+
+    private VdcHost host;
+
+    private EventLoopGroup clientGroup;
+
+    private Bootstrap client;
+
+    private Channel pingChannel;
+
+    private ByteBuf ping;
+
+    private volatile CountDownLatch pongs;
+
+    @Setup
+    public void setup() throws Exception {
+        // pongs are logged per request otherwise
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("de.nikxs"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        VdcProperties config = new VdcProperties();
+        config.getServer().setTransport(transport);
+        config.getServer().setAcceptorThreads(2);
+        config.getServer().setWorkerThreads(2);
+        config.getServer().setReusePort(reusePort);
+        server = new VdcServer(config);
+        host = new VdcHost(config, server);
+        server.start(host);
+
+        TransportType clientTransport = transport.resolve();
+        clientGroup = clientTransport.newEventLoopGroup(1, "benchmark-client");
+        client = new Bootstrap()
+                .group(clientGroup)
+                .channel(clientTransport.channelClass())
+                .option(ChannelOption.TCP_NODELAY, true)
+                // reset instead of TIME_WAIT, the connection benchmark would run out of ports otherwise
+                .option(ChannelOption.SO_LINGER, 0)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(DSMessages.MAX_DATA_SIZE + 2, 0, 2, 0, 2));
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ReferenceCountUtil.release(msg);
+                                pongs.countDown();
+                            }
+                        });
+                    }
+                });
+        pingChannel = client.connect(LOOPBACK, server.getPort()).sync().channel();
+
+        byte[] body = Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_SEND_PING)
+                .setVdsmSendPing(Vdcapi.vdsm_SendPing.newBuilder().setDSUID(host.getDSUID().toString()))
+                .build()
+                .toByteArray();
+        ping = PooledByteBufAllocator.DEFAULT.directBuffer(body.length + 2);
+        ping.writeShort(body.length);
+        ping.writeBytes(body);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        pingChannel.close().sync();
+        clientGroup.shutdownGracefully().sync();
+        // stops the server as well
+        host.stop();
+        ping.release();
+    }
+
+    @Benchmark
+    public void connections() throws InterruptedException {
+        client.connect(LOOPBACK, server.getPort()).sync().channel().close().sync();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PINGS_PER_INVOCATION)
+    public void messages() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(PINGS_PER_INVOCATION);
+        pongs = latch;
+        for (int i = 0; i < PINGS_PER_INVOCATION; i++) {
+            pingChannel.write(ping.retainedDuplicate());
+        }
+        pingChannel.flush();
+        if (!latch.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException(latch.getCount() + " pongs missing");
+        }
+    }
+}
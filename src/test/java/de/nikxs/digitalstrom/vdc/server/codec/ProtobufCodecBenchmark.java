@@ -0,0 +1,76 @@
+package de.nikxs.digitalstrom.vdc.server.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link ProtobufCodec} for a small (ping) and a large (getProperty response) vDC message.
+ * <tt>decodeBuffer</tt> parses in place from a direct buffer as done for zero-copy frames.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtobufCodecBenchmark {
+
+    private static final String DSUID = "6123A881016010000000F2CA0DEB370700";
+
+    @Param({"ping", "properties"})
+    private String message;
+
+    private final Codec codec = new ProtobufCodec();
+
+    private Messages.Message decoded;
+
+    private byte[] encoded;
+
+    private ByteBuf buffer;
+
+    @Setup
+    public void setup() {
+        Messages.Message.Builder builder = Messages.Message.newBuilder().setMessageId(42);
+        if ("ping".equals(message)) {
+            builder.setType(Messages.Type.VDSM_SEND_PING)
+                    .setVdsmSendPing(Vdcapi.vdsm_SendPing.newBuilder().setDSUID(DSUID));
+        } else {
+            Vdcapi.vdc_ResponseGetProperty.Builder properties = Vdcapi.vdc_ResponseGetProperty.newBuilder();
+            for (int i = 0; i < 32; i++) {
+                properties.addProperties(Vdcapi.PropertyElement.newBuilder()
+                        .setName("property" + i)
+                        .setValue(Vdcapi.PropertyValue.newBuilder().setVString("value of property " + i)));
+            }
+            builder.setType(Messages.Type.VDC_RESPONSE_GET_PROPERTY).setVdcResponseGetProperty(properties);
+        }
+        decoded = builder.build();
+        encoded = decoded.toByteArray();
+        buffer = PooledByteBufAllocator.DEFAULT.directBuffer(encoded.length);
+        buffer.writeBytes(encoded);
+    }
+
+    @TearDown
+    public void tearDown() {
+        buffer.release();
+    }
+
+    @Benchmark
+    public Object decodeArray() {
+        return codec.decode(Messages.Message.class, encoded);
+    }
+
+    @Benchmark
+    public Object decodeBuffer() {
+        return codec.decode(Messages.Message.class, buffer);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(Messages.Message.class, decoded);
+    }
+}
@@ -0,0 +1,148 @@
+package de.nikxs.digitalstrom.vdc.server.dispatch;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static de.nikxs.digitalstrom.vdc.util.DsUtil.buildGenericResponse;
+
+public class MessageDispatcherTest {
+
+    private static final String DSUID = "6123A881016010000000F2CA0DEB370700";
+
+    private final OffloadExecutor executor = new OffloadExecutor(false, 2, 64);
+
+    private final MessageDispatcher dispatcher = new MessageDispatcher(executor);
+
+    private final List<Messages.Message> responses = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void should_Answer_Unsupported_Request_With_Not_Implemented() {
+        dispatcher.dispatch(getProperty(42), responses::add);
+
+        Assert.assertEquals(1, responses.size());
+        Assert.assertEquals(Messages.Type.GENERIC_RESPONSE, responses.get(0).getType());
+        Assert.assertEquals(42, responses.get(0).getMessageId());
+        Assert.assertEquals(Messages.ResultCode.ERR_NOT_IMPLEMENTED, responses.get(0).getGenericResponse().getCode());
+    }
+
+    @Test
+    public void should_Drop_Unsupported_Notification() {
+        dispatcher.dispatch(Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_NOTIFICATION_CALL_SCENE)
+                .setVdsmSendCallScene(Vdcapi.vdsm_NotificationCallScene.newBuilder().addDSUID(DSUID).setScene(5))
+                .build(), responses::add);
+
+        Assert.assertTrue(responses.isEmpty());
+    }
+
+    @Test
+    public void should_Run_Inline_Processor_On_Calling_Thread() {
+        Thread caller = Thread.currentThread();
+        dispatcher.register(Messages.Type.VDSM_REQUEST_GET_PROPERTY, ExecutionMode.INLINE, message -> {
+            Assert.assertSame(caller, Thread.currentThread());
+            return buildGenericResponse(Messages.ResultCode.ERR_OK, message.getMessageId());
+        });
+
+        dispatcher.dispatch(getProperty(1), responses::add);
+
+        // answered before dispatch returned
+        Assert.assertEquals(1, responses.size());
+        Assert.assertEquals(Messages.ResultCode.ERR_OK, responses.get(0).getGenericResponse().getCode());
+        Assert.assertEquals(1, dispatcher.getMetrics(Messages.Type.VDSM_REQUEST_GET_PROPERTY).getProcessed());
+    }
+
+    @Test
+    public void should_Run_Offloaded_Processor_On_Offload_Executor() throws Exception {
+        CompletableFuture<Thread> processedBy = new CompletableFuture<>();
+        CompletableFuture<Messages.Message> response = new CompletableFuture<>();
+        dispatcher.register(Messages.Type.VDSM_REQUEST_GET_PROPERTY, ExecutionMode.OFFLOAD, message -> {
+            processedBy.complete(Thread.currentThread());
+            return buildGenericResponse(Messages.ResultCode.ERR_OK, message.getMessageId());
+        });
+
+        dispatcher.dispatch(getProperty(2), response::complete);
+
+        Assert.assertNotSame(Thread.currentThread(), processedBy.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, response.get(5, TimeUnit.SECONDS).getMessageId());
+        Assert.assertEquals(ExecutionMode.OFFLOAD,
+                dispatcher.getExecutionMode(Messages.Type.VDSM_REQUEST_GET_PROPERTY));
+    }
+
+    @Test
+    public void should_Answer_Failed_Request_With_Service_Not_Available() {
+        dispatcher.register(Messages.Type.VDSM_REQUEST_GET_PROPERTY, message -> {
+            throw new IllegalStateException("device driver failed");
+        });
+
+        dispatcher.dispatch(getProperty(3), responses::add);
+
+        Assert.assertEquals(1, responses.size());
+        Assert.assertEquals(3, responses.get(0).getMessageId());
+        Assert.assertEquals(Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE,
+                responses.get(0).getGenericResponse().getCode());
+        Assert.assertEquals(1, dispatcher.getMetrics(Messages.Type.VDSM_REQUEST_GET_PROPERTY).getFailed());
+    }
+
+    @Test
+    public void should_Not_Answer_Failed_Notification() {
+        dispatcher.register(Messages.Type.VDSM_NOTIFICATION_CALL_SCENE, message -> {
+            throw new IllegalStateException("device driver failed");
+        });
+
+        dispatcher.dispatch(Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_NOTIFICATION_CALL_SCENE)
+                .setVdsmSendCallScene(Vdcapi.vdsm_NotificationCallScene.newBuilder().addDSUID(DSUID).setScene(5))
+                .build(), responses::add);
+
+        Assert.assertTrue(responses.isEmpty());
+        Assert.assertEquals(1, dispatcher.getMetrics(Messages.Type.VDSM_NOTIFICATION_CALL_SCENE).getFailed());
+    }
+
+    @Test
+    public void should_Answer_Rejected_Request_With_Service_Not_Available() throws InterruptedException {
+        OffloadExecutor saturated = new OffloadExecutor(false, 1, 1);
+        MessageDispatcher dispatcher = new MessageDispatcher(saturated);
+        dispatcher.register(Messages.Type.VDSM_REQUEST_GET_PROPERTY, ExecutionMode.OFFLOAD,
+                message -> buildGenericResponse(Messages.ResultCode.ERR_OK, message.getMessageId()));
+        CountDownLatch blocked = new CountDownLatch(1);
+        saturated.execute("busy-device", () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        saturated.execute("queued-device", () -> { });
+
+        dispatcher.dispatch(getProperty(4), responses::add);
+
+        Assert.assertEquals(1, responses.size());
+        Assert.assertEquals(4, responses.get(0).getMessageId());
+        Assert.assertEquals(Messages.ResultCode.ERR_SERVICE_NOT_AVAILABLE,
+                responses.get(0).getGenericResponse().getCode());
+        blocked.countDown();
+        saturated.shutdown();
+    }
+
+    private static Messages.Message getProperty(int messageId) {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_REQUEST_GET_PROPERTY)
+                .setMessageId(messageId)
+                .setVdsmRequestGetProperty(Vdcapi.vdsm_RequestGetProperty.newBuilder().setDSUID(DSUID))
+                .build();
+    }
+}
@@ -0,0 +1,141 @@
+package de.nikxs.digitalstrom.vdc.server.dispatch;
+
+import de.nikxs.digitalstrom.vdc.Poll;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OffloadExecutorTest {
+
+    private static final int KEYS = 8;
+
+    private static final int TASKS_PER_KEY = 2000;
+
+    @Test
+    public void should_Preserve_Order_Per_Key() throws InterruptedException {
+        OffloadExecutor executor = new OffloadExecutor(false, 4, 1024);
+        List<List<Integer>> executed = new ArrayList<>();
+        for (int k = 0; k < KEYS; k++) {
+            executed.add(new ArrayList<>());
+        }
+        CountDownLatch done = new CountDownLatch(KEYS * TASKS_PER_KEY);
+
+        for (int i = 0; i < TASKS_PER_KEY; i++) {
+            for (int k = 0; k < KEYS; k++) {
+                final int key = k;
+                final int sequence = i;
+                // lists are not thread safe: a violated serialization would also show up as lost elements
+                executor.execute("device-" + key, () -> {
+                    executed.get(key).add(sequence);
+                    done.countDown();
+                });
+            }
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> sequences : executed) {
+            Assert.assertEquals(TASKS_PER_KEY, sequences.size());
+            for (int i = 0; i < TASKS_PER_KEY; i++) {
+                Assert.assertEquals(Integer.valueOf(i), sequences.get(i));
+            }
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void should_Run_Different_Keys_In_Parallel() throws InterruptedException {
+        OffloadExecutor executor = new OffloadExecutor(false, 2, 16);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch otherKeyDone = new CountDownLatch(1);
+
+        executor.execute("slow-device", () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute("fast-device", otherKeyDone::countDown);
+
+        Assert.assertTrue(otherKeyDone.await(5, TimeUnit.SECONDS));
+        blocked.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void should_Remove_Idle_Unpinned_Mailboxes() throws InterruptedException {
+        OffloadExecutor executor = new OffloadExecutor(false, 4, 1024);
+        ConcurrentHashMap<Integer, AtomicInteger> counters = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            final int key = i % 100;
+            executor.execute(key, () -> {
+                counters.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                done.countDown();
+            });
+        }
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Poll.until(() -> executor.getMailboxCount() == 0);
+        Assert.assertEquals(0, executor.getMailboxCount());
+        Assert.assertEquals(100, counters.size());
+        executor.shutdown();
+    }
+
+    @Test
+    public void should_Keep_Pinned_Mailbox_And_Its_Metrics() throws InterruptedException {
+        OffloadExecutor executor = new OffloadExecutor(false, 2, 16);
+        Mailbox mailbox = executor.mailbox("device");
+        CountDownLatch done = new CountDownLatch(10);
+
+        for (int i = 0; i < 10; i++) {
+            mailbox.post(done::countDown);
+        }
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Poll.until(() -> mailbox.getProcessed() >= 10);
+        Assert.assertEquals(10, mailbox.getProcessed());
+        Assert.assertEquals(0, mailbox.getDepth());
+        Assert.assertTrue(mailbox.getMaxDepth() >= 1);
+        Assert.assertSame(mailbox, executor.getMailbox("device"));
+
+        executor.release("device");
+        Poll.until(() -> executor.getMailbox("device") == null);
+        Assert.assertNull(executor.getMailbox("device"));
+        executor.shutdown();
+    }
+
+    @Test
+    public void should_Reject_Only_The_New_Task_When_Saturated() throws InterruptedException {
+        OffloadExecutor executor = new OffloadExecutor(false, 1, 1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+
+        // occupies the only thread, the next mailbox fills the queue
+        Assert.assertTrue(executor.tryExecute("busy-device", () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        }));
+        Assert.assertTrue(executor.tryExecute("queued-device", done::countDown));
+
+        Assert.assertFalse(executor.tryExecute("rejected-device", done::countDown));
+        // the busy mailbox is already scheduled, so it still accepts commands
+        Assert.assertTrue(executor.tryExecute("busy-device", done::countDown));
+        Assert.assertEquals(1, executor.getRejected());
+
+        blocked.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
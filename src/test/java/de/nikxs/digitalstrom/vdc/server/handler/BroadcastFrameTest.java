@@ -0,0 +1,59 @@
+package de.nikxs.digitalstrom.vdc.server.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.codec.EncoderException;
+import org.junit.Assert;
+import org.junit.Test;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.Arrays;
+
+public class BroadcastFrameTest {
+
+    private static final String DSUID = "6123A881016010000000F2CA0DEB370700";
+
+    private final UnpooledByteBufAllocator alloc = UnpooledByteBufAllocator.DEFAULT;
+
+    @Test
+    public void should_Patch_Message_Id_Per_Frame_And_Share_Body() throws Exception {
+        Messages.Message message = Messages.Message.newBuilder()
+                .setType(Messages.Type.VDC_SEND_VANISH)
+                .setMessageId(7)
+                .setVdcSendVanish(Vdcapi.vdc_SendVanish.newBuilder().setDSUID(DSUID))
+                .build();
+
+        BroadcastFrame frame = BroadcastFrame.encode(message, alloc);
+        ByteBuf first = frame.frame(1, alloc);
+        ByteBuf second = frame.frame(Integer.MAX_VALUE, alloc);
+        Assert.assertEquals(frame.length(), first.readableBytes());
+        frame.release();
+
+        Assert.assertEquals(first.readableBytes(), second.readableBytes());
+        Assert.assertEquals(1, parse(first).getMessageId());
+        Assert.assertEquals(Integer.MAX_VALUE, parse(second).getMessageId());
+        Assert.assertEquals(message.toBuilder().setMessageId(1).build(), parse(first));
+
+        first.release();
+        Assert.assertEquals(1, second.refCnt());
+        second.release();
+    }
+
+    @Test(expected = EncoderException.class)
+    public void should_Reject_Oversized_Message() throws Exception {
+        char[] name = new char[20000];
+        Arrays.fill(name, 'x');
+        BroadcastFrame.encode(Messages.Message.newBuilder()
+                .setType(Messages.Type.VDC_SEND_VANISH)
+                .setVdcSendVanish(Vdcapi.vdc_SendVanish.newBuilder().setDSUID(new String(name)))
+                .build(), alloc);
+    }
+
+    private static Messages.Message parse(ByteBuf frame) throws Exception {
+        Assert.assertEquals(frame.readableBytes() - 2, frame.getUnsignedShort(frame.readerIndex()));
+        return Messages.Message.parseFrom(ByteBufUtil.getBytes(frame, frame.readerIndex() + 2,
+                frame.readableBytes() - 2));
+    }
+}
@@ -0,0 +1,94 @@
+package de.nikxs.digitalstrom.vdc.server.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class FlushCoalescingHandlerTest {
+
+    private final FlushCounter flushes = new FlushCounter();
+
+    private EmbeddedChannel channel;
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void should_Defer_Flush_Till_Read_Complete() {
+        channel = new EmbeddedChannel(flushes, new FlushCoalescingHandler(32, 0));
+
+        channel.pipeline().fireChannelRead("request");
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{1}));
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{2}));
+        Assert.assertEquals(0, flushes.count);
+        Assert.assertNull(channel.readOutbound());
+
+        channel.pipeline().fireChannelReadComplete();
+        Assert.assertEquals(1, flushes.count);
+        Assert.assertEquals(2, channel.outboundMessages().size());
+    }
+
+    @Test
+    public void should_Flush_At_Max_Pending_Flushes() {
+        channel = new EmbeddedChannel(flushes, new FlushCoalescingHandler(3, TimeUnit.SECONDS.toMicros(60)));
+
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{1}));
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{2}));
+        Assert.assertEquals(0, flushes.count);
+
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{3}));
+        Assert.assertEquals(1, flushes.count);
+        Assert.assertEquals(3, channel.outboundMessages().size());
+    }
+
+    @Test
+    public void should_Flush_When_Batch_Window_Expires() throws InterruptedException {
+        channel = new EmbeddedChannel(flushes, new FlushCoalescingHandler(32, 1000));
+
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{1}));
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{2}));
+        channel.runPendingTasks();
+        Assert.assertEquals(0, flushes.count);
+
+        TimeUnit.MILLISECONDS.sleep(5);
+        channel.runPendingTasks();
+        Assert.assertEquals(1, flushes.count);
+        Assert.assertEquals(2, channel.outboundMessages().size());
+    }
+
+    @Test
+    public void should_Flush_Immediately_When_Channel_Becomes_Unwritable() {
+        channel = new EmbeddedChannel(flushes, new FlushCoalescingHandler(32, TimeUnit.SECONDS.toMicros(60)));
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(4, 8));
+
+        channel.pipeline().fireChannelRead("request");
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[]{1}));
+        Assert.assertEquals(0, flushes.count);
+
+        // exceeds the high water mark without any further flush
+        channel.write(Unpooled.wrappedBuffer(new byte[16]));
+        Assert.assertEquals(1, flushes.count);
+    }
+
+    /**
+     * Counts the flushes passed on to the transport
+     */
+    private static final class FlushCounter extends ChannelOutboundHandlerAdapter {
+        private int count;
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            count++;
+            ctx.flush();
+        }
+    }
+}
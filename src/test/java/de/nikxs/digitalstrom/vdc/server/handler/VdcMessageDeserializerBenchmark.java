@@ -0,0 +1,90 @@
+package de.nikxs.digitalstrom.vdc.server.handler;
+
+import de.nikxs.digitalstrom.vdc.server.codec.Codec;
+import de.nikxs.digitalstrom.vdc.server.codec.ProtobufCodec;
+import de.nikxs.digitalstrom.vdc.server.transport.DSFrame;
+import de.nikxs.digitalstrom.vdc.server.transport.DSMessages;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the copying ({@link DSMessages}) and the zero-copy ({@link DSFrame}) mode of
+ * {@link VdcMessageDeserializer} including the protobuf decoding of each frame.
+ * <p>
+ * A burst of <tt>framesPerRead</tt> ping messages is fed into the decoder with a single read, which
+ * corresponds to a scene call fanning out to many vdSDs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VdcMessageDeserializerBenchmark {
+
+    @Param({"1", "64"})
+    private int framesPerRead;
+
+    private final Codec codec = new ProtobufCodec();
+
+    private ByteBuf burst;
+
+    private EmbeddedChannel copying;
+
+    private EmbeddedChannel zeroCopy;
+
+    @Setup
+    public void setup() {
+        byte[] body = Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_SEND_PING)
+                .setMessageId(42)
+                .setVdsmSendPing(Vdcapi.vdsm_SendPing.newBuilder().setDSUID("6123A881016010000000F2CA0DEB370700"))
+                .build()
+                .toByteArray();
+
+        burst = PooledByteBufAllocator.DEFAULT.directBuffer();
+        for (int i = 0; i < framesPerRead; i++) {
+            burst.writeShort(body.length);
+            burst.writeBytes(body);
+        }
+
+        copying = new EmbeddedChannel(new VdcMessageDeserializer(false));
+        zeroCopy = new EmbeddedChannel(new VdcMessageDeserializer(true));
+    }
+
+    @TearDown
+    public void tearDown() {
+        copying.finishAndReleaseAll();
+        zeroCopy.finishAndReleaseAll();
+        burst.release();
+    }
+
+    @Benchmark
+    public void copying(Blackhole bh) {
+        copying.writeInbound(burst.retainedDuplicate());
+        DSMessages message;
+        while ((message = copying.readInbound()) != null) {
+            bh.consume(codec.decode(Messages.Message.class, message.data()));
+        }
+    }
+
+    @Benchmark
+    public void zeroCopy(Blackhole bh) {
+        zeroCopy.writeInbound(burst.retainedDuplicate());
+        DSFrame frame;
+        while ((frame = zeroCopy.readInbound()) != null) {
+            try {
+                bh.consume(codec.decode(Messages.Message.class, frame.content()));
+            } finally {
+                frame.release();
+            }
+        }
+    }
+}
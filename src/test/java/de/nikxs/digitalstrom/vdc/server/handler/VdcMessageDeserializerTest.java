@@ -0,0 +1,92 @@
+package de.nikxs.digitalstrom.vdc.server.handler;
+
+import de.nikxs.digitalstrom.vdc.server.transport.DSFrame;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+public class VdcMessageDeserializerTest {
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(new VdcMessageDeserializer(true));
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void should_Wait_For_Split_Frame() throws Exception {
+        Messages.Message message = ping(1);
+        ByteBuf frame = frame(message);
+        ByteBuf first = frame.readRetainedSlice(1);
+        ByteBuf second = frame.readRetainedSlice(5);
+        ByteBuf rest = frame.readRetainedSlice(frame.readableBytes());
+        frame.release();
+
+        Assert.assertFalse(channel.writeInbound(first));
+        Assert.assertFalse(channel.writeInbound(second));
+        Assert.assertTrue(channel.writeInbound(rest));
+
+        DSFrame decoded = channel.readInbound();
+        Assert.assertEquals(message.getSerializedSize(), decoded.length());
+        Assert.assertEquals(message, Messages.Message.parseFrom(ByteBufUtil.getBytes(decoded.content())));
+        Assert.assertTrue(decoded.release());
+        Assert.assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void should_Decode_Several_Frames_Of_One_Read() throws Exception {
+        ByteBuf in = frame(ping(1), ping(2));
+        in.writeByte(0);
+
+        Assert.assertTrue(channel.writeInbound(in));
+
+        DSFrame first = channel.readInbound();
+        DSFrame second = channel.readInbound();
+        Assert.assertEquals(1, Messages.Message.parseFrom(ByteBufUtil.getBytes(first.content())).getMessageId());
+        Assert.assertEquals(2, Messages.Message.parseFrom(ByteBufUtil.getBytes(second.content())).getMessageId());
+        Assert.assertNull("the incomplete third frame must not be emitted", channel.readInbound());
+        first.release();
+        second.release();
+    }
+
+    @Test
+    public void should_Release_Inbound_Buffer_With_Last_Frame() {
+        ByteBuf in = frame(ping(1), ping(2));
+
+        Assert.assertTrue(channel.writeInbound(in));
+        DSFrame first = channel.readInbound();
+        DSFrame second = channel.readInbound();
+
+        // the decoder has released its reference, the slices keep the buffer alive
+        Assert.assertEquals(2, in.refCnt());
+        first.release();
+        Assert.assertEquals(1, in.refCnt());
+        second.release();
+        Assert.assertEquals(0, in.refCnt());
+    }
+
+    private static Messages.Message ping(int messageId) {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_SEND_PING)
+                .setMessageId(messageId)
+                .setVdsmSendPing(Vdcapi.vdsm_SendPing.newBuilder().setDSUID("6123A881016010000000F2CA0DEB370700"))
+                .build();
+    }
+
+    private static ByteBuf frame(Messages.Message... messages) {
+        ByteBuf frame = Unpooled.buffer();
+        for (Messages.Message message : messages) {
+            byte[] body = message.toByteArray();
+            frame.writeShort(body.length);
+            frame.writeBytes(body);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,73 @@
+package de.nikxs.digitalstrom.vdc.server.handler;
+
+import de.nikxs.digitalstrom.vdc.server.codec.Codec;
+import de.nikxs.digitalstrom.vdc.server.codec.ProtobufCodec;
+import de.nikxs.digitalstrom.vdc.server.transport.DSMessages;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the outbound framing of {@link VdcMessageSerializer} (protobuf encoded into a <code>byte[]</code>
+ * which is copied into an unpooled frame) and {@link VdcMessageEncoder} (protobuf streamed into one pooled
+ * frame).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VdcMessageEncoderBenchmark {
+
+    private final Codec codec = new ProtobufCodec();
+
+    private Messages.Message pong;
+
+    private EmbeddedChannel serializer;
+
+    private EmbeddedChannel encoder;
+
+    @Setup
+    public void setup() {
+        pong = Messages.Message.newBuilder()
+                .setType(Messages.Type.VDC_SEND_PONG)
+                .setMessageId(42)
+                .setVdcSendPong(Vdcapi.vdc_SendPong.newBuilder().setDSUID("6123A881016010000000F2CA0DEB370700"))
+                .build();
+
+        serializer = new EmbeddedChannel(new VdcMessageSerializer());
+        encoder = new EmbeddedChannel(new VdcMessageEncoder());
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializer.finishAndReleaseAll();
+        encoder.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void serializer(Blackhole bh) {
+        serializer.writeOutbound(new DSMessages(codec.encode(Messages.Message.class, pong)));
+        drain(serializer, bh);
+    }
+
+    @Benchmark
+    public void encoder(Blackhole bh) {
+        encoder.writeOutbound(pong);
+        drain(encoder, bh);
+    }
+
+    private static void drain(EmbeddedChannel channel, Blackhole bh) {
+        ByteBuf frame;
+        while ((frame = channel.readOutbound()) != null) {
+            bh.consume(frame.readableBytes());
+            frame.release();
+        }
+    }
+}
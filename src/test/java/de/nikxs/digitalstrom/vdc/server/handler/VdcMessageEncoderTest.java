@@ -0,0 +1,112 @@
+package de.nikxs.digitalstrom.vdc.server.handler;
+
+import de.nikxs.digitalstrom.vdc.server.transport.DSFrame;
+import de.nikxs.digitalstrom.vdc.server.transport.DSMessages;
+import de.nikxs.digitalstrom.vdc.server.transport.VdcHeader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.EncoderException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.Arrays;
+
+public class VdcMessageEncoderTest {
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(new VdcMessageEncoder());
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void should_Write_Exact_Frame_With_Length_Prefix() throws Exception {
+        Messages.Message message = ping(1, "6123A881016010000000F2CA0DEB370700");
+
+        Assert.assertTrue(channel.writeOutbound(message));
+
+        ByteBuf frame = channel.readOutbound();
+        try {
+            int bodyLen = message.getSerializedSize();
+            Assert.assertEquals(VdcHeader.VDC_HEAD_LEN + bodyLen, frame.readableBytes());
+            Assert.assertEquals(frame.readableBytes(), frame.capacity());
+            Assert.assertEquals(bodyLen, frame.getUnsignedShort(frame.readerIndex()));
+            Assert.assertEquals(message, Messages.Message.parseFrom(
+                    ByteBufUtil.getBytes(frame, frame.readerIndex() + VdcHeader.VDC_HEAD_LEN, bodyLen)));
+        } finally {
+            frame.release();
+        }
+        Assert.assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void should_Round_Trip_Through_Deserializer() throws Exception {
+        EmbeddedChannel inbound = new EmbeddedChannel(new VdcMessageDeserializer(true));
+        try {
+            Messages.Message first = ping(1, "6123A881016010000000F2CA0DEB370700");
+            Messages.Message second = ping(2, "6123A881016010000000F2CA0DEB370800");
+            channel.writeOutbound(first, second);
+
+            Assert.assertTrue(inbound.writeInbound(channel.<ByteBuf>readOutbound(), channel.<ByteBuf>readOutbound()));
+
+            for (Messages.Message expected : Arrays.asList(first, second)) {
+                DSFrame decoded = inbound.readInbound();
+                Assert.assertEquals(expected, Messages.Message.parseFrom(ByteBufUtil.getBytes(decoded.content())));
+                decoded.release();
+            }
+            Assert.assertNull(inbound.readInbound());
+        } finally {
+            inbound.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void should_Accept_Message_Up_To_Max_Data_Size() {
+        Messages.Message message = ping(1, pad(maxPadding()));
+        Assert.assertTrue(message.getSerializedSize() <= DSMessages.MAX_DATA_SIZE);
+
+        Assert.assertTrue(channel.writeOutbound(message));
+
+        ByteBuf frame = channel.readOutbound();
+        Assert.assertEquals(message.getSerializedSize(), frame.getUnsignedShort(frame.readerIndex()));
+        frame.release();
+    }
+
+    @Test(expected = EncoderException.class)
+    public void should_Reject_Message_Above_Max_Data_Size() {
+        Messages.Message message = ping(1, pad(maxPadding() + 1));
+        Assert.assertTrue(message.getSerializedSize() > DSMessages.MAX_DATA_SIZE);
+
+        channel.writeOutbound(message);
+    }
+
+    private static Messages.Message ping(int messageId, String dSUID) {
+        return Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_SEND_PING)
+                .setMessageId(messageId)
+                .setVdsmSendPing(Vdcapi.vdsm_SendPing.newBuilder().setDSUID(dSUID))
+                .build();
+    }
+
+    /**
+     * @return longest dSUID padding keeping a ping message within {@link DSMessages#MAX_DATA_SIZE}
+     */
+    private static int maxPadding() {
+        int padding = DSMessages.MAX_DATA_SIZE;
+        while (ping(1, pad(padding)).getSerializedSize() > DSMessages.MAX_DATA_SIZE) {
+            padding--;
+        }
+        return padding;
+    }
+
+    private static String pad(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'A');
+        return new String(chars);
+    }
+}
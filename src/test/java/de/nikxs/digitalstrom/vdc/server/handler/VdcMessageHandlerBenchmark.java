@@ -0,0 +1,74 @@
+package de.nikxs.digitalstrom.vdc.server.handler;
+
+import de.nikxs.digitalstrom.vdc.server.dispatch.ExecutionMode;
+import de.nikxs.digitalstrom.vdc.server.dispatch.MessageDispatcher;
+import de.nikxs.digitalstrom.vdc.server.dispatch.OffloadExecutor;
+import de.nikxs.digitalstrom.vdc.server.transport.DSFrame;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound path of {@link VdcMessageHandler}: decoding a zero-copy frame, routing it through the
+ * {@link MessageDispatcher} to an inline processor and writing the response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VdcMessageHandlerBenchmark {
+
+    private static final String DSUID = "6123A881016010000000F2CA0DEB370700";
+
+    private OffloadExecutor offloadExecutor;
+
+    private EmbeddedChannel channel;
+
+    private ByteBuf ping;
+
+    @Setup
+    public void setup() {
+        Messages.Message pong = Messages.Message.newBuilder()
+                .setType(Messages.Type.VDC_SEND_PONG)
+                .setVdcSendPong(Vdcapi.vdc_SendPong.newBuilder().setDSUID(DSUID))
+                .build();
+
+        offloadExecutor = new OffloadExecutor(false, 1, 16);
+        MessageDispatcher dispatcher = new MessageDispatcher(offloadExecutor);
+        dispatcher.register(Messages.Type.VDSM_SEND_PING, ExecutionMode.INLINE, request -> pong);
+        channel = new EmbeddedChannel(new VdcMessageHandler(dispatcher));
+
+        byte[] body = Messages.Message.newBuilder()
+                .setType(Messages.Type.VDSM_SEND_PING)
+                .setMessageId(42)
+                .setVdsmSendPing(Vdcapi.vdsm_SendPing.newBuilder().setDSUID(DSUID))
+                .build()
+                .toByteArray();
+        ping = PooledByteBufAllocator.DEFAULT.directBuffer(body.length);
+        ping.writeBytes(body);
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        offloadExecutor.shutdown();
+        ping.release();
+    }
+
+    @Benchmark
+    public void dispatch(Blackhole bh) {
+        channel.writeInbound(new DSFrame(ping.retainedDuplicate()));
+        Object response;
+        while ((response = channel.readOutbound()) != null) {
+            bh.consume(response);
+        }
+    }
+}
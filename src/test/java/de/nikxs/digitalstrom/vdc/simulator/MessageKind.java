@@ -0,0 +1,91 @@
+package de.nikxs.digitalstrom.vdc.simulator;
+
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+/**
+ * Messages a simulated vdSM sends during a load run
+ */
+public enum MessageKind {
+
+    PING(Messages.Type.VDSM_SEND_PING, true) {
+        @Override
+        Messages.Message build(int messageId, String dSUID) {
+            return Messages.Message.newBuilder()
+                    .setType(type)
+                    .setVdsmSendPing(Vdcapi.vdsm_SendPing.newBuilder().setDSUID(dSUID))
+                    .build();
+        }
+    },
+
+    GET_PROPERTY(Messages.Type.VDSM_REQUEST_GET_PROPERTY, true) {
+        @Override
+        Messages.Message build(int messageId, String dSUID) {
+            return Messages.Message.newBuilder()
+                    .setType(type)
+                    .setMessageId(messageId)
+                    .setVdsmRequestGetProperty(Vdcapi.vdsm_RequestGetProperty.newBuilder()
+                            .setDSUID(dSUID)
+                            .addQuery(Vdcapi.PropertyElement.newBuilder().setName("name")))
+                    .build();
+        }
+    },
+
+    CALL_SCENE(Messages.Type.VDSM_NOTIFICATION_CALL_SCENE, false) {
+        @Override
+        Messages.Message build(int messageId, String dSUID) {
+            return Messages.Message.newBuilder()
+                    .setType(type)
+                    .setVdsmSendCallScene(Vdcapi.vdsm_NotificationCallScene.newBuilder()
+                            .addDSUID(dSUID)
+                            .setScene(5)
+                            .setForce(false))
+                    .build();
+        }
+    },
+
+    DIM_CHANNEL(Messages.Type.VDSM_NOTIFICATION_DIM_CHANNEL, false) {
+        @Override
+        Messages.Message build(int messageId, String dSUID) {
+            return Messages.Message.newBuilder()
+                    .setType(type)
+                    .setVdsmSendDimChannel(Vdcapi.vdsm_NotificationDimChannel.newBuilder()
+                            .addDSUID(dSUID)
+                            .setChannel(0)
+                            .setMode(1))
+                    .build();
+        }
+    };
+
+    final Messages.Type type;
+
+    /**
+     * <code>true</code> if the vDC host answers the message, so its latency can be measured
+     */
+    final boolean request;
+
+    MessageKind(Messages.Type type, boolean request) {
+        this.type = type;
+        this.request = request;
+    }
+
+    /**
+     * @param messageId message id (ignored by notifications and pings, which are not answered with it)
+     * @param dSUID addressed dS entity
+     * @return message to send
+     */
+    abstract Messages.Message build(int messageId, String dSUID);
+
+    /**
+     * @param name name used on the command line, e.g. <tt>getProperty</tt>
+     * @return the corresponding kind
+     */
+    static MessageKind fromName(String name) {
+        for (MessageKind kind : values()) {
+            if (kind.name().replace("_", "").equalsIgnoreCase(name)) {
+                return kind;
+            }
+        }
+        throw new IllegalArgumentException("Unknown message kind: " + name);
+    }
+}
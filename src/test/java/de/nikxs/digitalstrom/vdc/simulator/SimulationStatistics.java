@@ -0,0 +1,119 @@
+package de.nikxs.digitalstrom.vdc.simulator;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of a load run, shared by all simulated vdSMs
+ */
+public class SimulationStatistics {
+
+    private final Map<MessageKind, LongAdder> sent = new EnumMap<>(MessageKind.class);
+
+    private final Map<MessageKind, LatencyHistogram> latencies = new EnumMap<>(MessageKind.class);
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder announcements = new LongAdder();
+
+    private volatile long start;
+
+    private volatile long end;
+
+    public SimulationStatistics() {
+        for (MessageKind kind : MessageKind.values()) {
+            sent.put(kind, new LongAdder());
+            latencies.put(kind, new LatencyHistogram());
+        }
+    }
+
+    void started() {
+        start = System.nanoTime();
+    }
+
+    void finished() {
+        end = System.nanoTime();
+    }
+
+    void sent(MessageKind kind) {
+        sent.get(kind).increment();
+    }
+
+    void answered(MessageKind kind, long sentAt, boolean error) {
+        latencies.get(kind).record(System.nanoTime() - sentAt);
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    void announced() {
+        announcements.increment();
+    }
+
+    public long getSent(MessageKind kind) {
+        return sent.get(kind).sum();
+    }
+
+    public long getSent() {
+        return sent.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public long getAnswered() {
+        return latencies.values().stream().mapToLong(LatencyHistogram::getCount).sum();
+    }
+
+    /**
+     * @return latency histogram of the given kind (empty for notifications, which are not answered)
+     */
+    public LatencyHistogram getLatency(MessageKind kind) {
+        return latencies.get(kind);
+    }
+
+    /**
+     * @return number of requests answered with an error
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return number of vDC/device announcements received (and accepted)
+     */
+    public long getAnnouncements() {
+        return announcements.sum();
+    }
+
+    /**
+     * @return duration of the load run [ms]
+     */
+    public long getDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis((end != 0 ? end : System.nanoTime()) - start);
+    }
+
+    /**
+     * @return sent messages per second
+     */
+    public double getThroughput() {
+        return getSent() * 1000.0 / Math.max(1, getDurationMillis());
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%d messages in %d ms: %.0f msg/s, %d answered, %d errors, %d announcements%n",
+                getSent(), getDurationMillis(), getThroughput(), getAnswered(), getErrors(), getAnnouncements());
+        out.printf("%-14s %10s %10s %10s %10s %10s %10s%n",
+                "type", "sent", "p50[µs]", "p99[µs]", "p99.9[µs]", "max[µs]", "mean[µs]");
+        for (MessageKind kind : MessageKind.values()) {
+            LatencyHistogram latency = latencies.get(kind);
+            if (kind.request) {
+                out.printf("%-14s %10d %10d %10d %10d %10d %10.1f%n", kind, getSent(kind),
+                        latency.getPercentile(50), latency.getPercentile(99), latency.getPercentile(99.9),
+                        latency.getMax(), latency.getMean());
+            } else {
+                out.printf("%-14s %10d %10s %10s %10s %10s %10s%n", kind, getSent(kind), "-", "-", "-", "-", "-");
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package de.nikxs.digitalstrom.vdc.simulator;
+
+import de.nikxs.digitalstrom.vdc.server.TransportType;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Stand-in for one or more vdSMs to load-test a vDC host without a digitalSTROM installation. Every simulated
+ * vdSM opens its own connection, says hello and sends a random mix of pings, getProperty requests and scene/
+ * dim notifications. Latencies of the answered messages are recorded per message type.
+ * <p>
+ * Run against a local vDC host (its <tt>vdc.host.max-sessions</tt> limits the number of vdSMs):
+ * <pre>
+ * java -cp ... de.nikxs.digitalstrom.vdc.simulator.VdsmSimulator --port=50000 --vdsms=2 --messages=100000
+ *      --window=64 --mix=ping:4,getProperty:2,callScene:1,dimChannel:1 [--targets=dSUID,...] [--transport=EPOLL]
+ * </pre>
+ */
+@Slf4j
+@Getter
+@Setter
+public class VdsmSimulator {
+
+    private static final long HELLO_TIMEOUT_SECONDS = 30;
+
+    /**
+     * address of the vDC host
+     */
+    private String host = "localhost";
+
+    /**
+     * port of the vDC host
+     */
+    private int port = 50000;
+
+    /**
+     * number of simulated vdSMs
+     */
+    private int vdsms = 1;
+
+    /**
+     * number of messages sent by each vdSM
+     */
+    private int messages = 10000;
+
+    /**
+     * maximum number of outstanding messages per vdSM
+     */
+    private int window = 64;
+
+    /**
+     * message kinds to choose from, a kind contained several times is sent more often
+     */
+    private List<MessageKind> mix = parseMix("ping:4,getProperty:2,callScene:1,dimChannel:1");
+
+    /**
+     * dSUIDs of the addressed dS entities (default: the vDC host itself)
+     */
+    private List<String> targets = Collections.emptyList();
+
+    private TransportType transport = TransportType.NIO;
+
+    /**
+     * Connects all simulated vdSMs and runs the load
+     *
+     * @return statistics of the run
+     * @throws ExecutionException if a vdSM could not connect or was rejected by the vDC host
+     * @throws TimeoutException if the vDC host did not answer in time
+     */
+    public SimulationStatistics run() throws InterruptedException, ExecutionException, TimeoutException {
+        SimulationStatistics statistics = new SimulationStatistics();
+        TransportType resolved = transport.resolve();
+        EventLoopGroup group = resolved.newEventLoopGroup(
+                Math.min(vdsms, Runtime.getRuntime().availableProcessors()), "vdsm-simulator");
+        ExecutorService drivers = Executors.newFixedThreadPool(vdsms, new DefaultThreadFactory("vdsm-driver"));
+        List<VirtualVdsm> connected = new ArrayList<>(vdsms);
+        try {
+            Bootstrap bootstrap = new Bootstrap()
+                    .group(group)
+                    .channel(resolved.channelClass())
+                    .option(ChannelOption.TCP_NODELAY, true);
+
+            String hostDSUID = null;
+            for (int i = 0; i < vdsms; i++) {
+                VirtualVdsm vdsm = new VirtualVdsm(statistics, window);
+                connected.add(vdsm);
+                hostDSUID = vdsm.connect(bootstrap, host, port).get(HELLO_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            log.info("{} vdSM(s) connected to vDC host ({})", vdsms, hostDSUID);
+            List<String> addressed = targets.isEmpty() ? Collections.singletonList(hostDSUID) : targets;
+
+            statistics.started();
+            List<Future<?>> runs = new ArrayList<>(vdsms);
+            for (VirtualVdsm vdsm : connected) {
+                runs.add(drivers.submit(() -> {
+                    vdsm.run(messages, mix, addressed);
+                    return null;
+                }));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+            statistics.finished();
+        } finally {
+            connected.forEach(VirtualVdsm::close);
+            drivers.shutdownNow();
+            group.shutdownGracefully();
+        }
+        return statistics;
+    }
+
+    /**
+     * @param mix comma separated <tt>kind:weight</tt> pairs, e.g. <tt>ping:4,callScene:1</tt>
+     * @return message kinds, each kind contained <tt>weight</tt> times
+     */
+    static List<MessageKind> parseMix(String mix) {
+        List<MessageKind> kinds = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] kindAndWeight = entry.trim().split(":");
+            int weight = kindAndWeight.length > 1 ? Integer.parseInt(kindAndWeight[1]) : 1;
+            kinds.addAll(Collections.nCopies(weight, MessageKind.fromName(kindAndWeight[0])));
+        }
+        if (kinds.isEmpty()) {
+            throw new IllegalArgumentException("Empty message mix: " + mix);
+        }
+        return kinds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        VdsmSimulator simulator = new VdsmSimulator();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            String value = option.length > 1 ? option[1] : "";
+            switch (option[0]) {
+                case "host":
+                    simulator.setHost(value);
+                    break;
+                case "port":
+                    simulator.setPort(Integer.parseInt(value));
+                    break;
+                case "vdsms":
+                    simulator.setVdsms(Integer.parseInt(value));
+                    break;
+                case "messages":
+                    simulator.setMessages(Integer.parseInt(value));
+                    break;
+                case "window":
+                    simulator.setWindow(Integer.parseInt(value));
+                    break;
+                case "mix":
+                    simulator.setMix(parseMix(value));
+                    break;
+                case "targets":
+                    simulator.setTargets(Arrays.asList(value.split(",")));
+                    break;
+                case "transport":
+                    simulator.setTransport(TransportType.valueOf(value.toUpperCase()));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + arg);
+                    System.err.println("Options: --host --port --vdsms --messages --window --mix --targets --transport");
+                    System.exit(1);
+            }
+        }
+        simulator.run().print(System.out);
+    }
+}
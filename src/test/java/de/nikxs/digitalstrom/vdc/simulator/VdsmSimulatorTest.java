@@ -0,0 +1,59 @@
+package de.nikxs.digitalstrom.vdc.simulator;
+
+import de.nikxs.digitalstrom.vdc.VdcHost;
+import de.nikxs.digitalstrom.vdc.config.VdcProperties;
+import de.nikxs.digitalstrom.vdc.server.VdcServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs the vdSM simulator against a vDC host on a local port (without mDNS registration)
+ */
+public class VdsmSimulatorTest {
+
+    private VdcHost host;
+
+    private VdsmSimulator simulator;
+
+    @Before
+    public void setUp() throws Exception {
+        VdcProperties config = new VdcProperties();
+        config.getHost().setMaxSessions(2);
+        VdcServer server = new VdcServer(config);
+        host = new VdcHost(config, server);
+        server.start(host);
+
+        simulator = new VdsmSimulator();
+        simulator.setHost("127.0.0.1");
+        simulator.setPort(server.getPort());
+        simulator.setWindow(16);
+        simulator.setMessages(500);
+    }
+
+    @After
+    public void tearDown() {
+        // stops timers, offload executor and server
+        host.stop();
+    }
+
+    @Test
+    public void should_Answer_All_Requests_Of_Concurrent_Vdsms() throws Exception {
+        simulator.setVdsms(2);
+        SimulationStatistics statistics = simulator.run();
+
+        Assert.assertEquals(1000, statistics.getSent());
+        Assert.assertEquals(statistics.getSent(MessageKind.PING) + statistics.getSent(MessageKind.GET_PROPERTY),
+                statistics.getAnswered());
+        Assert.assertEquals(0, statistics.getErrors());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void should_Reject_Vdsm_Beyond_Session_Limit() throws Exception {
+        simulator.setVdsms(3);
+        simulator.run();
+    }
+}
@@ -0,0 +1,224 @@
+package de.nikxs.digitalstrom.vdc.simulator;
+
+import com.google.protobuf.CodedInputStream;
+import de.nikxs.digitalstrom.vdc.server.handler.VdcMessageEncoder;
+import de.nikxs.digitalstrom.vdc.server.transport.DSMessages;
+import de.nikxs.digitalstrom.vdc.util.DSUID;
+import de.nikxs.digitalstrom.vdc.util.DsUtil;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import lombok.extern.slf4j.Slf4j;
+import vdcapi.Messages;
+import vdcapi.Vdcapi;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One simulated vdSM: connects to a vDC host, says hello and sends a mix of pings, getProperty requests and
+ * scene/ dim notifications. At most <tt>window</tt> messages are outstanding; requests count until they are
+ * answered, notifications until they are written. Announcements of the host are accepted.
+ */
+@Slf4j
+class VirtualVdsm extends SimpleChannelInboundHandler<ByteBuf> {
+
+    private static final int SUPPORTED_API_VERSION = 3;
+
+    private static final long RESPONSE_TIMEOUT_SECONDS = 30;
+
+    private final DSUID dSUID = DSUID.generateV4();
+
+    private final SimulationStatistics statistics;
+
+    private final int window;
+
+    private final Semaphore permits;
+
+    private final AtomicInteger messageIds = new AtomicInteger();
+
+    /**
+     * send times of pending getProperty requests by message id
+     */
+    private final ConcurrentMap<Integer, Long> pendingRequests = new ConcurrentHashMap<>();
+
+    /**
+     * send times of pending pings by addressed dSUID. Pongs carry no message id, but pings of one dSUID are
+     * answered in order.
+     */
+    private final ConcurrentMap<String, Queue<Long>> pendingPings = new ConcurrentHashMap<>();
+
+    /**
+     * completed with the dSUID of the vDC host
+     */
+    private final CompletableFuture<String> hello = new CompletableFuture<>();
+
+    private volatile int helloMessageId;
+
+    private volatile Channel channel;
+
+    VirtualVdsm(SimulationStatistics statistics, int window) {
+        this.statistics = statistics;
+        this.window = window;
+        this.permits = new Semaphore(window);
+    }
+
+    /**
+     * Connects to the vDC host and says hello
+     *
+     * @return future completed with the dSUID of the vDC host or exceptionally if the host rejected the hello
+     */
+    CompletableFuture<String> connect(Bootstrap bootstrap, String host, int port) {
+        bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(DSMessages.MAX_DATA_SIZE + 2, 0, 2, 0, 2));
+                ch.pipeline().addLast(new VdcMessageEncoder());
+                ch.pipeline().addLast(VirtualVdsm.this);
+            }
+        }).connect(host, port).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                hello.completeExceptionally(future.cause());
+                return;
+            }
+            channel = future.channel();
+            helloMessageId = messageIds.incrementAndGet();
+            channel.writeAndFlush(Messages.Message.newBuilder()
+                    .setType(Messages.Type.VDSM_REQUEST_HELLO)
+                    .setMessageId(helloMessageId)
+                    .setVdsmRequestHello(Vdcapi.vdsm_RequestHello.newBuilder()
+                            .setDSUID(dSUID.toString())
+                            .setApiVersion(SUPPORTED_API_VERSION))
+                    .build());
+        });
+        return hello;
+    }
+
+    /**
+     * Sends the given number of messages and waits for all responses
+     *
+     * @param messages number of messages
+     * @param mix message kinds to choose from, a kind may be contained several times to weight it
+     * @param targets dSUIDs of the addressed dS entities
+     * @throws TimeoutException if the vDC host stopped answering
+     */
+    void run(int messages, List<MessageKind> mix, List<String> targets) throws InterruptedException, TimeoutException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < messages && channel.isActive(); i++) {
+            MessageKind kind = mix.get(random.nextInt(mix.size()));
+            String target = targets.get(random.nextInt(targets.size()));
+            acquire(1);
+            send(kind, target);
+        }
+        channel.flush();
+        // all permits are back once every request has been answered
+        acquire(window);
+        permits.release(window);
+    }
+
+    void close() {
+        if (channel != null) {
+            channel.close().syncUninterruptibly();
+        }
+    }
+
+    private void acquire(int count) throws InterruptedException, TimeoutException {
+        if (!permits.tryAcquire(count)) {
+            channel.flush();
+            if (!permits.tryAcquire(count, RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new TimeoutException("vDC host did not answer within " + RESPONSE_TIMEOUT_SECONDS + " s");
+            }
+        }
+    }
+
+    private void send(MessageKind kind, String target) {
+        int messageId = messageIds.incrementAndGet();
+        long now = System.nanoTime();
+        if (kind == MessageKind.PING) {
+            pendingPings.computeIfAbsent(target, key -> new ConcurrentLinkedQueue<>()).add(now);
+        } else if (kind.request) {
+            pendingRequests.put(messageId, now);
+        }
+        statistics.sent(kind);
+        if (kind.request) {
+            channel.write(kind.build(messageId, target));
+        } else {
+            channel.write(kind.build(messageId, target)).addListener(future -> permits.release());
+        }
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) throws IOException {
+        Messages.Message message = Messages.Message.parseFrom(frame.nioBufferCount() == 1
+                ? CodedInputStream.newInstance(frame.nioBuffer())
+                : CodedInputStream.newInstance(ByteBufUtil.getBytes(frame)));
+        switch (message.getType()) {
+            case VDC_RESPONSE_HELLO:
+                hello.complete(message.getVdcResponseHello().getDSUID());
+                break;
+            case VDC_SEND_PONG:
+                Queue<Long> pings = pendingPings.get(message.getVdcSendPong().getDSUID());
+                Long sentAt = pings != null ? pings.poll() : null;
+                if (sentAt != null) {
+                    statistics.answered(MessageKind.PING, sentAt, false);
+                    permits.release();
+                }
+                break;
+            case VDC_RESPONSE_GET_PROPERTY:
+                answered(message.getMessageId(), false);
+                break;
+            case GENERIC_RESPONSE:
+                if (message.getMessageId() == helloMessageId && !hello.isDone()) {
+                    hello.completeExceptionally(new IllegalStateException(
+                            "hello() rejected: " + message.getGenericResponse().getCode()));
+                } else {
+                    answered(message.getMessageId(), message.getGenericResponse().getCode() != Messages.ResultCode.ERR_OK);
+                }
+                break;
+            case VDC_SEND_ANNOUNCE_VDC:
+            case VDC_SEND_ANNOUNCE_DEVICE:
+                statistics.announced();
+                ctx.writeAndFlush(DsUtil.buildGenericResponse(Messages.ResultCode.ERR_OK, message.getMessageId()));
+                break;
+            default:
+                log.debug("vdSM ({}) ignores {}", dSUID, message.getType());
+        }
+    }
+
+    private void answered(int messageId, boolean error) {
+        Long sentAt = pendingRequests.remove(messageId);
+        if (sentAt != null) {
+            statistics.answered(MessageKind.GET_PROPERTY, sentAt, error);
+            permits.release();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        hello.completeExceptionally(new IllegalStateException("Connection to vDC host closed"));
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.error("vdSM ({}) connection failed", dSUID, cause);
+        ctx.close();
+    }
+}
@@ -0,0 +1,77 @@
+package de.nikxs.digitalstrom.vdc.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link DSUID} generation and parsing, single threaded and with contending threads (see
+ * <tt>*_Contended</tt> benchmarks). The bulk benchmark creates the dSUIDs of a gateway with
+ * <tt>devices</tt> EnOcean devices at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DSUIDBenchmark {
+
+    @Param({"1000"})
+    private int devices;
+
+    private List<String> guids;
+
+    @Setup
+    public void setup() {
+        guids = new ArrayList<>(devices);
+        for (int i = 0; i < devices; i++) {
+            guids.add(String.format("%08X", 0x0180A000 + i));
+        }
+    }
+
+    @Benchmark
+    public DSUID generateV1() {
+        return DSUID.generateV1();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public DSUID generateV1_Contended() {
+        return DSUID.generateV1();
+    }
+
+    @Benchmark
+    public DSUID generateV4() {
+        return DSUID.generateV4();
+    }
+
+    @Benchmark
+    public DSUID fromDSUID() {
+        return DSUID.fromDSUID("6123A881016010000000F2CA0DEB370700");
+    }
+
+    @Benchmark
+    public DSUID generateV3() {
+        return DSUID.generateV3(DSUID.NamespaceUUID.ENOCEAN, "0180A4F1");
+    }
+
+    @Benchmark
+    public DSUID generateV5() {
+        return DSUID.generateV5(DSUID.NamespaceUUID.ENOCEAN, "0180A4F1");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public DSUID generateV5_Contended() {
+        return DSUID.generateV5(DSUID.NamespaceUUID.ENOCEAN, "0180A4F1");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public List<DSUID> generateV5_Bulk() {
+        return DSUID.generateV5(DSUID.NamespaceUUID.ENOCEAN, guids);
+    }
+}
@@ -1,9 +1,17 @@
 package de.nikxs.digitalstrom.vdc.util;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 //@RunWith(SpringJUnit4ClassRunner.class)
 public class DSUIDTest {
@@ -41,6 +49,102 @@ public class DSUIDTest {
         Assert.assertEquals(strDsuid1,strDsuid2);
         Assert.assertEquals(dsUID1, dsUID2);
     }
+
+    @Test
+    public void should_Accept_UUID_Representation_With_Instance_Byte_0() {
+        DSUID dsUID1 = DSUID.fromDSUID("9888dd3db3454109b088777777777700");
+        DSUID dsUID2 = DSUID.fromDSUID("9888DD3DB3454109B08877777777770000");
+        DSUID dsUID3 = DSUID.fromDSUID("9888dd3d-b345-4109-b088-777777777700");
+
+        Assert.assertEquals(dsUID1, dsUID2);
+        Assert.assertEquals(dsUID1, dsUID3);
+        Assert.assertEquals("9888DD3DB3454109B08877777777770000", dsUID1.toString());
+    }
+
+    @Test
+    public void should_Distinguish_Instance_Byte() {
+        DSUID dsUID1 = DSUID.fromDSUID("6123A881016010000000F2CA0DEB370700");
+        DSUID dsUID2 = DSUID.fromDSUID("6123A881016010000000F2CA0DEB370701");
+
+        Assert.assertNotEquals(dsUID1, dsUID2);
+        Assert.assertEquals(1, dsUID2.getInstance());
+        Assert.assertTrue(dsUID1.compareTo(dsUID2) < 0);
+    }
+
+    @Test
+    public void should_Return_Canonical_Instance_For_Repeated_Lookups() {
+        DSUID dsUID1 = DSUID.fromDSUID("6123A881016010000000F2CA0DEB370700");
+        DSUID dsUID2 = DSUID.fromDSUID(new StringBuilder("6123a881016010000000f2ca0deb370700"));
+
+        Assert.assertSame(dsUID1, dsUID2);
+        Assert.assertSame(dsUID1, dsUID1.intern());
+    }
+
+    @Test
+    public void should_Parse_DSUID_From_ByteBuf() {
+        ByteBuf buf = Unpooled.copiedBuffer("{6123A881016010000000F2CA0DEB370700}", Charset.forName("US-ASCII"));
+
+        DSUID dsUID = DSUID.fromDSUID(buf, 1, 34);
+
+        Assert.assertEquals(DSUID.fromDSUID("6123A881016010000000F2CA0DEB370700"), dsUID);
+        Assert.assertEquals(0, buf.readerIndex());
+    }
+
+    @Test
+    public void should_Generate_Same_V3_DSUID_As_UUID_NameUUIDFromBytes() {
+        byte[] ns = new byte[] {(byte) 0x0b, (byte) 0xa9, (byte) 0x4a, (byte) 0x7b, (byte) 0x7c, (byte) 0x92,
+                (byte) 0x4d, (byte) 0xab, (byte) 0xb8, (byte) 0xe3, (byte) 0x5f, (byte) 0xe0, (byte) 0x9e, (byte) 0x83,
+                (byte) 0xd0, (byte) 0xf3};
+        byte[] name = "something".getBytes(Charset.forName("UTF-8"));
+        byte[] all = Arrays.copyOf(ns, ns.length + name.length);
+        System.arraycopy(name, 0, all, ns.length, name.length);
+
+        DSUID expected = DSUID.fromDSUID(UUID.nameUUIDFromBytes(all).toString());
+
+        Assert.assertEquals(expected, DSUID.generateV3(DSUID.NamespaceUUID.ENOCEAN, "something"));
+    }
+
+    @Test
+    public void should_Generate_Same_V5_DSUIDs_In_Bulk() {
+        List<String> guids = Arrays.asList("0180A4F1", "0180A4F2", "0180A4F3");
+
+        List<DSUID> dsUIDs = DSUID.generateV5(DSUID.NamespaceUUID.ENOCEAN, guids);
+
+        Assert.assertEquals(guids.size(), dsUIDs.size());
+        for (int i = 0; i < guids.size(); i++) {
+            Assert.assertEquals(DSUID.generateV5(DSUID.NamespaceUUID.ENOCEAN, guids.get(i)), dsUIDs.get(i));
+        }
+        Assert.assertNotEquals(dsUIDs.get(0), dsUIDs.get(1));
+    }
+
+    @Test
+    public void should_Generate_Unique_V1_DSUIDs_Concurrently() throws InterruptedException {
+        int threads = 4;
+        int perThread = 10000;
+        Set<DSUID> dsUIDs = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    dsUIDs.add(DSUID.generateV1());
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        Assert.assertEquals(threads * perThread, dsUIDs.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_Reject_Invalid_Characters() {
+        DSUID.fromDSUID("6123A881016010000000F2CA0DEB3707XX");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_Reject_Invalid_Length() {
+        DSUID.fromDSUID("6123A881016010000000F2CA0DEB37070");
+    }
 //
 //    @Test
 //    public void compareTo() {
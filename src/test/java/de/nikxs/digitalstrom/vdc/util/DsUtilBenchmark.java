@@ -0,0 +1,28 @@
+package de.nikxs.digitalstrom.vdc.util;
+
+import org.openjdk.jmh.annotations.*;
+import vdcapi.Messages;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the generic response sent for most vdSM requests and notifications
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DsUtilBenchmark {
+
+    @Param({"ERR_OK", "ERR_NOT_FOUND"})
+    private Messages.ResultCode code;
+
+    private int messageId;
+
+    @Benchmark
+    public Messages.Message buildGenericResponse() {
+        return DsUtil.buildGenericResponse(code, ++messageId);
+    }
+}